@@ -16,6 +16,9 @@ import com.utsusynth.utsu.controller.common.IconManager;
 import com.utsusynth.utsu.engine.*;
 import com.utsusynth.utsu.engine.wavtool.UtsuWavtool;
 import com.utsusynth.utsu.files.*;
+import com.utsusynth.utsu.files.voicebank.OtoValidator;
+import com.utsusynth.utsu.files.voicebank.SoundFileReader;
+import com.utsusynth.utsu.files.voicebank.SoundFileWriter;
 import com.utsusynth.utsu.files.voicebank.VoicebankReader;
 import com.utsusynth.utsu.model.song.converters.ReclistConverter;
 import com.utsusynth.utsu.model.song.converters.ReclistConverterMap;
@@ -66,9 +69,11 @@ public class UtsuModule extends AbstractModule {
         bind(StatusBar.class).asEagerSingleton();
         bind(AssetManager.class).asEagerSingleton();
         bind(CacheManager.class).asEagerSingleton();
+        bind(PeakCacheManager.class).asEagerSingleton();
         bind(FileNameFixer.class).asEagerSingleton();
         bind(IconManager.class).asEagerSingleton();
         bind(VoicebankReader.class).asEagerSingleton();
+        bind(OtoValidator.class).asEagerSingleton();
         bind(ReclistConverterMap.class).asEagerSingleton();
         bind(Scaler.class).to(DiscreteScaler.class);
     }
@@ -143,6 +148,7 @@ public class UtsuModule extends AbstractModule {
         defaultBuilder.put("showVoicebankBody", "true");
         defaultBuilder.put("locale", "en");
         defaultBuilder.put("cache", PreferencesManager.CacheMode.ENABLED.name());
+        defaultBuilder.put("voicebankMemoryMb", "256");
         defaultBuilder.put("resampler", assetManager.getResamplerFile().getAbsolutePath());
         defaultBuilder.put("wavtool", assetManager.getWavtoolFile().getAbsolutePath());
         defaultBuilder.put("voicebank", assetManager.getVoicePath().getAbsolutePath());
@@ -223,8 +229,10 @@ public class UtsuModule extends AbstractModule {
     @Provides
     @Singleton
     private FrqGenerator provideFrqGenerator(
-            ExternalProcessRunner runner, FileNameFixer fileNameFixer, AssetManager assetManager) {
-        return new FrqGenerator(runner, fileNameFixer, assetManager, 256);
+            SoundFileReader soundFileReader,
+            SoundFileWriter soundFileWriter,
+            YinPitchTracker pitchTracker) {
+        return new FrqGenerator(soundFileReader, soundFileWriter, pitchTracker, 256);
     }
 
     @Provides
@@ -0,0 +1,99 @@
+package com.utsusynth.utsu.common.data;
+
+/**
+ * Min/max peaks of a single wav file at several zoom levels. Each level groups samples into
+ * buckets twice as large as the level before it.
+ */
+public class PeakData {
+    private final double lengthMs;
+    private final int numSamples;
+    private final int baseBucketSize; // Number of samples per bucket at level 0.
+    private final float[][] mins; // Indexed by level, then by bucket.
+    private final float[][] maxes; // Indexed by level, then by bucket.
+
+    public PeakData(
+            double lengthMs, int numSamples, int baseBucketSize, float[][] mins, float[][] maxes) {
+        this.lengthMs = lengthMs;
+        this.numSamples = numSamples;
+        this.baseBucketSize = baseBucketSize;
+        this.mins = mins;
+        this.maxes = maxes;
+    }
+
+    /** Builds every level of peaks for a wav file, down to a single bucket. */
+    public static PeakData fromWavData(WavData wavData, int baseBucketSize) {
+        double[] samples = wavData.getSamples();
+        int numLevels = 1;
+        for (long bucketSize = baseBucketSize; bucketSize < samples.length; bucketSize *= 2) {
+            numLevels++;
+        }
+        float[][] mins = new float[numLevels][];
+        float[][] maxes = new float[numLevels][];
+
+        // Level 0 is read from the samples, every other level from the level before it.
+        int numBuckets = (samples.length + baseBucketSize - 1) / baseBucketSize;
+        mins[0] = new float[numBuckets];
+        maxes[0] = new float[numBuckets];
+        for (int bucket = 0; bucket < numBuckets; bucket++) {
+            double min = 0;
+            double max = 0;
+            int lastSample = Math.min(samples.length, (bucket + 1) * baseBucketSize);
+            for (int i = bucket * baseBucketSize; i < lastSample; i++) {
+                min = Math.min(min, samples[i]);
+                max = Math.max(max, samples[i]);
+            }
+            mins[0][bucket] = (float) min;
+            maxes[0][bucket] = (float) max;
+        }
+        for (int level = 1; level < numLevels; level++) {
+            float[] prevMins = mins[level - 1];
+            float[] prevMaxes = maxes[level - 1];
+            numBuckets = (prevMins.length + 1) / 2;
+            mins[level] = new float[numBuckets];
+            maxes[level] = new float[numBuckets];
+            for (int bucket = 0; bucket < numBuckets; bucket++) {
+                int second = Math.min(bucket * 2 + 1, prevMins.length - 1);
+                mins[level][bucket] = Math.min(prevMins[bucket * 2], prevMins[second]);
+                maxes[level][bucket] = Math.max(prevMaxes[bucket * 2], prevMaxes[second]);
+            }
+        }
+        return new PeakData(wavData.getLengthMs(), samples.length, baseBucketSize, mins, maxes);
+    }
+
+    public double getLengthMs() {
+        return lengthMs;
+    }
+
+    public int getNumSamples() {
+        return numSamples;
+    }
+
+    public int getBaseBucketSize() {
+        return baseBucketSize;
+    }
+
+    public int getNumLevels() {
+        return mins.length;
+    }
+
+    public int getBucketSize(int level) {
+        return baseBucketSize << level;
+    }
+
+    public float[] getMins(int level) {
+        return mins[level];
+    }
+
+    public float[] getMaxes(int level) {
+        return maxes[level];
+    }
+
+    /** Returns the coarsest level whose buckets are no larger than the given number of samples. */
+    public int getLevelForSamplesPerPixel(double samplesPerPixel) {
+        int level = 0;
+        while (level + 1 < mins.length && getBucketSize(level + 1) <= samplesPerPixel) {
+            level++;
+        }
+        return level;
+    }
+}
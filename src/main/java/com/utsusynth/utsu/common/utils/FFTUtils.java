@@ -1,65 +1,38 @@
 package com.utsusynth.utsu.common.utils;
 
-public class FFTUtils {
-    /**
-     * Compute forward FFT of a signal, with frequency on the real axis and amplitude on the
-     * imaginary axis.
-     */
-    public static Complex[] fft(Complex[] signal) {
-        if (signal.length == 1) {
-            return new Complex[] {signal[0]};
-        }
-
-        if (signal.length % 2 != 0) {
-            System.out.println("Error: called FFT for a signal that is not a power of 2.");
-        }
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-        // Compute FFT on all even samples.
-        int halfLength = signal.length / 2;
-        Complex[] evenSignal = new Complex[halfLength];
-        for (int i = 0; i < halfLength; i++) {
-            evenSignal[i] = signal[2 * i];
-        }
-        Complex[] evenResult = fft(evenSignal);
-
-        // Compute FFT on all odd samples.
-        Complex[] oddSignal = new Complex[halfLength];
-        for (int i = 0; i < halfLength; i++) {
-            oddSignal[i] = signal[2 * i + 1];
-        }
-        Complex[] oddResult = fft(oddSignal);
+public class FFTUtils {
+    private static final ConcurrentMap<Integer, double[]> HAMMING_WINDOWS =
+            new ConcurrentHashMap<>();
 
-        // Combine even and odd results.
-        Complex[] result = new Complex[signal.length];
-        for (int i = 0; i < halfLength; i++) {
-            double twiddle = -2 * Math.PI * i / signal.length; // Twiddle factor.
-            Complex coefficient = new Complex(Math.cos(twiddle), Math.sin(twiddle));
-            result[i] = evenResult[i].add(coefficient.multiply(oddResult[i]));
-            result[halfLength + i] = evenResult[i].subtract(coefficient.multiply(oddResult[i]));
-        }
-        return result;
-    }
+    private FFTUtils() {}
 
     /**
-     * Apply a standard hamming window to a discrete signal so FFT can read frequencies better.
+     * Compute the magnitude of each frequency bin of a signal's forward FFT, using a standard
+     * hamming window so FFT can read frequencies better. The window starts at startIndex, so a
+     * frame gets the same magnitudes wherever it is in the signal.
+     *
+     * @param magnitudes Receives windowLength / 2 + 1 magnitudes, from 0 Hz to Nyquist.
      */
-    public static double[] hammingWindow(double[] signal, int startIndex, int length) {
-        double[] result = new double[length];
-        for (int i = startIndex; i < startIndex + length; i++) {
-            result[i - startIndex] =
-                    signal[i] * (0.54 - (0.46 * Math.cos(2.0 * i * Math.PI / length)));
-        }
-        return result;
+    public static void hammingMagnitudes(
+            double[] signal, int startIndex, int windowLength, double[] magnitudes) {
+        RealFFT.forSize(windowLength)
+                .magnitudes(signal, startIndex, hammingWindow(windowLength), magnitudes);
     }
 
     /**
-     * Convert a double array to a Complex array.
+     * Returns the coefficients of a standard hamming window. Windows are cached per length and
+     * must not be modified.
      */
-    public static Complex[] toComplex(double[] signal) {
-        Complex[] result = new Complex[signal.length];
-        for (int i = 0; i < signal.length; i++) {
-            result[i] = new Complex(signal[i], 0);
-        }
-        return result;
+    public static double[] hammingWindow(int length) {
+        return HAMMING_WINDOWS.computeIfAbsent(length, key -> {
+            double[] window = new double[length];
+            for (int i = 0; i < length; i++) {
+                window[i] = 0.54 - (0.46 * Math.cos(2.0 * i * Math.PI / length));
+            }
+            return window;
+        });
     }
 }
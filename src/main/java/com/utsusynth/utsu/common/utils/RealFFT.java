@@ -0,0 +1,225 @@
+package com.utsusynth.utsu.common.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-place iterative FFT for real-valued signals. A real signal of length n is packed into a
+ * complex signal of length n/2, transformed, and then split back into the n/2 + 1 non-redundant
+ * frequency bins. Twiddle and bit-reversal tables are cached per size, and all intermediate
+ * values live in per-thread scratch buffers, so repeated transforms do not allocate.
+ */
+public class RealFFT {
+    private static final ConcurrentMap<Integer, RealFFT> INSTANCES = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int halfSize;
+    private final int[] bitReversal; // Bit-reversed index for each element of the packed signal.
+    private final double[] halfCos; // cos(2 * PI * k / halfSize) for k < halfSize / 2.
+    private final double[] halfSin; // sin(2 * PI * k / halfSize) for k < halfSize / 2.
+    private final double[] fullCos; // cos(2 * PI * k / size) for k <= halfSize.
+    private final double[] fullSin; // sin(2 * PI * k / size) for k <= halfSize.
+    private final ThreadLocal<Scratch> scratch;
+
+    /** Returns the shared transform for signals of the given size, which must be a power of 2. */
+    public static RealFFT forSize(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of 2: " + size);
+        }
+        return INSTANCES.computeIfAbsent(size, RealFFT::new);
+    }
+
+    private RealFFT(int size) {
+        this.size = size;
+        this.halfSize = size / 2;
+
+        bitReversal = new int[halfSize];
+        int numBits = Integer.numberOfTrailingZeros(halfSize);
+        for (int i = 0; i < halfSize; i++) {
+            bitReversal[i] = numBits == 0 ? 0 : Integer.reverse(i) >>> (32 - numBits);
+        }
+
+        halfCos = new double[Math.max(1, halfSize / 2)];
+        halfSin = new double[halfCos.length];
+        for (int k = 0; k < halfCos.length; k++) {
+            double angle = 2 * Math.PI * k / halfSize;
+            halfCos[k] = Math.cos(angle);
+            halfSin[k] = Math.sin(angle);
+        }
+
+        fullCos = new double[halfSize + 1];
+        fullSin = new double[halfSize + 1];
+        for (int k = 0; k <= halfSize; k++) {
+            double angle = 2 * Math.PI * k / size;
+            fullCos[k] = Math.cos(angle);
+            fullSin[k] = Math.sin(angle);
+        }
+
+        scratch = ThreadLocal.withInitial(() -> new Scratch(halfSize));
+    }
+
+    /** Length of the real signals this transform accepts. */
+    public int getSize() {
+        return size;
+    }
+
+    /** Number of frequency bins produced for each transform, from 0 Hz to Nyquist inclusive. */
+    public int getNumBins() {
+        return halfSize + 1;
+    }
+
+    /**
+     * Compute the forward FFT of size samples of a signal, starting at an offset.
+     *
+     * @param window Coefficients to multiply each sample by, or null for no window.
+     * @param real Receives the real part of each frequency bin, must hold getNumBins() values.
+     * @param imaginary Receives the imaginary part of each bin, must hold getNumBins() values.
+     */
+    public void transform(
+            double[] signal, int offset, double[] window, double[] real, double[] imaginary) {
+        Scratch buffers = scratch.get();
+        double[] packedReal = buffers.packedReal;
+        double[] packedImaginary = buffers.packedImaginary;
+        for (int i = 0; i < halfSize; i++) {
+            int index = bitReversal[i];
+            double even = signal[offset + 2 * index];
+            double odd = signal[offset + 2 * index + 1];
+            if (window != null) {
+                even *= window[2 * index];
+                odd *= window[2 * index + 1];
+            }
+            packedReal[i] = even;
+            packedImaginary[i] = odd;
+        }
+        transformPacked(packedReal, packedImaginary, real, imaginary);
+    }
+
+    /** Compute the forward FFT of a float signal. See the double version for details. */
+    public void transform(
+            float[] signal, int offset, double[] window, double[] real, double[] imaginary) {
+        Scratch buffers = scratch.get();
+        double[] packedReal = buffers.packedReal;
+        double[] packedImaginary = buffers.packedImaginary;
+        for (int i = 0; i < halfSize; i++) {
+            int index = bitReversal[i];
+            double even = signal[offset + 2 * index];
+            double odd = signal[offset + 2 * index + 1];
+            if (window != null) {
+                even *= window[2 * index];
+                odd *= window[2 * index + 1];
+            }
+            packedReal[i] = even;
+            packedImaginary[i] = odd;
+        }
+        transformPacked(packedReal, packedImaginary, real, imaginary);
+    }
+
+    /**
+     * Compute the magnitude of each frequency bin of a signal's forward FFT.
+     *
+     * @param window Coefficients to multiply each sample by, or null for no window.
+     * @param magnitudes Receives the magnitude of each bin, must hold getNumBins() values.
+     */
+    public void magnitudes(double[] signal, int offset, double[] window, double[] magnitudes) {
+        Scratch buffers = scratch.get();
+        transform(signal, offset, window, buffers.real, buffers.imaginary);
+        for (int k = 0; k <= halfSize; k++) {
+            double re = buffers.real[k];
+            double im = buffers.imaginary[k];
+            magnitudes[k] = Math.sqrt(re * re + im * im);
+        }
+    }
+
+    /**
+     * Compute the inverse FFT of the non-redundant frequency bins of a real signal.
+     *
+     * @param real Real part of each frequency bin, must hold getNumBins() values.
+     * @param imaginary Imaginary part of each frequency bin, must hold getNumBins() values.
+     * @param signal Receives the getSize() samples of the real signal.
+     */
+    public void inverseTransform(double[] real, double[] imaginary, double[] signal) {
+        Scratch buffers = scratch.get();
+        double[] packedReal = buffers.packedReal;
+        double[] packedImaginary = buffers.packedImaginary;
+
+        // Merge the spectrum back into the spectrum of the packed complex signal, conjugated so
+        // the forward butterflies compute an inverse transform.
+        for (int i = 0; i < halfSize; i++) {
+            int k = bitReversal[i];
+            int mirror = halfSize - k;
+            double evenReal = (real[k] + real[mirror]) / 2;
+            double evenImaginary = (imaginary[k] - imaginary[mirror]) / 2;
+            double diffReal = (real[k] - real[mirror]) / 2;
+            double diffImaginary = (imaginary[k] + imaginary[mirror]) / 2;
+            double cos = fullCos[k];
+            double sin = fullSin[k];
+            double oddReal = diffReal * cos - diffImaginary * sin;
+            double oddImaginary = diffReal * sin + diffImaginary * cos;
+            packedReal[i] = evenReal - oddImaginary;
+            packedImaginary[i] = -(evenImaginary + oddReal);
+        }
+        butterflies(packedReal, packedImaginary);
+        for (int i = 0; i < halfSize; i++) {
+            signal[2 * i] = packedReal[i] / halfSize;
+            signal[2 * i + 1] = -packedImaginary[i] / halfSize;
+        }
+    }
+
+    // Expects bit-reversed input in the packed arrays.
+    private void transformPacked(
+            double[] packedReal, double[] packedImaginary, double[] real, double[] imaginary) {
+        butterflies(packedReal, packedImaginary);
+
+        // Split the packed result into the spectrum of the real signal.
+        for (int k = 0; k <= halfSize; k++) {
+            int index = k == halfSize ? 0 : k;
+            int mirror = k == 0 ? 0 : halfSize - k;
+            double evenReal = (packedReal[index] + packedReal[mirror]) / 2;
+            double evenImaginary = (packedImaginary[index] - packedImaginary[mirror]) / 2;
+            double oddReal = (packedImaginary[index] + packedImaginary[mirror]) / 2;
+            double oddImaginary = -(packedReal[index] - packedReal[mirror]) / 2;
+            double cos = fullCos[k];
+            double sin = fullSin[k];
+            real[k] = evenReal + cos * oddReal + sin * oddImaginary;
+            imaginary[k] = evenImaginary + cos * oddImaginary - sin * oddReal;
+        }
+    }
+
+    // Iterative radix-2 butterflies on a bit-reversed packed complex signal.
+    private void butterflies(double[] packedReal, double[] packedImaginary) {
+        for (int length = 2; length <= halfSize; length <<= 1) {
+            int halfLength = length / 2;
+            int tableStep = halfSize / length;
+            for (int start = 0; start < halfSize; start += length) {
+                for (int j = 0; j < halfLength; j++) {
+                    double twiddleReal = halfCos[j * tableStep];
+                    double twiddleImaginary = -halfSin[j * tableStep];
+                    int evenIndex = start + j;
+                    int oddIndex = evenIndex + halfLength;
+                    double oddReal = packedReal[oddIndex] * twiddleReal
+                            - packedImaginary[oddIndex] * twiddleImaginary;
+                    double oddImaginary = packedReal[oddIndex] * twiddleImaginary
+                            + packedImaginary[oddIndex] * twiddleReal;
+                    packedReal[oddIndex] = packedReal[evenIndex] - oddReal;
+                    packedImaginary[oddIndex] = packedImaginary[evenIndex] - oddImaginary;
+                    packedReal[evenIndex] += oddReal;
+                    packedImaginary[evenIndex] += oddImaginary;
+                }
+            }
+        }
+    }
+
+    private static class Scratch {
+        private final double[] packedReal;
+        private final double[] packedImaginary;
+        private final double[] real;
+        private final double[] imaginary;
+
+        private Scratch(int halfSize) {
+            packedReal = new double[halfSize];
+            packedImaginary = new double[halfSize];
+            real = new double[halfSize + 1];
+            imaginary = new double[halfSize + 1];
+        }
+    }
+}
@@ -29,7 +29,7 @@ public class RegionBounds {
     }
 
     public boolean intersects(int otherMinMs, int otherMaxMs) {
-        return intersects(new RegionBounds(otherMinMs, otherMaxMs));
+        return !(minMs >= otherMaxMs) && !(maxMs <= otherMinMs);
     }
 
     public boolean contains(int otherMs) {
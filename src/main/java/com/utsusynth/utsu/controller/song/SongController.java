@@ -28,8 +28,14 @@ import com.utsusynth.utsu.files.PreferencesManager;
 import com.utsusynth.utsu.files.ThemeManager;
 import com.utsusynth.utsu.files.song.*;
 import com.utsusynth.utsu.files.voicebank.VoicebankReader;
+import com.utsusynth.utsu.model.voicebank.Voicebank;
+import com.utsusynth.utsu.model.voicebank.VoicebankListener;
+import com.utsusynth.utsu.model.voicebank.VoicebankManager;
 import com.utsusynth.utsu.model.song.NoteIterator;
+import com.utsusynth.utsu.model.song.SongChange;
 import com.utsusynth.utsu.model.song.SongContainer;
+import com.utsusynth.utsu.model.song.SongListener;
+import com.utsusynth.utsu.model.song.SongSnapshot;
 import com.utsusynth.utsu.model.song.converters.ReclistConverter;
 import com.utsusynth.utsu.view.song.Piano;
 import com.utsusynth.utsu.view.song.SongCallback;
@@ -90,6 +96,9 @@ public class SongController implements EditorController, Localizable {
     private final Ust12Writer ust12Writer;
     private final Ust20Writer ust20Writer;
     private final VoicebankReader voicebankReader;
+    private final VoicebankManager voicebankManager;
+    private final VoicebankListener voicebankListener;
+    private final SongListener songListener;
     private final IconManager iconManager;
     private final ThemeManager themeManager;
     private final PreferencesManager preferencesManager;
@@ -142,6 +151,7 @@ public class SongController implements EditorController, Localizable {
             Ust12Writer ust12Writer,
             Ust20Writer ust20Writer,
             VoicebankReader voicebankReader,
+            VoicebankManager voicebankManager,
             IconManager iconManager,
             ThemeManager themeManager,
             PreferencesManager preferencesManager,
@@ -161,6 +171,9 @@ public class SongController implements EditorController, Localizable {
         this.ust12Writer = ust12Writer;
         this.ust20Writer = ust20Writer;
         this.voicebankReader = voicebankReader;
+        this.voicebankManager = voicebankManager;
+        this.voicebankListener = this::onVoicebankChanged;
+        this.songListener = this::onSongEvent;
         this.iconManager = iconManager;
         this.themeManager = themeManager;
         this.preferencesManager = preferencesManager;
@@ -172,28 +185,26 @@ public class SongController implements EditorController, Localizable {
     // Provide setup for other frontend song management.
     // This is called automatically when fxml loads.
     public void initialize() {
+        voicebankManager.addListener(voicebankListener);
+        song.addListener(songListener); // Marks the song as changed after each edit.
         songEditor.initialize(new SongCallback() {
             @Override
             public void addNotes(List<NoteData> toAdd) {
-                onSongChange();
                 song.get().addNotes(toAdd);
             }
 
             @Override
             public MutateResponse removeNotes(Set<Integer> positions) {
-                onSongChange();
                 return song.get().removeNotes(positions);
             }
 
             @Override
             public NoteUpdateData modifyNote(NoteData toModify) {
-                onSongChange();
                 return song.get().modifyNote(toModify);
             }
 
             @Override
             public MutateResponse standardizeNotes(int firstPos, int lastPos) {
-                // Only called in response to other changes, so this does not trigger onSongChange.
                 return song.get().standardizeNotes(firstPos, lastPos);
             }
 
@@ -262,11 +273,7 @@ public class SongController implements EditorController, Localizable {
                     song.setSong(song.get().toBuilder().setVoiceDirectory(file).build());
                     String newName = song.get().getVoicebank().getName(); // Loads voicebank.
                     song.get().clearAllCacheValues();
-                    Platform.runLater(() -> {
-                        onSongChange();
-                        refreshView();
-                        statusBar.setText("Changed voicebank to " + newName + ".");
-                    });
+                    statusBar.setTextAsync("Changed voicebank to " + newName + ".");
                 }).start();
             }
         });
@@ -472,12 +479,26 @@ public class SongController implements EditorController, Localizable {
     public void closeEditor() {
         // Stop any ongoing playback.
         engine.stopPlayback();
+        voicebankManager.removeListener(voicebankListener);
+        song.removeListener(songListener);
         // Clear any remaining cache files.
         song.get().clearAllCacheValues();
         // Remove this song from local memory.
         song.removeSong();
     }
 
+    // Standardizes only the notes affected by edits to the song's voicebank.
+    private void onVoicebankChanged(
+            Voicebank voicebank, Set<String> changedLyrics, boolean aliasesChanged) {
+        Platform.runLater(() -> {
+            if (song.get().getVoicebank() != voicebank) {
+                return;
+            }
+            songEditor.refreshNotes(
+                    song.get().findNotesToRestandardize(changedLyrics, aliasesChanged));
+        });
+    }
+
     @Override
     public File getOpenFile() {
         return song.getLocation();
@@ -616,7 +637,7 @@ public class SongController implements EditorController, Localizable {
                 // Read song now if it's only one track.
                 int numTracks = songReader.getNumTracks(file);
                 if (numTracks <= 1) {
-                    song.setSong(songReader.loadSong(file, 1));
+                    song.loadSong(songReader.loadSong(file, 1));
                 }
                 // Determine if there's more than one track.
                 Platform.runLater(() -> {
@@ -628,7 +649,7 @@ public class SongController implements EditorController, Localizable {
                         if (trackNums.isEmpty()) {
                             return; // Cancel process if no tracks are selected.
                         }
-                        song.setSong(songReader.loadSong(file, trackNums.get(0)));
+                        song.loadSong(songReader.loadSong(file, trackNums.get(0)));
                         for (int i = 1; i < trackNums.size(); i++) {
                             callback.openSongTrack(file, songReader, trackNums.get(i));
                         }
@@ -663,7 +684,7 @@ public class SongController implements EditorController, Localizable {
             File file, SongReader songReader, int trackNum) throws FileAlreadyOpenException {
         new Thread(() -> {
             try {
-                song.setSong(songReader.loadSong(file, trackNum));
+                song.loadSong(songReader.loadSong(file, trackNum));
                 String saveFormat = songReader.getSaveFormat(file);
                 undoService.clearActions();
                 if (!saveFormat.isEmpty()) {
@@ -774,11 +795,23 @@ public class SongController implements EditorController, Localizable {
         return Optional.empty();
     }
 
+    // Song listeners are called on whichever thread changed the song.
+    private void onSongEvent(SongChange change) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> onSongEvent(change));
+            return;
+        }
+        onSongChange();
+        if (change.getType() == SongChange.Type.SETTINGS_CHANGED) {
+            refreshView();
+        }
+    }
+
     /**
      * Called whenever a Song is changed.
      */
     private void onSongChange() {
-        song.get().clearCache(); // Invalidate rendered song cache.
+        // The rendered song cache is invalidated by the song itself as notes change.
         if (callback != null) {
             callback.markChanged(true);
         }
@@ -814,6 +847,7 @@ public class SongController implements EditorController, Localizable {
                     while (notes.hasNext() && newDataIterator.hasNext()) {
                         notes.next().setConfigData(newDataIterator.next());
                     }
+                    song.get().clearCache(); // Notes were changed directly.
                     onSongChange();
                     songEditor.selectRegion(regionBounds);
                     songEditor.refreshSelected();
@@ -824,6 +858,7 @@ public class SongController implements EditorController, Localizable {
                     while (notes.hasNext() && oldDataIterator.hasNext()) {
                         notes.next().setConfigData(oldDataIterator.next());
                     }
+                    song.get().clearCache(); // Notes were changed directly.
                     onSongChange();
                     songEditor.selectRegion(regionBounds);
                     songEditor.refreshSelected();
@@ -888,9 +923,17 @@ public class SongController implements EditorController, Localizable {
         playPauseIcon.setDisable(true);
 
         statusBar.setText("Rendering...");
+        // Render a snapshot so the song can keep being edited while rendering.
+        SongSnapshot snapshot = song.get().snapshot(regionToPlay);
         new Thread(() ->
         {
-            if (engine.startPlayback(song.get(), regionToPlay, startPlaybackFn, endPlaybackFn)) {
+            boolean rendered;
+            try {
+                rendered = engine.startPlayback(snapshot, startPlaybackFn, endPlaybackFn);
+            } finally {
+                snapshot.close();
+            }
+            if (rendered) {
                 Platform.runLater(() -> {
                     iconManager.setPauseIcon(playPauseIcon);
                     statusBar.setText("Render complete.");
@@ -928,8 +971,15 @@ public class SongController implements EditorController, Localizable {
         File file = fc.showSaveDialog(null);
         if (file != null) {
             statusBar.setText("Exporting...");
+            SongSnapshot snapshot = song.get().snapshot(RegionBounds.WHOLE_SONG);
             new Thread(() -> {
-                if (engine.renderWav(song.get(), file)) {
+                boolean rendered;
+                try {
+                    rendered = engine.renderWav(snapshot, file);
+                } finally {
+                    snapshot.close();
+                }
+                if (rendered) {
                     statusBar.setTextAsync("Exported to file: " + file.getName());
                 } else {
                     statusBar.setTextAsync("Export produced no output.");
@@ -959,11 +1009,7 @@ public class SongController implements EditorController, Localizable {
                 if (shouldClearCache) {
                     song.get().clearAllCacheValues();
                 }
-                Platform.runLater(() -> {
-                    onSongChange();
-                    refreshView();
-                    statusBar.setText("Property changes applied.");
-                });
+                statusBar.setTextAsync("Property changes applied.");
                 return null;
             });
             Scene scene = new Scene(propertiesPane);
@@ -1124,18 +1170,12 @@ public class SongController implements EditorController, Localizable {
             return;
         }
         Runnable redoAction = () -> {
-            for (NoteData noteData : newNotes) {
-                song.get().modifyNote(noteData);
-            }
-            onSongChange();
+            song.get().batch().modifyNotes(newNotes).apply();
             songEditor.selectRegion(getRegionBounds(newNotes));
             songEditor.refreshSelected();
         };
         Runnable undoAction = () -> {
-            for (NoteData noteData : oldNotes) {
-                song.get().modifyNote(noteData);
-            }
-            onSongChange();
+            song.get().batch().modifyNotes(oldNotes).apply();
             songEditor.selectRegion(getRegionBounds(oldNotes));
             songEditor.refreshSelected();
         };
@@ -1235,7 +1275,6 @@ public class SongController implements EditorController, Localizable {
                                 if (!path.isEmpty()) {
                                     result.deleteCharAt(result.length() - 1); // Delete last comma.
                                     Platform.runLater(() -> {
-                                        onSongChange();
                                         refreshView();
                                         statusBar.setText(result.toString());
                                     });
@@ -1262,50 +1301,27 @@ public class SongController implements EditorController, Localizable {
         if (newNotes.isEmpty()) {
             return;
         }
-        // To avoid errors, sort both old and new notes.
-        Comparator<NoteData> noteComparator = Comparator.comparingInt(NoteData::getPosition);
-        List<NoteData> sortedOldNotes =
-                oldNotes.stream().sorted(noteComparator).collect(Collectors.toList());
-        List<NoteData> sortedNewNotes =
-                newNotes.stream().sorted(noteComparator).collect(Collectors.toList());
-
+        // Replace all old notes and standardize all impacted notes in a single batch.
         Runnable redoAction = () -> {
-            MutateResponse removeResponse = song.get().removeNotes(
-                    sortedOldNotes.stream().map(NoteData::getPosition).collect(Collectors.toSet()));
-            song.get().addNotes(sortedNewNotes);
-
-            // Standardize all impacted notes.
-            int newMinPos = sortedNewNotes.get(0).getPosition();
-            int minPos = removeResponse.getPrev()
-                    .map(prev -> Math.min(prev.getPosition(), newMinPos)).orElse(newMinPos);
-            int newMaxPos = sortedNewNotes.get(sortedNewNotes.size() - 1).getPosition();
-            int maxPos = removeResponse.getNext()
-                    .map(next -> Math.max(next.getPosition(), newMaxPos)).orElse(newMaxPos);
-            song.get().standardizeNotes(minPos, maxPos);
+            song.get().batch()
+                    .removeNotes(oldNotes.stream()
+                            .map(NoteData::getPosition).collect(Collectors.toSet()))
+                    .addNotes(newNotes)
+                    .apply();
 
             // If run from a separate thread, leave refreshing the view for later.
             if (Platform.isFxApplicationThread()) {
-                onSongChange();
                 refreshView();
             }
         };
         Runnable undoAction = () -> {
-            MutateResponse removeResponse = song.get().removeNotes(
-                    sortedNewNotes.stream().map(NoteData::getPosition).collect(Collectors.toSet()));
-            song.get().addNotes(sortedOldNotes);
-
-            // Standardize all impacted notes.
-            int newMinPos = sortedOldNotes.get(0).getPosition();
-            int minPos = removeResponse.getPrev()
-                    .map(prev -> Math.min(prev.getPosition(), newMinPos)).orElse(newMinPos);
-            int newMaxPos = sortedOldNotes.get(sortedOldNotes.size() - 1).getPosition();
-            int maxPos = removeResponse.getNext()
-                    .map(next -> Math.max(next.getPosition(), newMaxPos)).orElse(newMaxPos);
-            song.get().standardizeNotes(minPos, maxPos);
-
-            onSongChange();
+            song.get().batch()
+                    .removeNotes(newNotes.stream()
+                            .map(NoteData::getPosition).collect(Collectors.toSet()))
+                    .addNotes(oldNotes)
+                    .apply();
+
             if (Platform.isFxApplicationThread()) {
-                onSongChange();
                 refreshView();
             }
         };
@@ -1,6 +1,7 @@
 package com.utsusynth.utsu.controller.voicebank;
 
 import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.StatusBar;
 import com.utsusynth.utsu.common.data.LyricConfigData;
@@ -16,6 +17,7 @@ import com.utsusynth.utsu.controller.common.UndoService;
 import com.utsusynth.utsu.controller.song.BulkEditorController.BulkEditorType;
 import com.utsusynth.utsu.controller.song.LyricEditorController.LyricEditorType;
 import com.utsusynth.utsu.engine.Engine;
+import com.utsusynth.utsu.files.voicebank.OtoValidator;
 import com.utsusynth.utsu.files.voicebank.VoicebankWriter;
 import com.utsusynth.utsu.model.voicebank.VoicebankContainer;
 import com.utsusynth.utsu.view.voicebank.*;
@@ -42,8 +44,11 @@ import javafx.stage.DirectoryChooser;
 
 import java.io.File;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static javafx.scene.input.KeyCombination.SHIFT_DOWN;
 import static javafx.scene.input.KeyCombination.SHORTCUT_DOWN;
@@ -57,6 +62,7 @@ public class VoicebankController implements EditorController, Localizable {
     // User session data goes here.
     private EditorCallback callback;
     private boolean openForEdit = false;
+    private final AtomicBoolean frqGenerationCancelled = new AtomicBoolean(false);
 
     // Helper classes go here.
     private final VoicebankContainer voicebank;
@@ -68,6 +74,7 @@ public class VoicebankController implements EditorController, Localizable {
     private final MenuItemManager menuItemManager;
     private final StatusBar statusBar;
     private final VoicebankWriter voicebankWriter;
+    private final OtoValidator otoValidator;
     private final Engine engine;
 
     @FXML // fx:id="pitchPane"
@@ -108,6 +115,7 @@ public class VoicebankController implements EditorController, Localizable {
             MenuItemManager menuItemManager,
             StatusBar statusBar,
             VoicebankWriter voicebankWriter,
+            OtoValidator otoValidator,
             Engine engine) {
         this.voicebank = voicebankContainer;
         this.voiceEditor = voiceEditor;
@@ -118,6 +126,7 @@ public class VoicebankController implements EditorController, Localizable {
         this.menuItemManager = menuItemManager;
         this.statusBar = statusBar;
         this.voicebankWriter = voicebankWriter;
+        this.otoValidator = otoValidator;
         this.engine = engine;
     }
 
@@ -162,6 +171,11 @@ public class VoicebankController implements EditorController, Localizable {
             @Override
             public boolean addLyric(LyricConfigData lyricData) {
                 boolean wasSuccessful = voicebank.get().addLyricData(lyricData);
+                voicebank.notifyLyricsChanged(ImmutableSet.of(lyricData.getLyric()), true);
+                if (wasSuccessful) {
+                    voiceEditor.setProblem(
+                            lyricData.getLyric(), otoValidator.validate(lyricData));
+                }
                 onVoicebankChange();
                 return wasSuccessful;
             }
@@ -169,25 +183,43 @@ public class VoicebankController implements EditorController, Localizable {
             @Override
             public void removeLyric(String lyric) {
                 voicebank.get().removeLyricConfig(lyric);
+                voicebank.notifyLyricsChanged(ImmutableSet.of(lyric), true);
+                voiceEditor.setProblem(lyric, Optional.empty());
                 onVoicebankChange();
             }
 
             @Override
             public void modifyLyric(LyricConfigData lyricData) {
                 voicebank.get().modifyLyricData(lyricData);
+                // Only timings changed, so only notes using this lyric need updating.
+                voicebank.notifyLyricsChanged(ImmutableSet.of(lyricData.getLyric()), false);
+                voiceEditor.setProblem(lyricData.getLyric(), otoValidator.validate(lyricData));
                 onVoicebankChange();
             }
 
             @Override
             public void generateFrqFiles(Iterator<LyricConfigData> lyricIterator) {
                 statusBar.setText("Generating .frq files...");
+                statusBar.setProgress(0);
+                frqGenerationCancelled.set(false);
                 new Thread(() -> {
-                    voicebank.get().generateFrqs(lyricIterator);
-                    statusBar.setTextAsync("Finished generating .frq files.");
+                    voicebank.get().generateFrqs(
+                            lyricIterator,
+                            statusBar::setProgressAsync,
+                            frqGenerationCancelled::get);
+                    statusBar.setProgressAsync(1.0); // Mark task as complete.
+                    statusBar.setTextAsync(frqGenerationCancelled.get()
+                            ? "Cancelled generating .frq files."
+                            : "Finished generating .frq files.");
                     // Change cannot be saved or undone, so don't call onVoicebankChange.
                 }).start();
             }
 
+            @Override
+            public void checkLyricData(List<LyricConfigData> lyricData) {
+                checkLyricConfigs(lyricData);
+            }
+
             @Override
             public void recordAction(Runnable redoAction, Runnable undoAction) {
                 undoService.setMostRecentAction(redoAction, undoAction);
@@ -199,6 +231,7 @@ public class VoicebankController implements EditorController, Localizable {
             @Override
             public void setPitch(PitchMapData pitchData) {
                 voicebank.get().setPitchData(pitchData);
+                voicebank.notifyLyricsChanged(ImmutableSet.of(), true);
                 onVoicebankChange();
             }
 
@@ -313,6 +346,7 @@ public class VoicebankController implements EditorController, Localizable {
 
     @Override
     public void closeEditor() {
+        frqGenerationCancelled.set(true); // Stop generating frq files that haven't started.
         // Remove this voicebank from memory, forcing songs using it to reload.
         if (openForEdit) {
             voicebank.removeVoicebankForEdit();
@@ -349,6 +383,7 @@ public class VoicebankController implements EditorController, Localizable {
 
     @Override
     public void onThemeChanged() {
+        configEditor.redrawWaveform();
         configEditor.redrawSpectrogram();
     }
 
@@ -387,6 +422,24 @@ public class VoicebankController implements EditorController, Localizable {
         }).start();
     }
 
+    // Checks lyric configs against their wav files in the background and marks problems.
+    private void checkLyricConfigs(List<LyricConfigData> lyricData) {
+        File location = voicebank.getLocation();
+        new Thread(() -> {
+            Map<String, String> problems = otoValidator.validate(lyricData.iterator());
+            Platform.runLater(() -> {
+                if (!location.equals(voicebank.getLocation())) {
+                    return; // Another voicebank was opened in the meantime.
+                }
+                voiceEditor.addProblems(problems);
+                if (!problems.isEmpty()) {
+                    statusBar.setText("Found problems with " + problems.size()
+                            + " lyrics, hover over marked lyrics for details.");
+                }
+            });
+        }).start();
+    }
+
     @Override
     public Optional<String> save() {
         statusBar.setText("Saving...");
@@ -13,8 +13,8 @@ import com.utsusynth.utsu.files.CacheManager;
 import com.utsusynth.utsu.files.PreferencesManager;
 import com.utsusynth.utsu.files.PreferencesManager.CacheMode;
 import com.utsusynth.utsu.model.song.Note;
-import com.utsusynth.utsu.model.song.NoteIterator;
-import com.utsusynth.utsu.model.song.Song;
+import com.utsusynth.utsu.model.song.NoteCursor;
+import com.utsusynth.utsu.model.song.SongSnapshot;
 import com.utsusynth.utsu.model.voicebank.LyricConfig;
 import com.utsusynth.utsu.model.voicebank.Voicebank;
 import javafx.scene.media.Media;
@@ -92,12 +92,12 @@ public class Engine {
     }
 
     /**
-     * Exports of region of a song to a WAV file.
+     * Exports a song snapshot to a WAV file.
      *
      * @return Whether or not there is any sound to export.
      */
-    public boolean renderWav(Song song, File finalDestination) {
-        Optional<File> finalSong = render(song, RegionBounds.WHOLE_SONG);
+    public boolean renderWav(SongSnapshot song, File finalDestination) {
+        Optional<File> finalSong = render(song);
         if (finalSong.isPresent()) {
             try {
                 FileUtils.copyFile(finalSong.get(), finalDestination);
@@ -109,17 +109,16 @@ public class Engine {
     }
 
     /**
-     * Starts playback for a region of a song.
+     * Starts playback for a snapshot of a region of a song.
      *
      * @return Whether or not there is any sound to play.
      */
     public boolean startPlayback(
-            Song song,
-            RegionBounds bounds,
+            SongSnapshot song,
             Function<Duration, Void> startCallback,
             Runnable endCallback) {
         stopPlayback(); // Clear existing playback, if present.
-        Optional<File> finalSong = render(song, bounds);
+        Optional<File> finalSong = render(song);
         if (finalSong.isPresent()) {
             // Play instrumental, if present.
             if (song.getInstrumental().isPresent()) {
@@ -216,11 +215,13 @@ public class Engine {
         }
     }
 
-    private Optional<File> render(Song song, RegionBounds bounds) {
+    // Renders a snapshot, which stays the same even if the song is edited while rendering.
+    private Optional<File> render(SongSnapshot song) {
+        RegionBounds bounds = song.getBounds();
+        boolean cacheEnabled = preferencesManager.getCache().equals(CacheMode.ENABLED);
         // Use cached render if it exists and cache is enabled.
-        if (preferencesManager.getCache().equals(CacheMode.DISABLED)) {
-            song.clearCache();
-        } else if (bounds.equals(song.getCacheRegion())
+        if (cacheEnabled
+                && bounds.equals(song.getCacheRegion())
                 && song.getCacheFile().isPresent()
                 && song.getCacheFile().get().exists()) {
             return song.getCacheFile();
@@ -230,21 +231,20 @@ public class Engine {
         ExecutorService executor = Executors.newFixedThreadPool(threadPoolSize);
         ArrayList<Future<Runnable>> futures = new ArrayList<>();
 
-        NoteIterator notes = song.getNoteIterator(bounds);
-        if (!notes.hasNext()) {
+        NoteCursor notes = song.getNoteCursor();
+        if (!notes.hasNextNote()) {
             return Optional.empty();
         }
 
         int startPosition = bounds.getMinMs();
-        int totalDelta = notes.getCurDelta(); // Absolute position of current note.
         double scaleFactor = 125.0 / song.getTempo(); // TODO: Override with note tempo.
         Voicebank voicebank = song.getVoicebank();
         boolean isFirstNote = true;
         final File finalSong = cacheManager.createRenderedCache();
 
-        while (notes.hasNext()) {
-            Note note = notes.next();
-            totalDelta += note.getDelta();
+        while (notes.next()) {
+            Note note = notes.getNote();
+            int totalDelta = notes.getPosition(); // Absolute position of current note.
 
             // Get lyric config.
             Optional<LyricConfig> config = Optional.empty();
@@ -253,7 +253,7 @@ public class Engine {
             }
             if (config.isEmpty()) {
                 // Make one last valiant effort to find the true lyric.
-                String prevLyric = getNearbyPrevLyric(notes.peekPrev());
+                String prevLyric = getNearbyPrevLyric(notes);
                 String pitch = PitchUtils.noteNumToPitch(note.getNoteNum());
                 config = voicebank.getLyricConfig(prevLyric, note.getLyric(), pitch);
                 if (config.isPresent()) {
@@ -264,16 +264,14 @@ public class Engine {
 
             // Find preutterance of current and next notes.
             double preutter = note.getRealPreutter();
-            Optional<Double> nextPreutter = Optional.empty();
-            if (notes.peekNext().isPresent()) {
-                nextPreutter = Optional.of(notes.peekNext().get().getRealPreutter());
-            }
+            boolean hasNextNote = notes.hasNextNote();
+            double nextPreutter = hasNextNote ? notes.getNextNote().getRealPreutter() : 0;
 
             // Possible silence before first note.
             if (isFirstNote) {
-                if (notes.getCurDelta() - preutter > bounds.getMinMs()) {
+                if (totalDelta - preutter > bounds.getMinMs()) {
                     double firstNoteDelta =
-                            (notes.getCurDelta() - bounds.getMinMs()) * scaleFactor - preutter;
+                            (totalDelta - bounds.getMinMs()) * scaleFactor - preutter;
                     addSilence(firstNoteDelta, 0, finalSong, executor, futures);
                 }
                 isFirstNote = false;
@@ -282,10 +280,9 @@ public class Engine {
             // Add silence in place of note if lyric not found.
             if (config.isEmpty()) {
                 System.out.println("Could not find config for lyric: " + note.getLyric());
-                if (notes.peekNext().isPresent()) {
+                if (hasNextNote) {
                     addSilence(
-                            note.getLength() * scaleFactor
-                                    - notes.peekNext().get().getRealPreutter(),
+                            note.getLength() * scaleFactor - nextPreutter,
                             totalDelta * scaleFactor,
                             finalSong,
                             executor,
@@ -305,9 +302,9 @@ public class Engine {
 
             // Adjust note length based on preutterance/overlap.
             double nextNoteEncroachment = 0;
-            if (notes.peekNext().isPresent() && areNotesTouching(
-                    Optional.of(note), voicebank, nextPreutter, song.getTempo())) {
-                Note nextNote = notes.peekNext().get();
+            if (hasNextNote
+                    && areNotesTouching(note, voicebank, nextPreutter, song.getTempo())) {
+                Note nextNote = notes.getNextNote();
                 double scaledGap = (note.getLength() - note.getDuration()) * scaleFactor;
                 nextNoteEncroachment = nextNote.getTrueLyric().isEmpty()
                         ? 0 : nextNote.getRealPreutter() - scaledGap - nextNote.getFadeIn();
@@ -323,22 +320,18 @@ public class Engine {
 
             // Apply resampler in separate thread and schedule wavtool.
             final LyricConfig curConfig = config.get();
-            final boolean includeOverlap = areNotesTouching(
-                    notes.peekPrev(), voicebank, Optional.of(preutter), song.getTempo());
-            final boolean isLastNote = notes.peekNext().isEmpty();
-            final int currentTotalDelta = totalDelta;
+            final boolean includeOverlap = notes.hasPrevNote() && areNotesTouching(
+                    notes.getPrevNote(), voicebank, preutter, song.getTempo());
+            final boolean isLastNote = !hasNextNote;
             final double expectedDelta = totalDelta - preutter;
             final double noteAddOn = preutter - nextNoteEncroachment;
             futures.add(executor.submit(() -> {
                 // Re-samples lyric and puts result into renderedNote file.
                 File renderedNote;
-                if (preferencesManager.getCache().equals(CacheMode.DISABLED)) {
-                    song.clearNoteCache(currentTotalDelta, currentTotalDelta);
-                }
-                if (note.getCacheFile().isEmpty()) {
+                if (!cacheEnabled || note.getCacheFile().isEmpty()) {
                     renderedNote = cacheManager.createNoteCache();
-                    if (preferencesManager.getCache().equals(CacheMode.ENABLED)) {
-                        note.setCacheFile(Optional.of(renderedNote));
+                    if (cacheEnabled) {
+                        song.setNoteCacheFile(note, renderedNote);
                     }
                     resampler.resample(
                             getResamplerPath(),
@@ -365,16 +358,11 @@ public class Engine {
             }));
 
             // Possible silence after each note.
-            if (notes.peekNext().isPresent() && !areNotesTouching(
-                    Optional.of(note), voicebank, nextPreutter, song.getTempo())) {
+            if (hasNextNote
+                    && !areNotesTouching(note, voicebank, nextPreutter, song.getTempo())) {
                 // Add silence
-                double silenceLength;
-                if (nextPreutter.isPresent()) {
-                    silenceLength = (note.getLength() - note.getDuration()) * scaleFactor
-                            - nextPreutter.get();
-                } else {
-                    silenceLength = (note.getLength() - note.getDuration()) * scaleFactor;
-                }
+                double silenceLength =
+                        (note.getLength() - note.getDuration()) * scaleFactor - nextPreutter;
                 addSilence(
                         silenceLength,
                         (totalDelta + note.getDuration()) * scaleFactor,
@@ -399,8 +387,8 @@ public class Engine {
         statusBar.setProgressAsync(1.0); // Mark task as complete.
         executor.shutdown(); // Shut down thread pool
 
-        if (preferencesManager.getCache().equals(CacheMode.ENABLED)) {
-            song.setCache(bounds, finalSong); // Cache region that was played.
+        if (cacheEnabled) {
+            song.setCache(finalSong); // Cache region that was played, unless song changed.
         } else {
             cacheManager.clearNotes(); // Clear note cache if we aren't keeping caches.
         }
@@ -454,10 +442,11 @@ public class Engine {
     }
 
     // Returns empty string if there is no nearby (within DEFAULT_NOTE_DURATION) previous note.
-    private static String getNearbyPrevLyric(Optional<Note> prev) {
-        if (prev.isPresent() && prev.get().getLength()
-                - prev.get().getDuration() > Quantizer.DEFAULT_NOTE_DURATION) {
-            return prev.get().getLyric();
+    private static String getNearbyPrevLyric(NoteCursor notes) {
+        Note prev = notes.getPrevNote();
+        if (prev != null
+                && prev.getLength() - prev.getDuration() > Quantizer.DEFAULT_NOTE_DURATION) {
+            return prev.getLyric();
         }
         return "";
     }
@@ -472,21 +461,17 @@ public class Engine {
 
     // Determines whether two notes are "touching" given the second note's preutterance.
     private static boolean areNotesTouching(
-            Optional<Note> note,
+            Note note,
             Voicebank voicebank,
-            Optional<Double> nextPreutter,
+            double nextPreutter,
             double tempo) {
-        if (note.isEmpty() || nextPreutter.isEmpty()) {
-            return false;
-        }
-
         // Return false if current note cannot be rendered.
-        if (voicebank.getLyricConfig(note.get().getTrueLyric()).isEmpty()) {
+        if (voicebank.getLyricConfig(note.getTrueLyric()).isEmpty()) {
             return false;
         }
 
         double scaleFactor = 125.0 / tempo;
-        double scaledGap = (note.get().getLength() - note.get().getDuration()) * scaleFactor;
-        return scaledGap <= nextPreutter.get();
+        double scaledGap = (note.getLength() - note.getDuration()) * scaleFactor;
+        return scaledGap <= nextPreutter;
     }
 }
@@ -4,7 +4,7 @@ import java.io.File;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.engine.wavtool.Wavtool;
 import com.utsusynth.utsu.files.PreferencesManager;
-import com.utsusynth.utsu.model.song.Song;
+import com.utsusynth.utsu.model.song.SongSnapshot;
 import com.utsusynth.utsu.model.song.Note;
 
 public class ExternalWavtool implements Wavtool {
@@ -38,7 +38,7 @@ public class ExternalWavtool implements Wavtool {
 
     @Override
     public void addNewNote(
-            Song song,
+            SongSnapshot song,
             Note note,
             double noteLength,
             double expectedDelta,
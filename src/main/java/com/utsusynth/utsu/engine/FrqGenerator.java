@@ -1,30 +1,44 @@
 package com.utsusynth.utsu.engine;
 
 import java.io.File;
+import java.util.Optional;
+
 import com.google.inject.Inject;
-import com.utsusynth.utsu.files.AssetManager;
-import com.utsusynth.utsu.files.FileNameFixer;
+import com.utsusynth.utsu.common.data.FrequencyData;
+import com.utsusynth.utsu.common.data.WavData;
+import com.utsusynth.utsu.files.voicebank.SoundFileReader;
+import com.utsusynth.utsu.files.voicebank.SoundFileWriter;
 
+/** Generates .frq files in-process, in the same format as frq0003gen. */
 public class FrqGenerator {
-    private final ExternalProcessRunner runner;
-    private final FileNameFixer fileNameFixer;
-    private final File frqGeneratorPath;
+    private final SoundFileReader soundFileReader;
+    private final SoundFileWriter soundFileWriter;
+    private final YinPitchTracker pitchTracker;
     private final int samplesPerFrq; // Samples per value in frq file. Currently always 256.
 
     @Inject
     public FrqGenerator(
-            ExternalProcessRunner runner, FileNameFixer fileNameFixer, AssetManager assetManager, int samplesPerFrq) {
-        this.runner = runner;
-        this.fileNameFixer = fileNameFixer;
-        this.frqGeneratorPath = assetManager.getFrqGeneratorFile();
+            SoundFileReader soundFileReader,
+            SoundFileWriter soundFileWriter,
+            YinPitchTracker pitchTracker,
+            int samplesPerFrq) {
+        this.soundFileReader = soundFileReader;
+        this.soundFileWriter = soundFileWriter;
+        this.pitchTracker = pitchTracker;
         this.samplesPerFrq = samplesPerFrq;
     }
 
-    public void genFrqFile(File input, File output) {
-        runner.runProcess(
-                frqGeneratorPath.getAbsolutePath(),
-                fileNameFixer.getFixedName(input.getAbsolutePath()),
-                output.getAbsolutePath(),
-                Integer.toString(samplesPerFrq));
+    /**
+     * Analyzes a wav file and writes its frq file. Safe to call from several threads at once.
+     *
+     * @return Whether the frq file was written successfully.
+     */
+    public boolean genFrqFile(File input, File output) {
+        Optional<WavData> wavData = soundFileReader.loadWavData(input);
+        if (wavData.isEmpty()) {
+            return false;
+        }
+        FrequencyData frqData = pitchTracker.analyze(wavData.get(), samplesPerFrq);
+        return soundFileWriter.writeFrqData(frqData, output);
     }
 }
@@ -7,7 +7,7 @@ import com.utsusynth.utsu.common.utils.PitchUtils;
 import com.utsusynth.utsu.files.AssetManager;
 import com.utsusynth.utsu.files.FileNameFixer;
 import com.utsusynth.utsu.model.song.Note;
-import com.utsusynth.utsu.model.song.Song;
+import com.utsusynth.utsu.model.song.SongSnapshot;
 import com.utsusynth.utsu.model.voicebank.LyricConfig;
 
 public class Resampler {
@@ -30,7 +30,7 @@ public class Resampler {
             LyricConfig config,
             File outputFile,
             String pitchString,
-            Song song) {
+            SongSnapshot song) {
         String inputFilePath = fileNameFixer.getFixedName(config.getPathToFile().getAbsolutePath());
         String outputFilePath = outputFile.getAbsolutePath();
         String pitch = PitchUtils.noteNumToPitch(note.getNoteNum());
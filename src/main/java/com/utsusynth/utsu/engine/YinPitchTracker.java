@@ -0,0 +1,124 @@
+package com.utsusynth.utsu.engine;
+
+import com.utsusynth.utsu.common.data.FrequencyData;
+import com.utsusynth.utsu.common.data.WavData;
+import com.utsusynth.utsu.common.utils.RealFFT;
+
+/**
+ * Estimates the fundamental frequency (F0) of a wav file with the YIN algorithm, producing values
+ * in the same layout frq0003gen writes to .frq files.
+ */
+public class YinPitchTracker {
+    private static final double MIN_FREQ = 60; // Lowest detectable F0, in Hz.
+    private static final double MAX_FREQ = 1200; // Highest detectable F0, in Hz.
+    private static final double THRESHOLD = 0.15; // Max aperiodicity of a voiced frame.
+    private static final double MIN_POWER = 1e-7; // Average power below which a frame is silent.
+    private static final double MAX_AMPLITUDE = 32768; // Amplitudes are written as 16-bit values.
+
+    /**
+     * Computes an F0 value and an average amplitude for every block of samplesPerFrq samples.
+     * Unvoiced blocks have an F0 of 0.
+     */
+    public FrequencyData analyze(WavData wavData, int samplesPerFrq) {
+        double[] samples = wavData.getSamples();
+        double sampleRate = samples.length / (wavData.getLengthMs() / 1000);
+        int minLag = Math.max(2, (int) Math.floor(sampleRate / MAX_FREQ));
+        int maxLag = (int) Math.ceil(sampleRate / MIN_FREQ);
+        int windowSize = Integer.highestOneBit(maxLag - 1) * 2; // Power of 2 no less than maxLag.
+        int frameSize = windowSize + maxLag + 1;
+        RealFFT fft = RealFFT.forSize(Integer.highestOneBit(frameSize - 1) * 2);
+
+        // Buffers are reused for every frame.
+        double[] frame = new double[fft.getSize()];
+        double[] window = new double[fft.getSize()];
+        double[] frameReal = new double[fft.getNumBins()];
+        double[] frameImaginary = new double[fft.getNumBins()];
+        double[] windowReal = new double[fft.getNumBins()];
+        double[] windowImaginary = new double[fft.getNumBins()];
+        double[] correlation = new double[fft.getSize()];
+        double[] energy = new double[frameSize + 1]; // Cumulative sum of squared samples.
+        double[] difference = new double[maxLag + 2]; // Normalized difference at each lag.
+
+        int numBlocks = (samples.length + samplesPerFrq - 1) / samplesPerFrq;
+        double[] frequencies = new double[numBlocks];
+        double[] amplitudes = new double[numBlocks];
+        double frequencySum = 0;
+        int numVoiced = 0;
+        for (int block = 0; block < numBlocks; block++) {
+            int blockStart = block * samplesPerFrq;
+            int blockEnd = Math.min(samples.length, blockStart + samplesPerFrq);
+            double amplitudeSum = 0;
+            for (int i = blockStart; i < blockEnd; i++) {
+                amplitudeSum += Math.abs(samples[i]);
+            }
+            amplitudes[block] = amplitudeSum * MAX_AMPLITUDE / samplesPerFrq;
+
+            // Center the analysis window on the block, padding with silence at either end.
+            int frameStart = blockStart + samplesPerFrq / 2 - windowSize / 2;
+            for (int i = 0; i < frameSize; i++) {
+                int index = frameStart + i;
+                frame[i] = index >= 0 && index < samples.length ? samples[index] : 0;
+                energy[i + 1] = energy[i] + frame[i] * frame[i];
+            }
+            if (energy[windowSize] / windowSize < MIN_POWER) {
+                continue; // Silent blocks are unvoiced.
+            }
+            System.arraycopy(frame, 0, window, 0, windowSize);
+
+            // Autocorrelation of the window against the rest of the frame, computed with FFT.
+            fft.transform(frame, 0, null, frameReal, frameImaginary);
+            fft.transform(window, 0, null, windowReal, windowImaginary);
+            for (int k = 0; k < fft.getNumBins(); k++) {
+                double re = windowReal[k] * frameReal[k] + windowImaginary[k] * frameImaginary[k];
+                double im = windowReal[k] * frameImaginary[k] - windowImaginary[k] * frameReal[k];
+                frameReal[k] = re;
+                frameImaginary[k] = im;
+            }
+            fft.inverseTransform(frameReal, frameImaginary, correlation);
+
+            // Cumulative mean normalized difference function.
+            double runningSum = 0;
+            difference[0] = 1;
+            for (int lag = 1; lag <= maxLag + 1; lag++) {
+                double shiftedEnergy = energy[lag + windowSize] - energy[lag];
+                double value = Math.max(
+                        0, energy[windowSize] + shiftedEnergy - 2 * correlation[lag]);
+                runningSum += value;
+                difference[lag] = runningSum == 0 ? 1 : value * lag / runningSum;
+            }
+
+            double lag = findBestLag(difference, minLag, maxLag);
+            if (lag > 0) {
+                frequencies[block] = sampleRate / lag;
+                frequencySum += frequencies[block];
+                numVoiced++;
+            }
+        }
+        double average = numVoiced == 0 ? 0 : frequencySum / numVoiced;
+        return new FrequencyData(average, samplesPerFrq, frequencies, amplitudes);
+    }
+
+    // Returns the interpolated lag of the first dip below the threshold, or 0 if unvoiced.
+    private static double findBestLag(double[] difference, int minLag, int maxLag) {
+        int lag = minLag;
+        while (lag <= maxLag && difference[lag] >= THRESHOLD) {
+            lag++;
+        }
+        if (lag > maxLag) {
+            return 0;
+        }
+        while (lag < maxLag && difference[lag + 1] < difference[lag]) {
+            lag++;
+        }
+
+        // Parabolic interpolation around the local minimum.
+        double before = difference[lag - 1];
+        double at = difference[lag];
+        double after = difference[lag + 1];
+        double curvature = before - 2 * at + after;
+        if (curvature <= 0) {
+            return lag;
+        }
+        return lag + (before - after) / (2 * curvature);
+    }
+}
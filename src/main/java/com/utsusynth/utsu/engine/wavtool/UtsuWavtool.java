@@ -7,12 +7,15 @@ import com.utsusynth.utsu.common.utils.RoundUtils;
 import com.utsusynth.utsu.files.voicebank.SoundFileReader;
 import com.utsusynth.utsu.files.voicebank.SoundFileWriter;
 import com.utsusynth.utsu.model.song.Note;
-import com.utsusynth.utsu.model.song.Song;
+import com.utsusynth.utsu.model.song.SongSnapshot;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class UtsuWavtool implements Wavtool {
     private final SoundFileReader soundFileReader;
@@ -38,7 +41,7 @@ public class UtsuWavtool implements Wavtool {
 
     @Override
     public void addNewNote(
-            Song song,
+            SongSnapshot song,
             Note note,
             double noteLength,
             double expectedDelta,
@@ -149,24 +152,135 @@ public class UtsuWavtool implements Wavtool {
         double durationMs = totalDelta - startDelta;
         int numSamples = msToNumSamples(durationMs);
         double[] combinedSamples = new double[numSamples];
+
+        // Lay out every fragment first so independent segments can be mixed in parallel.
+        int numFragments = fragments.size();
+        int[] firstSamples = new int[numFragments];
+        int[] overlapSamples = new int[numFragments];
+        int[] lengths = new int[numFragments];
         int curSample = 0;
-        for (int i = 0; i < fragments.size(); i++) {
-            WavData fragment = fragments.get(i);
-            int overlapSamples = msToNumSamples(overlaps.get(i));
-            curSample = Math.min(numSamples, Math.max(0, curSample - overlapSamples));
-            int samplesToWrite = Math.min(fragment.getSamples().length, numSamples - curSample);
-            int firstSample = curSample;
-            int lastSample = curSample + samplesToWrite - 1; // Off-by-1 error.
-            for (; curSample <= lastSample; curSample++) {
-                if (curSample < firstSample + overlapSamples) {
-                    combinedSamples[curSample] += fragment.getSamples()[curSample - firstSample];
+        for (int i = 0; i < numFragments; i++) {
+            overlapSamples[i] = msToNumSamples(overlaps.get(i));
+            curSample = Math.min(numSamples, Math.max(0, curSample - overlapSamples[i]));
+            firstSamples[i] = curSample;
+            lengths[i] = Math.min(fragments.get(i).getSamples().length, numSamples - curSample);
+            curSample += lengths[i];
+        }
+
+        List<Integer> segmentStarts = findSegmentStarts(firstSamples, overlapSamples, lengths);
+        ForkJoinPool.commonPool().invoke(new MixTask(
+                combinedSamples,
+                firstSamples,
+                overlapSamples,
+                lengths,
+                segmentStarts,
+                0,
+                segmentStarts.size()));
+
+        WavData combinedWav = new WavData(durationMs, combinedSamples);
+        soundFileWriter.writeWavData(combinedWav, outputFile);
+    }
+
+    /**
+     * Finds fragments that can start an independent segment of the mix, i.e. fragments with no
+     * overlap whose output range is disjoint from every fragment before and after them.
+     */
+    private static List<Integer> findSegmentStarts(
+            int[] firstSamples, int[] overlapSamples, int[] lengths) {
+        int numFragments = firstSamples.length;
+        int[] minFirstSampleAfter = new int[numFragments + 1];
+        minFirstSampleAfter[numFragments] = Integer.MAX_VALUE;
+        for (int i = numFragments - 1; i >= 0; i--) {
+            minFirstSampleAfter[i] = Math.min(minFirstSampleAfter[i + 1], firstSamples[i]);
+        }
+        List<Integer> segmentStarts = new ArrayList<>();
+        int maxLastSampleBefore = 0;
+        for (int i = 0; i < numFragments; i++) {
+            if (i == 0 || (overlapSamples[i] == 0
+                    && maxLastSampleBefore <= firstSamples[i]
+                    && minFirstSampleAfter[i] >= firstSamples[i])) {
+                segmentStarts.add(i);
+            }
+            maxLastSampleBefore = Math.max(maxLastSampleBefore, firstSamples[i] + lengths[i]);
+        }
+        return segmentStarts;
+    }
+
+    /** Mixes a range of independent segments, splitting the range across worker threads. */
+    private class MixTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int SEGMENT_THRESHOLD = 4;
+
+        private final double[] combinedSamples;
+        private final int[] firstSamples;
+        private final int[] overlapSamples;
+        private final int[] lengths;
+        private final List<Integer> segmentStarts;
+        private final int minSegment;
+        private final int maxSegment; // Exclusive.
+
+        MixTask(
+                double[] combinedSamples,
+                int[] firstSamples,
+                int[] overlapSamples,
+                int[] lengths,
+                List<Integer> segmentStarts,
+                int minSegment,
+                int maxSegment) {
+            this.combinedSamples = combinedSamples;
+            this.firstSamples = firstSamples;
+            this.overlapSamples = overlapSamples;
+            this.lengths = lengths;
+            this.segmentStarts = segmentStarts;
+            this.minSegment = minSegment;
+            this.maxSegment = maxSegment;
+        }
+
+        @Override
+        protected void compute() {
+            if (maxSegment - minSegment <= SEGMENT_THRESHOLD) {
+                for (int segment = minSegment; segment < maxSegment; segment++) {
+                    int minFragment = segmentStarts.get(segment);
+                    int maxFragment = segment + 1 < segmentStarts.size()
+                            ? segmentStarts.get(segment + 1) : fragments.size();
+                    for (int i = minFragment; i < maxFragment; i++) {
+                        mixFragment(i);
+                    }
+                }
+                return;
+            }
+            int midSegment = (minSegment + maxSegment) / 2;
+            invokeAll(
+                    new MixTask(
+                            combinedSamples,
+                            firstSamples,
+                            overlapSamples,
+                            lengths,
+                            segmentStarts,
+                            minSegment,
+                            midSegment),
+                    new MixTask(
+                            combinedSamples,
+                            firstSamples,
+                            overlapSamples,
+                            lengths,
+                            segmentStarts,
+                            midSegment,
+                            maxSegment));
+        }
+
+        private void mixFragment(int index) {
+            double[] samples = fragments.get(index).getSamples();
+            int firstSample = firstSamples[index];
+            int lastSample = firstSample + lengths[index] - 1; // Off-by-1 error.
+            for (int curSample = firstSample; curSample <= lastSample; curSample++) {
+                if (curSample < firstSample + overlapSamples[index]) {
+                    combinedSamples[curSample] += samples[curSample - firstSample];
                 } else {
-                    combinedSamples[curSample] = fragment.getSamples()[curSample - firstSample];
+                    combinedSamples[curSample] = samples[curSample - firstSample];
                 }
             }
         }
-        WavData combinedWav = new WavData(durationMs, combinedSamples);
-        soundFileWriter.writeWavData(combinedWav, outputFile);
     }
 
     private static int msToNumSamples(double lengthMs) {
@@ -1,7 +1,7 @@
 package com.utsusynth.utsu.engine.wavtool;
 
 import com.utsusynth.utsu.model.song.Note;
-import com.utsusynth.utsu.model.song.Song;
+import com.utsusynth.utsu.model.song.SongSnapshot;
 
 import java.io.File;
 
@@ -11,7 +11,7 @@ public interface Wavtool {
 
     /* Add a note to the final file. */
     void addNewNote(
-            Song song,
+            SongSnapshot song,
             Note note,
             double noteLength,
             double expectedDelta,
@@ -81,17 +81,14 @@ public class AssetManager {
             String windowsPath = EXECUTABLES_SOURCE + "win64/";
             copyExecFile(windowsPath, executablesPath, "macres.exe", "MACRES");
             copyExecFile(windowsPath, executablesPath, "wavtool-yawu.exe", "WAVTOOL_YAWU");
-            copyExecFile(windowsPath, executablesPath, "frq0003gen.exe", "FRQ0003GEN");
         } else if (os.contains("mac")) {
             String macPath = EXECUTABLES_SOURCE + "Mac/";
             copyExecFile(macPath, executablesPath, "macres", "MACRES");
             copyExecFile(macPath, executablesPath, "wavtool-yawu", "WAVTOOL_YAWU");
-            copyExecFile(macPath, executablesPath, "frq0003gen", "FRQ0003GEN");
         } else {
             String linuxPath = EXECUTABLES_SOURCE + "linux64/";
             copyExecFile(linuxPath, executablesPath, "macres", "MACRES");
             copyExecFile(linuxPath, executablesPath, "wavtool-yawu", "WAVTOOL_YAWU");
-            copyExecFile(linuxPath, executablesPath, "frq0003gen", "FRQ0003GEN");
         }
 
         // Initialize configs.
@@ -160,14 +157,6 @@ public class AssetManager {
         return new File(executablesPath, "wavtool-yawu");
     }
 
-    public File getFrqGeneratorFile() {
-        String os = System.getProperty("os.name").toLowerCase();
-        if (os.contains("win")) {
-            return new File(executablesPath, "frq0003gen.exe");
-        }
-        return new File(executablesPath, "frq0003gen");
-    }
-
     public File getDefaultPresampIniFile() {
         return new File(configPath, "presamp.ini");
     }
@@ -0,0 +1,229 @@
+package com.utsusynth.utsu.files;
+
+import com.google.inject.Inject;
+import com.utsusynth.utsu.UtsuModule.SettingsPath;
+import com.utsusynth.utsu.common.data.PeakData;
+import com.utsusynth.utsu.common.data.WavData;
+import com.utsusynth.utsu.common.exception.ErrorLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps min/max peaks of wav files in memory and in the settings directory, so waveforms can be
+ * drawn without scanning every sample. Only the most recently used peak files are kept on disk.
+ */
+public class PeakCacheManager {
+    private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+    private static final String FILE_HEADER = "UPEAK001";
+    private static final int BASE_BUCKET_SIZE = 64;
+    private static final int MAX_FILES_IN_MEMORY = 64;
+    private static final int MAX_FILES_ON_DISK = 4096;
+    private static final int WRITES_PER_PRUNE = 256; // Disk may briefly hold this many extra.
+
+    private final File peaksPath;
+    private final Map<String, CachedPeaks> memoryCache;
+    private final AtomicInteger numWrites;
+
+    @Inject
+    public PeakCacheManager(@SettingsPath File settingsPath) {
+        peaksPath = new File(settingsPath, "peaks");
+        memoryCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPeaks> eldest) {
+                return size() > MAX_FILES_IN_MEMORY;
+            }
+        };
+        numWrites = new AtomicInteger(0);
+    }
+
+    /**
+     * Returns saved peaks for the current version of a wav file, looked up by its path,
+     * modification time, and size, without reading the wav file itself.
+     */
+    public Optional<PeakData> getCachedPeaks(File wavFile) {
+        String path = wavFile.getAbsolutePath();
+        long lastModified = wavFile.lastModified();
+        long fileSize = wavFile.length();
+        if (lastModified == 0) {
+            return Optional.empty(); // Wav file does not exist.
+        }
+        synchronized (memoryCache) {
+            CachedPeaks cached = memoryCache.get(path);
+            if (cached != null && cached.matches(lastModified, fileSize)) {
+                return Optional.of(cached.peaks);
+            }
+        }
+
+        Optional<PeakData> peaks = readPeakFile(getPeakFile(path), lastModified, fileSize);
+        if (peaks.isPresent()) {
+            synchronized (memoryCache) {
+                memoryCache.put(path, new CachedPeaks(peaks.get(), lastModified, fileSize));
+            }
+        }
+        return peaks;
+    }
+
+    /**
+     * Returns peaks for a wav file, computing and saving them from the given wav data if there
+     * are no peaks for the current version of the file.
+     */
+    public PeakData getPeaks(File wavFile, WavData wavData) {
+        Optional<PeakData> cached = getCachedPeaks(wavFile);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        String path = wavFile.getAbsolutePath();
+        long lastModified = wavFile.lastModified();
+        long fileSize = wavFile.length();
+        PeakData peaks = PeakData.fromWavData(wavData, BASE_BUCKET_SIZE);
+        writePeakFile(getPeakFile(path), peaks, lastModified, fileSize);
+        synchronized (memoryCache) {
+            memoryCache.put(path, new CachedPeaks(peaks, lastModified, fileSize));
+        }
+        return peaks;
+    }
+
+    private File getPeakFile(String wavPath) {
+        String fileName =
+                UUID.nameUUIDFromBytes(wavPath.getBytes(StandardCharsets.UTF_8)) + ".peaks";
+        return new File(peaksPath, fileName);
+    }
+
+    private Optional<PeakData> readPeakFile(File peakFile, long lastModified, long fileSize) {
+        if (!peakFile.canRead()) {
+            return Optional.empty();
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(peakFile)))) {
+            byte[] header = new byte[FILE_HEADER.length()];
+            input.readFully(header);
+            if (!FILE_HEADER.equals(new String(header, StandardCharsets.US_ASCII))
+                    || input.readLong() != lastModified
+                    || input.readLong() != fileSize) {
+                return Optional.empty(); // Peaks are from another version of the wav file.
+            }
+            // Peak files are pruned by modification time, so mark this one as recently used.
+            peakFile.setLastModified(System.currentTimeMillis());
+            double lengthMs = input.readDouble();
+            int numSamples = input.readInt();
+            int baseBucketSize = input.readInt();
+            int numLevels = input.readInt();
+            float[][] mins = new float[numLevels][];
+            float[][] maxes = new float[numLevels][];
+            for (int level = 0; level < numLevels; level++) {
+                int numBuckets = input.readInt();
+                mins[level] = new float[numBuckets];
+                maxes[level] = new float[numBuckets];
+                for (int bucket = 0; bucket < numBuckets; bucket++) {
+                    mins[level][bucket] = input.readFloat();
+                    maxes[level][bucket] = input.readFloat();
+                }
+            }
+            return Optional.of(new PeakData(lengthMs, numSamples, baseBucketSize, mins, maxes));
+        } catch (IOException e) {
+            // Corrupted or partially written peak files are simply regenerated.
+            errorLogger.logWarning(e);
+            return Optional.empty();
+        }
+    }
+
+    private void writePeakFile(File peakFile, PeakData peaks, long lastModified, long fileSize) {
+        if (!peaksPath.exists() && !peaksPath.mkdirs()) {
+            System.out.println("Error: Failed to create peaks path.");
+            return;
+        }
+        File tempFile;
+        try {
+            tempFile = File.createTempFile(peakFile.getName(), ".tmp", peaksPath);
+        } catch (IOException e) {
+            errorLogger.logWarning(e);
+            return;
+        }
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.write(FILE_HEADER.getBytes(StandardCharsets.US_ASCII));
+            output.writeLong(lastModified);
+            output.writeLong(fileSize);
+            output.writeDouble(peaks.getLengthMs());
+            output.writeInt(peaks.getNumSamples());
+            output.writeInt(peaks.getBaseBucketSize());
+            output.writeInt(peaks.getNumLevels());
+            for (int level = 0; level < peaks.getNumLevels(); level++) {
+                float[] mins = peaks.getMins(level);
+                float[] maxes = peaks.getMaxes(level);
+                output.writeInt(mins.length);
+                for (int bucket = 0; bucket < mins.length; bucket++) {
+                    output.writeFloat(mins[bucket]);
+                    output.writeFloat(maxes[bucket]);
+                }
+            }
+        } catch (IOException e) {
+            errorLogger.logWarning(e);
+            tempFile.delete();
+            return;
+        }
+        try {
+            // Replace the old peak file in one step so readers never see a partial file.
+            Files.move(
+                    tempFile.toPath(),
+                    peakFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            errorLogger.logWarning(e);
+            tempFile.delete();
+            return;
+        }
+        // Listing the whole cache is slow, so prune only now and then, off the caller's thread.
+        if (numWrites.getAndIncrement() % WRITES_PER_PRUNE == 0) {
+            Thread pruneThread = new Thread(this::prunePeakFiles);
+            pruneThread.setDaemon(true);
+            pruneThread.start();
+        }
+    }
+
+    // Deletes the least recently used peak files once there are too many of them.
+    private synchronized void prunePeakFiles() {
+        File[] peakFiles = peaksPath.listFiles(file -> file.getName().endsWith(".peaks"));
+        if (peakFiles == null || peakFiles.length <= MAX_FILES_ON_DISK) {
+            return;
+        }
+        Arrays.sort(peakFiles, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < peakFiles.length - MAX_FILES_ON_DISK; i++) {
+            peakFiles[i].delete();
+        }
+    }
+
+    private static class CachedPeaks {
+        private final PeakData peaks;
+        private final long lastModified;
+        private final long fileSize;
+
+        private CachedPeaks(PeakData peaks, long lastModified, long fileSize) {
+            this.peaks = peaks;
+            this.lastModified = lastModified;
+            this.fileSize = fileSize;
+        }
+
+        private boolean matches(long lastModified, long fileSize) {
+            return this.lastModified == lastModified && this.fileSize == fileSize;
+        }
+    }
+}
@@ -272,6 +272,23 @@ public class PreferencesManager {
         preferences.put("cache", cacheMode.name());
     }
 
+    /** Approximate memory, in MB, that loaded voicebanks may use before unused ones unload. */
+    public long getVoicebankMemoryMb() {
+        String memoryMb = preferences.containsKey("voicebankMemoryMb")
+                ? preferences.get("voicebankMemoryMb")
+                : defaultPreferences.get("voicebankMemoryMb");
+        try {
+            return Long.parseLong(memoryMb);
+        } catch (NumberFormatException e) {
+            errorLogger.logError(e);
+            return Long.parseLong(defaultPreferences.get("voicebankMemoryMb"));
+        }
+    }
+
+    public void setVoicebankMemoryMb(long memoryMb) {
+        preferences.put("voicebankMemoryMb", Long.toString(memoryMb));
+    }
+
     public File getResampler() {
         File resampler = preferences.containsKey("resampler")
                 ? new File(preferences.get("resampler"))
@@ -6,7 +6,7 @@ import com.google.common.collect.ImmutableList;
 import com.utsusynth.utsu.common.utils.RegionBounds;
 import com.utsusynth.utsu.common.utils.RoundUtils;
 import com.utsusynth.utsu.model.song.Note;
-import com.utsusynth.utsu.model.song.NoteIterator;
+import com.utsusynth.utsu.model.song.NoteCursor;
 import com.utsusynth.utsu.model.song.Song;
 import com.utsusynth.utsu.model.voicebank.LyricConfig;
 
@@ -27,31 +27,29 @@ public class Ust12Writer {
         ps.println("UST Version 1.20"); // Version looks different for plugin input.
         writeSettings(song, ps);
 
-        NoteIterator notes = song.getNoteIterator();
+        NoteCursor notes = song.getNoteCursor();
         boolean notesWritten = false;
-        int totalDelta = 0;
-        for (int index = 0; notes.hasNext(); index++) {
-            Note note = notes.next();
-            totalDelta += note.getDelta();
-            int prevDuration =
-                    notes.peekPrev().isPresent() ? notes.peekPrev().get().getDuration() : 0;
+        for (int index = 0; notes.next(); index++) {
+            Note note = notes.getNote();
+            int totalDelta = notes.getPosition();
+            int prevDuration = notes.hasPrevNote() ? notes.getPrevNote().getDuration() : 0;
 
             String noteHeader;
             if (bounds.intersects(totalDelta, totalDelta + note.getDuration())) {
                 // Case where note is in exported region.
                 noteHeader = "";
             } else {
-                if (notes.peekNext().isPresent() && bounds.intersects(
-                        totalDelta + note.getLength(),
-                        totalDelta + note.getLength() + notes.peekNext().get().getDuration())) {
+                if (notes.hasNextNote() && bounds.intersects(
+                        notes.getNextPosition(),
+                        notes.getNextPosition() + notes.getNextNote().getDuration())) {
                     // Case where note is just before exported region.
                     noteHeader = "[#PREV]";
                     // Rest notes before PREV aren't written.
                     index += getRestNotes(prevDuration, note).size();
                     headers[0] = getNoteLabel(index);
-                } else if (notes.peekPrev().isPresent() && bounds.intersects(
-                        totalDelta - note.getDelta(),
-                        totalDelta - note.getDelta() + notes.peekPrev().get().getDuration())) {
+                } else if (notes.hasPrevNote() && bounds.intersects(
+                        notes.getPrevPosition(),
+                        notes.getPrevPosition() + prevDuration)) {
                     // Case where note is just after exported region.
                     noteHeader = "[#NEXT]";
                     headers[1] = getNoteLabel(index + 1);
@@ -108,11 +106,10 @@ public class Ust12Writer {
         ps.println("UST Version1.2");
         writeSettings(song, ps);
 
-        NoteIterator notes = song.getNoteIterator();
-        for (int index = 0; notes.hasNext(); index++) {
-            Note note = notes.next();
-            int prevDuration =
-                    notes.peekPrev().isPresent() ? notes.peekPrev().get().getDuration() : 0;
+        NoteCursor notes = song.getNoteCursor();
+        for (int index = 0; notes.next(); index++) {
+            Note note = notes.getNote();
+            int prevDuration = notes.hasPrevNote() ? notes.getPrevNote().getDuration() : 0;
             // Write rest notes.
             for (int restLength : getRestNotes(prevDuration, note)) {
                 ps.println(getNoteLabel(index));
@@ -1,10 +1,10 @@
 package com.utsusynth.utsu.files.song;
 
 import java.io.PrintStream;
-import java.util.Iterator;
 import com.google.common.collect.ImmutableList;
 import com.utsusynth.utsu.common.utils.RoundUtils;
 import com.utsusynth.utsu.model.song.Note;
+import com.utsusynth.utsu.model.song.NoteCursor;
 import com.utsusynth.utsu.model.song.Song;
 
 /**
@@ -24,10 +24,10 @@ public class Ust20Writer {
         ps.println("Flags=" + song.getFlags());
         ps.println("Mode2=" + (song.getMode2() ? "True" : "False"));
 
-        Iterator<Note> iterator = song.getNoteIterator();
+        NoteCursor notes = song.getNoteCursor();
         int index = 0;
-        while (iterator.hasNext()) {
-            Note note = iterator.next();
+        while (notes.next()) {
+            Note note = notes.getNote();
             ps.println(getNoteLabel(index));
             ps.println("Delta=" + note.getDelta());
             ps.println("Duration=" + note.getDuration());
@@ -0,0 +1,182 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import com.utsusynth.utsu.common.data.LyricConfigData;
+import com.utsusynth.utsu.common.utils.RoundUtils;
+
+/**
+ * Checks lyric configs against the wav files they point to, finding configs that would not render,
+ * such as ones with missing files or offsets past the end of their sample. Only wav headers are
+ * read, in parallel, and each header is kept until its file changes.
+ */
+public class OtoValidator {
+    private static final int PCM_FORMAT = 1;
+    private static final int EXTENSIBLE_FORMAT = 0xFFFE;
+    private static final double ROUNDING_MS = 0.5; // Oto values are saved to one decimal place.
+
+    private final Map<File, WavHeader> headers = new ConcurrentHashMap<>();
+
+    /** What a wav file's header says about its sample, or why it could not be read. */
+    static class WavHeader {
+        private final long lastModified;
+        private final long fileLength;
+        final double lengthMs;
+        final Optional<String> problem;
+
+        private WavHeader(long lastModified, long fileLength, double lengthMs, String problem) {
+            this.lastModified = lastModified;
+            this.fileLength = fileLength;
+            this.lengthMs = lengthMs;
+            this.problem = Optional.ofNullable(problem);
+        }
+    }
+
+    /**
+     * Checks lyric configs, reading the headers of different wav files in parallel.
+     *
+     * @return A description of the first problem of each lyric that has one, by lyric.
+     */
+    public Map<String, String> validate(Iterator<LyricConfigData> dataIterator) {
+        Map<File, List<LyricConfigData>> dataByFile = new LinkedHashMap<>();
+        while (dataIterator.hasNext()) {
+            LyricConfigData data = dataIterator.next();
+            if (data != null) {
+                dataByFile.computeIfAbsent(data.getPathToFile(), key -> new ArrayList<>())
+                        .add(data);
+            }
+        }
+        Map<String, String> problems = new ConcurrentHashMap<>();
+        dataByFile.entrySet().parallelStream().forEach(entry -> {
+            Optional<WavHeader> header = getHeader(entry.getKey());
+            for (LyricConfigData data : entry.getValue()) {
+                checkConfig(data, header).ifPresent(
+                        problem -> problems.put(data.getLyric(), problem));
+            }
+        });
+        return problems;
+    }
+
+    /** Checks a single lyric config, such as one that was just edited. */
+    public Optional<String> validate(LyricConfigData data) {
+        return checkConfig(data, getHeader(data.getPathToFile()));
+    }
+
+    private static Optional<String> checkConfig(
+            LyricConfigData data, Optional<WavHeader> maybeHeader) {
+        if (!maybeHeader.isPresent()) {
+            return Optional.of("Missing file: " + data.getFileName());
+        }
+        WavHeader header = maybeHeader.get();
+        if (header.problem.isPresent()) {
+            return header.problem;
+        }
+        double offset = data.offsetProperty().get();
+        double consonant = data.consonantProperty().get();
+        double cutoff = data.cutoffProperty().get();
+        // Negative cutoffs are measured from the offset, positive ones from the end of the file.
+        double end = cutoff < 0 ? offset - cutoff : header.lengthMs - cutoff;
+        if (offset < 0) {
+            return Optional.of("Offset is negative");
+        } else if (offset >= header.lengthMs) {
+            return Optional.of("Offset is past the end of the sample ("
+                    + RoundUtils.roundDecimal(header.lengthMs, "#.#") + " ms)");
+        } else if (end > header.lengthMs + ROUNDING_MS) {
+            return Optional.of("Cutoff is past the end of the sample ("
+                    + RoundUtils.roundDecimal(header.lengthMs, "#.#") + " ms)");
+        } else if (end <= offset) {
+            return Optional.of("Cutoff is before the offset");
+        } else if (consonant < 0 || offset + consonant > end + ROUNDING_MS) {
+            return Optional.of("Consonant is outside of the sample");
+        }
+        return Optional.empty();
+    }
+
+    // Returns the header of a wav file, or empty if the file does not exist.
+    private Optional<WavHeader> getHeader(File wavFile) {
+        long lastModified = wavFile.lastModified();
+        long fileLength = wavFile.length();
+        if (lastModified == 0 || !wavFile.isFile()) {
+            return Optional.empty();
+        }
+        WavHeader header = headers.get(wavFile);
+        if (header == null
+                || header.lastModified != lastModified
+                || header.fileLength != fileLength) {
+            header = readHeader(wavFile, lastModified, fileLength);
+            headers.put(wavFile, header);
+        }
+        return Optional.of(header);
+    }
+
+    static WavHeader readHeader(File wavFile, long lastModified, long fileLength) {
+        try (RandomAccessFile file = new RandomAccessFile(wavFile, "r")) {
+            byte[] riffHeader = new byte[12];
+            if (fileLength < riffHeader.length) {
+                return new WavHeader(lastModified, fileLength, 0, "Not a WAV file");
+            }
+            file.readFully(riffHeader);
+            if (!getId(riffHeader, 0).equals("RIFF") || !getId(riffHeader, 8).equals("WAVE")) {
+                return new WavHeader(lastModified, fileLength, 0, "Not a WAV file");
+            }
+
+            // Skip from chunk header to chunk header until both format and data are found.
+            ByteBuffer format = null;
+            long dataSize = -1;
+            long position = riffHeader.length;
+            byte[] chunkHeader = new byte[8];
+            while (position + chunkHeader.length <= fileLength
+                    && (format == null || dataSize < 0)) {
+                file.seek(position);
+                file.readFully(chunkHeader);
+                String chunkId = getId(chunkHeader, 0);
+                long chunkSize = Integer.toUnsignedLong(
+                        ByteBuffer.wrap(chunkHeader).order(ByteOrder.LITTLE_ENDIAN).getInt(4));
+                position += chunkHeader.length;
+                if (chunkId.equals("fmt ") && chunkSize >= 16) {
+                    byte[] formatBytes = new byte[16];
+                    file.readFully(formatBytes);
+                    format = ByteBuffer.wrap(formatBytes).order(ByteOrder.LITTLE_ENDIAN);
+                } else if (chunkId.equals("data")) {
+                    // Some files have a wrong data size, so never count past the end of the file.
+                    dataSize = Math.min(chunkSize, fileLength - position);
+                }
+                position += chunkSize + chunkSize % 2; // Chunks are padded to even sizes.
+            }
+            if (format == null || dataSize < 0) {
+                return new WavHeader(lastModified, fileLength, 0, "WAV file has no audio data");
+            }
+
+            int formatTag = Short.toUnsignedInt(format.getShort(0));
+            int numChannels = Short.toUnsignedInt(format.getShort(2));
+            long byteRate = Integer.toUnsignedLong(format.getInt(8));
+            int bitsPerSample = Short.toUnsignedInt(format.getShort(14));
+            if (byteRate == 0
+                    || (formatTag != PCM_FORMAT && formatTag != EXTENSIBLE_FORMAT)) {
+                return new WavHeader(lastModified, fileLength, 0, "WAV file is not PCM audio");
+            } else if (numChannels != 1 || bitsPerSample != 16) {
+                String problem = "Expected 16-bit mono WAV, found " + bitsPerSample + "-bit with "
+                        + numChannels + " channels";
+                return new WavHeader(lastModified, fileLength, 0, problem);
+            }
+            return new WavHeader(lastModified, fileLength, dataSize * 1000.0 / byteRate, null);
+        } catch (IOException e) {
+            return new WavHeader(lastModified, fileLength, 0, "Could not read WAV file");
+        }
+    }
+
+    private static String getId(byte[] bytes, int start) {
+        return new String(bytes, start, 4, StandardCharsets.US_ASCII);
+    }
+}
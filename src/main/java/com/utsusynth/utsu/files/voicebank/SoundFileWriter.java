@@ -1,5 +1,6 @@
 package com.utsusynth.utsu.files.voicebank;
 
+import com.utsusynth.utsu.common.data.FrequencyData;
 import com.utsusynth.utsu.common.data.WavData;
 import com.utsusynth.utsu.common.exception.ErrorLogger;
 import com.utsusynth.utsu.common.utils.RoundUtils;
@@ -10,13 +11,42 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 /**
- * Writes .wav files.
+ * Writes .frq and .wav files.
  */
 public class SoundFileWriter {
     private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
 
+    /**
+     * Writes frequency data in the FREQ0003 format read by SoundFileReader and resamplers.
+     *
+     * @return Whether the file was written successfully.
+     */
+    public boolean writeFrqData(FrequencyData frqData, File frqFile) {
+        int numBlocks = frqData.getFrequencies().length;
+        ByteBuffer buffer = ByteBuffer.allocate(40 + numBlocks * 16);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("FREQ0003".getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(frqData.getSamplesPerFreqValue()); // Number of samples per frequency value.
+        buffer.putDouble(frqData.getAverageFreq()); // Average F0 (pitch) of the sound.
+        buffer.put(new byte[16]); // 16 bytes of empty space.
+        buffer.putInt(numBlocks);
+        for (int i = 0; i < numBlocks; i++) {
+            buffer.putDouble(frqData.getFrequencies()[i]);
+            buffer.putDouble(frqData.getAmplitudes()[i]);
+        }
+        try {
+            Files.write(frqFile.toPath(), buffer.array());
+            return true;
+        } catch (IOException e) {
+            errorLogger.logError(e);
+            return false;
+        }
+    }
+
     public void writeWavData(WavData wavData, File wavFile) {
         writeWavData(wavData, wavFile, 0);
     }
@@ -0,0 +1,143 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import com.google.inject.Inject;
+import com.utsusynth.utsu.UtsuModule.SettingsPath;
+import com.utsusynth.utsu.common.exception.ErrorLogger;
+import com.utsusynth.utsu.files.voicebank.VoicebankReader.OtoEntry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps the parsed oto files of each voicebank in the settings directory, so that an unchanged
+ * voicebank can be reopened with one sequential read. An index is only used if every directory
+ * and oto file it was built from still has the same modification time and size.
+ */
+public class VoicebankIndex {
+    private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+    private static final String FILE_HEADER = "UVBIDX02";
+
+    private final File indexPath;
+
+    @Inject
+    public VoicebankIndex(@SettingsPath File settingsPath) {
+        indexPath = new File(settingsPath, "voicebanks");
+    }
+
+    /** Returns the indexed oto entries of a voicebank, if its source files have not changed. */
+    Optional<List<OtoEntry>> read(File pathToVoicebank) {
+        File indexFile = getIndexFile(pathToVoicebank);
+        if (!indexFile.canRead()) {
+            return Optional.empty();
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            byte[] header = new byte[FILE_HEADER.length()];
+            input.readFully(header);
+            if (!FILE_HEADER.equals(new String(header, StandardCharsets.US_ASCII))
+                    || !input.readUTF().equals(pathToVoicebank.getAbsolutePath())) {
+                return Optional.empty();
+            }
+            int numSourceFiles = input.readInt();
+            for (int i = 0; i < numSourceFiles; i++) {
+                File sourceFile = new File(input.readUTF());
+                if (sourceFile.lastModified() != input.readLong()
+                        || sourceFile.length() != input.readLong()) {
+                    return Optional.empty(); // Index is from another version of the voicebank.
+                }
+            }
+            int numEntries = input.readInt();
+            List<OtoEntry> entries = new ArrayList<>(numEntries);
+            for (int i = 0; i < numEntries; i++) {
+                String trueLyric = input.readUTF();
+                String fileName = input.readUTF();
+                double[] configValues = new double[5];
+                for (int j = 0; j < 5; j++) {
+                    configValues[j] = input.readDouble();
+                }
+                boolean hasFrq = input.readBoolean();
+                String otoFile = input.readUTF();
+                entries.add(new OtoEntry(trueLyric, fileName, configValues, hasFrq, otoFile));
+            }
+            return Optional.of(entries);
+        } catch (IOException e) {
+            // Corrupted or partially written indexes are simply rebuilt.
+            errorLogger.logWarning(e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Saves the oto entries of a voicebank.
+     *
+     * @param sourceFiles Every directory and oto file the entries were read from.
+     */
+    void write(File pathToVoicebank, List<File> sourceFiles, List<OtoEntry> entries) {
+        if (!indexPath.exists() && !indexPath.mkdirs()) {
+            System.out.println("Error: Failed to create voicebank index path.");
+            return;
+        }
+        File indexFile = getIndexFile(pathToVoicebank);
+        File tempFile;
+        try {
+            tempFile = File.createTempFile(indexFile.getName(), ".tmp", indexPath);
+        } catch (IOException e) {
+            errorLogger.logWarning(e);
+            return;
+        }
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.write(FILE_HEADER.getBytes(StandardCharsets.US_ASCII));
+            output.writeUTF(pathToVoicebank.getAbsolutePath());
+            output.writeInt(sourceFiles.size());
+            for (File sourceFile : sourceFiles) {
+                output.writeUTF(sourceFile.getAbsolutePath());
+                output.writeLong(sourceFile.lastModified());
+                output.writeLong(sourceFile.length());
+            }
+            output.writeInt(entries.size());
+            for (OtoEntry entry : entries) {
+                output.writeUTF(entry.trueLyric);
+                output.writeUTF(entry.fileName);
+                for (double configValue : entry.configValues) {
+                    output.writeDouble(configValue);
+                }
+                output.writeBoolean(entry.hasFrq);
+                output.writeUTF(entry.otoFile);
+            }
+        } catch (IOException e) {
+            errorLogger.logWarning(e);
+            tempFile.delete();
+            return;
+        }
+        try {
+            // Replace the old index in one step so readers never see a partial index.
+            Files.move(
+                    tempFile.toPath(),
+                    indexFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            errorLogger.logWarning(e);
+        }
+    }
+
+    private File getIndexFile(File pathToVoicebank) {
+        String fileName = UUID.nameUUIDFromBytes(
+                pathToVoicebank.getAbsolutePath().getBytes(StandardCharsets.UTF_8)) + ".index";
+        return new File(indexPath, fileName);
+    }
+}
@@ -10,7 +10,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,9 +41,6 @@ import org.yaml.snakeyaml.nodes.ScalarNode;
 public class VoicebankReader {
     private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
 
-    private static final Pattern LYRIC_PATTERN = Pattern.compile("(.+\\.wav)=([^,]*),");
-    private static final Pattern LYRIC_CONFIG_PATTERN =
-            Pattern.compile("([^,]*),([^,]*),([^,]*),([^,]*),([^,]*)");
     private static final Pattern PREFIX_PATTERN =
             Pattern.compile("([a-gA-G]#?[1-7])\\t(\\S.*)");
     private static final Pattern SUFFIX_PATTERN =
@@ -46,6 +49,7 @@ public class VoicebankReader {
     private final AssetManager assetManager;
     private final PreferencesManager preferencesManager;
     private final PresampConfigReader presampConfigReader;
+    private final VoicebankIndex voicebankIndex;
     private final Provider<Voicebank> voicebankProvider;
     private final Provider<PresampConfig> presampConfigProvider;
 
@@ -57,11 +61,13 @@ public class VoicebankReader {
             AssetManager assetManager,
             PreferencesManager preferencesManager,
             PresampConfigReader presampConfigReader,
+            VoicebankIndex voicebankIndex,
             Provider<Voicebank> voicebankProvider,
             Provider<PresampConfig> presampConfigProvider) {
         this.assetManager = assetManager;
         this.preferencesManager = preferencesManager;
         this.presampConfigReader = presampConfigReader;
+        this.voicebankIndex = voicebankIndex;
         this.voicebankProvider = voicebankProvider;
         this.presampConfigProvider = presampConfigProvider;
     }
@@ -105,28 +111,16 @@ public class VoicebankReader {
         File readmeFile = pathToVoicebank.toPath().resolve("readme.txt").toFile();
         builder.setDescription(UtsuFileUtils.readConfigFile(readmeFile));
 
-        // Parse all oto_ini.txt and oto.ini files in arbitrary order.
-        try {
-            Files.walkFileTree(
-                    pathToVoicebank.toPath(),
-                    EnumSet.of(FileVisitOption.FOLLOW_LINKS),
-                    10,
-                    new SimpleFileVisitor<>() {
-                        @Override
-                        public FileVisitResult visitFile(Path path, BasicFileAttributes attr) {
-                            for (String otoName : ImmutableSet.of("oto.ini", "oto_ini.txt")) {
-                                if (path.endsWith(otoName)) {
-                                    Path pathToFile = path.toFile().getParentFile().toPath();
-                                    parseOtoIni(pathToVoicebank, pathToFile, otoName, builder);
-                                    break;
-                                }
-                            }
-                            return FileVisitResult.CONTINUE;
-                        }
-                    });
-        } catch (IOException e) {
-            // TODO: Handle this.
-            errorLogger.logError(e);
+        // Read lyrics from the voicebank index if possible, otherwise from oto files.
+        List<OtoEntry> otoEntries = voicebankIndex.read(pathToVoicebank)
+                .orElseGet(() -> parseAllOtoInis(pathToVoicebank));
+        for (OtoEntry entry : otoEntries) {
+            builder.addLyric(
+                    entry.trueLyric,
+                    entry.fileName,
+                    entry.configValues,
+                    entry.hasFrq,
+                    entry.otoFile);
         }
 
         // Parse pitch map in arbitrary order, if present.
@@ -140,6 +134,41 @@ public class VoicebankReader {
         return builder.build();
     }
 
+    /**
+     * Reads one oto file of a loaded voicebank again, such as after another program edited it,
+     * and replaces the lyrics it defines. Lyrics read from other oto files are left alone, even
+     * if they are in the same folder.
+     *
+     * @return Lyrics whose configs were added, removed, or changed.
+     */
+    public Set<String> reloadOtoIni(Voicebank voicebank, File pathToVoicebank, Path otoFile) {
+        Voicebank.Builder builder =
+                voicebankProvider.get().toBuilder().setPathToVoicebank(pathToVoicebank);
+        if (otoFile.toFile().canRead()) {
+            for (OtoEntry entry : parseOtoIni(pathToVoicebank, otoFile)) {
+                builder.addLyric(
+                        entry.trueLyric,
+                        entry.fileName,
+                        entry.configValues,
+                        entry.hasFrq,
+                        entry.otoFile);
+            }
+        }
+        // A deleted oto file no longer defines any lyrics.
+        return voicebank.replaceLyrics(
+                LyricConfig.getFileName(pathToVoicebank, otoFile.toFile()), builder.build());
+    }
+
+    /** Reads the pitch map of a loaded voicebank again, such as after another program edited it. */
+    public void reloadPitchMap(Voicebank voicebank, File pathToVoicebank) {
+        Voicebank.Builder builder =
+                voicebankProvider.get().toBuilder().setPathToVoicebank(pathToVoicebank);
+        for (String pitchMapName : ImmutableSet.of("prefixmap", "prefix.map")) {
+            parsePitchMap(pathToVoicebank.toPath().resolve(pitchMapName).toFile(), builder);
+        }
+        voicebank.replacePitchMap(builder.build());
+    }
+
     private void parseCharacterData(File pathToVoicebank, Voicebank.Builder builder) {
         String characterData = UtsuFileUtils.readConfigFile(
                 pathToVoicebank.toPath().resolve("character.txt").toFile());
@@ -194,43 +223,178 @@ public class VoicebankReader {
         }
     }
 
-    private void parseOtoIni(
-            File pathToVoicebank,
-            Path pathToOtoFile,
-            String otoFile,
-            Voicebank.Builder builder) {
-        String otoData = UtsuFileUtils.readConfigFile(pathToOtoFile.resolve(otoFile).toFile());
-        for (String rawLine : otoData.split("\n")) {
-            String line = rawLine.trim();
-            Matcher matcher = LYRIC_PATTERN.matcher(line);
-            if (matcher.find()) {
-                String fileName = matcher.group(1); // Assuming this is a .wav file
-                String lyricName = matcher.group(2);
-                if (lyricName.isEmpty()) {
-                    // If no alias provided, use the file name as an adhoc alias.
-                    lyricName = fileName.substring(0, fileName.length() - 4);
-                }
-                Matcher configMatcher = LYRIC_CONFIG_PATTERN.matcher(line.substring(matcher.end()));
-                if (!configMatcher.find() || configMatcher.groupCount() != 5 || fileName == null) {
-                    System.out.println("Received unexpected results while parsing oto.ini");
-                    continue;
-                }
-                String[] configValues = new String[5];
-                for (int i = 0; i < 5; i++) {
-                    configValues[i] = configMatcher.group(i + 1).equals("")
-                            ? "0" : configMatcher.group(i + 1);
+    private List<OtoEntry> parseAllOtoInis(File pathToVoicebank) {
+        // Find all oto_ini.txt and oto.ini files in arbitrary order, along with every directory
+        // that could gain an oto or frq file.
+        List<Path> otoFiles = new ArrayList<>();
+        List<File> sourceFiles = new ArrayList<>();
+        boolean foundAllFiles = true;
+        try {
+            Files.walkFileTree(
+                    pathToVoicebank.toPath(),
+                    EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+                    10,
+                    new SimpleFileVisitor<>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(
+                                Path path, BasicFileAttributes attr) {
+                            sourceFiles.add(path.toFile());
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path path, BasicFileAttributes attr) {
+                            for (String otoName : ImmutableSet.of("oto.ini", "oto_ini.txt")) {
+                                if (path.endsWith(otoName)) {
+                                    otoFiles.add(path);
+                                    sourceFiles.add(path.toFile());
+                                    break;
+                                }
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            // TODO: Handle this.
+            errorLogger.logError(e);
+            foundAllFiles = false;
+        }
+
+        // Parse oto files in parallel, but keep their lyrics in the order the files were found
+        // so that the first config for each lyric still wins.
+        List<OtoEntry> otoEntries = otoFiles.parallelStream()
+                .map(otoFile -> parseOtoIni(pathToVoicebank, otoFile))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        if (foundAllFiles) {
+            voicebankIndex.write(pathToVoicebank, sourceFiles, otoEntries);
+        }
+        return otoEntries;
+    }
+
+    /** Parsed line of an oto file, kept as raw values until its config is needed. */
+    static class OtoEntry {
+        final String trueLyric;
+        final String fileName; // Relative to the voicebank, example: C3/de.wav
+        final double[] configValues;
+        final boolean hasFrq;
+        final String otoFile; // File this line was read from, example: C3/oto.ini
+
+        OtoEntry(
+                String trueLyric,
+                String fileName,
+                double[] configValues,
+                boolean hasFrq,
+                String otoFile) {
+            this.trueLyric = trueLyric;
+            this.fileName = fileName;
+            this.configValues = configValues;
+            this.hasFrq = hasFrq;
+            this.otoFile = otoFile;
+        }
+    }
+
+    private List<OtoEntry> parseOtoIni(File pathToVoicebank, Path otoFile) {
+        Path pathToOtoFile = otoFile.getParent();
+        String otoFileName = LyricConfig.getFileName(pathToVoicebank, otoFile.toFile());
+        String otoData = UtsuFileUtils.readConfigFile(otoFile.toFile());
+
+        // List the directory once instead of checking for each frq file separately.
+        Set<String> fileNames = new HashSet<>();
+        String[] listedFiles = pathToOtoFile.toFile().list();
+        if (listedFiles != null) {
+            fileNames.addAll(List.of(listedFiles));
+        }
+
+        List<OtoEntry> entries = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart < otoData.length()) {
+            int lineEnd = otoData.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = otoData.length();
+            }
+            String line = otoData.substring(lineStart, lineEnd).trim();
+            lineStart = lineEnd + 1;
+
+            Optional<OtoLine> maybeOtoLine = OtoLine.parse(line);
+            if (!maybeOtoLine.isPresent()) {
+                continue;
+            }
+            OtoLine otoLine = maybeOtoLine.get();
+            String fileName = otoLine.fileName; // Assuming this is a .wav file
+            String lyricName = otoLine.lyric;
+            if (lyricName.isEmpty()) {
+                // If no alias provided, use the file name as an adhoc alias.
+                lyricName = fileName.substring(0, fileName.length() - 4);
+            }
+            if (otoLine.configValues.length != 5) {
+                System.out.println("Received unexpected results while parsing oto.ini");
+                continue;
+            }
+            // Search for a frq file.
+            String frqName = fileName.substring(0, fileName.length() - 4) + "_wav.frq";
+            boolean hasFrq = frqName.contains("/") || frqName.contains("\\")
+                    ? pathToOtoFile.resolve(frqName).toFile().canRead()
+                    : fileNames.contains(frqName);
+            double[] configValues = new double[5];
+            for (int i = 0; i < 5; i++) {
+                configValues[i] = Double.parseDouble(otoLine.configValues[i]);
+            }
+            entries.add(new OtoEntry(
+                    lyricName,
+                    LyricConfig.getFileName(
+                            pathToVoicebank, pathToOtoFile.resolve(fileName).toFile()),
+                    configValues,
+                    hasFrq,
+                    otoFileName));
+        }
+        return entries;
+    }
+
+    /** One line of an oto.ini file, in the format "file.wav=alias,1,2,3,4,5". */
+    static class OtoLine {
+        final String fileName;
+        final String lyric;
+        final String[] configValues; // Empty values are replaced with "0".
+
+        private OtoLine(String fileName, String lyric, String[] configValues) {
+            this.fileName = fileName;
+            this.lyric = lyric;
+            this.configValues = configValues;
+        }
+
+        /**
+         * Parses a trimmed line. File names end at the last ".wav=" that is followed by an alias
+         * and a comma, and may contain any other characters.
+         */
+        static Optional<OtoLine> parse(String line) {
+            int wavIndex = line.lastIndexOf(".wav=");
+            while (wavIndex >= 1 && line.indexOf(',', wavIndex + 5) < 0) {
+                wavIndex = line.lastIndexOf(".wav=", wavIndex - 1);
+            }
+            if (wavIndex < 1) {
+                return Optional.empty();
+            }
+            int lyricEnd = line.indexOf(',', wavIndex + 5);
+            String fileName = line.substring(0, wavIndex + 4);
+            String lyric = line.substring(wavIndex + 5, lyricEnd);
+
+            // Read the next five comma-separated values, ignoring anything after them.
+            String[] configValues = new String[5];
+            int valueStart = lyricEnd + 1;
+            for (int i = 0; i < 5; i++) {
+                int valueEnd = line.indexOf(',', valueStart);
+                if (valueEnd < 0) {
+                    if (i < 4) {
+                        return Optional.of(new OtoLine(fileName, lyric, new String[0]));
+                    }
+                    valueEnd = line.length();
                 }
-                // Search for a frq file.
-                String frqName = fileName.substring(0, fileName.length() - 4) + "_wav.frq";
-                File frqFile = pathToOtoFile.resolve(frqName).toFile();
-                builder.addLyric(
-                        new LyricConfig(
-                                pathToVoicebank,
-                                pathToOtoFile.resolve(fileName).toFile(),
-                                lyricName,
-                                configValues),
-                        frqFile.canRead());
+                String value = line.substring(valueStart, valueEnd);
+                configValues[i] = value.isEmpty() ? "0" : value;
+                valueStart = valueEnd + 1;
             }
+            return Optional.of(new OtoLine(fileName, lyric, configValues));
         }
     }
 
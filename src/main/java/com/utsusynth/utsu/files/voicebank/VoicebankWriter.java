@@ -1,42 +1,58 @@
 package com.utsusynth.utsu.files.voicebank;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
-import java.nio.CharBuffer;
+import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
-import java.nio.charset.CodingErrorAction;
-import java.nio.charset.MalformedInputException;
-import java.nio.charset.UnmappableCharacterException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import com.google.common.collect.ImmutableSet;
 import com.utsusynth.utsu.common.data.PitchMapData;
 import com.utsusynth.utsu.common.exception.ErrorLogger;
 import com.utsusynth.utsu.common.utils.RoundUtils;
+import com.utsusynth.utsu.files.voicebank.VoicebankReader.OtoLine;
 import com.utsusynth.utsu.model.voicebank.LyricConfig;
 import com.utsusynth.utsu.model.voicebank.LyricConfigMap;
 import com.utsusynth.utsu.model.voicebank.Voicebank;
 
+/**
+ * Saves a voicebank to its directory. Only oto files of categories edited since the last save are
+ * written again, and every file is written to a temp file first and then moved into place, so a
+ * failed save never leaves a partly written file behind.
+ */
 public class VoicebankWriter {
     private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
-    private static CharsetEncoder sjisEncoder =
-            Charset.forName("SJIS").newEncoder().onMalformedInput(CodingErrorAction.REPORT)
-                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private static final Charset SJIS = Charset.forName("SJIS");
+    private static final CharsetEncoder sjisEncoder = SJIS.newEncoder();
+
+    private interface ContentWriter {
+        void write(BufferedWriter writer) throws IOException;
+    }
 
     public void writeVoicebankToDirectory(Voicebank voicebank, File saveDir) {
         // Save character.txt.
         File characterFile = saveDir.toPath().resolve("character.txt").toFile();
         String voiceData = voicebank.getName() + voicebank.getAuthor() + voicebank.getImagePath();
-        try (PrintStream ps = new PrintStream(characterFile, getCharset(voiceData))) {
-            ps.println("name=" + voicebank.getName());
-            ps.println("author=" + voicebank.getAuthor());
-            ps.println("image=" + voicebank.getImageName());
-            ps.flush();
-        } catch (FileNotFoundException | UnsupportedEncodingException e) {
+        try {
+            writeAtomically(characterFile, getCharset(voiceData), writer -> {
+                writeLine(writer, "name=" + voicebank.getName());
+                writeLine(writer, "author=" + voicebank.getAuthor());
+                writeLine(writer, "image=" + voicebank.getImageName());
+            });
+        } catch (IOException e) {
             // TODO: Handle this.
             errorLogger.logError(e);
         }
@@ -44,58 +60,16 @@ public class VoicebankWriter {
         // Save readme.txt.
         File readmeFile = saveDir.toPath().resolve("readme.txt").toFile();
         String description = voicebank.getDescription();
-        try (PrintStream ps = new PrintStream(readmeFile, getCharset(description))) {
-            ps.print(description);
-            ps.flush();
-        } catch (FileNotFoundException | UnsupportedEncodingException e) {
+        try {
+            writeAtomically(
+                    readmeFile, getCharset(description), writer -> writer.write(description));
+        } catch (IOException e) {
             // TODO: Handle this.
             errorLogger.logError(e);
         }
 
-        // Save lyric configs. Include blank file in main directory if necessary.
-        File utfOtoFile = saveDir.toPath().resolve("oto_ini.txt").toFile();
-        try (PrintStream utfPs = new PrintStream(utfOtoFile, "UTF-8")) {
-            utfPs.println("#Charset:UTF-8");
-            ImmutableSet<String> categories = ImmutableSet.<String>builder()
-                    .addAll(voicebank.getCategories()).add(LyricConfigMap.MAIN_CATEGORY).build();
-            for (String category : categories) {
-                // For now, always use foldered oto structure for oto.ini.
-                Path categoryDir = category.equals(LyricConfigMap.MAIN_CATEGORY) ? saveDir.toPath()
-                        : saveDir.toPath().resolve(category);
-                File otoFile = categoryDir.resolve("oto.ini").toFile();
-                PrintStream ps = new PrintStream(otoFile, "SJIS");
-                Iterator<LyricConfig> iterator = voicebank.getLyricConfigs(category);
-                while (iterator.hasNext()) {
-                    LyricConfig config = iterator.next();
-                    if (config == null) {
-                        continue;
-                    }
-                    for (PrintStream stream : ImmutableSet.of(utfPs, ps)) {
-                        String charset = getCharset(config.getFilename() + config.getTrueLyric());
-                        if (!charset.equals("SJIS") && stream.equals(ps)) {
-                            continue;
-                        }
-                        if (stream.equals(utfPs)) {
-                            stream.print(config.getFilename() + "=");
-                        } else {
-                            stream.print(config.getPathToFile().getName() + "=");
-                        }
-                        stream.print(config.getTrueLyric() + ",");
-                        stream.print(RoundUtils.roundDecimal(config.getOffset(), "#.#") + ",");
-                        stream.print(RoundUtils.roundDecimal(config.getConsonant(), "#.#") + ",");
-                        stream.print(RoundUtils.roundDecimal(config.getCutoff(), "#.#") + ",");
-                        stream.print(
-                                RoundUtils.roundDecimal(config.getPreutterance(), "#.#") + ",");
-                        stream.print(RoundUtils.roundDecimal(config.getOverlap(), "#.#") + "\n");
-                    }
-                }
-                ps.flush();
-                ps.close();
-            }
-        } catch (FileNotFoundException | UnsupportedEncodingException e) {
-            // TODO: Handle this.
-            errorLogger.logError(e);
-        }
+        // Save lyric configs.
+        writeOtoFiles(voicebank, saveDir);
 
         // Save pitch map.
         for (String prefixmapName : ImmutableSet.of("prefixmap", "prefix.map")) {
@@ -103,46 +77,196 @@ public class VoicebankWriter {
             if (pitchFile.canWrite() || pitchFile.isDirectory()) {
                 continue; // Don't try to overwrite a directory.
             }
-            String charset = prefixmapName.equals("prefix.map") ? "SJIS" : "UTF-8";
-            try (PrintStream ps = new PrintStream(pitchFile, charset)) {
-                if (charset.equals("UTF-8")) {
-                    ps.println("#Charset:UTF-8");
-                }
-                Iterator<PitchMapData> iterator = voicebank.getPitchData();
-                while (iterator.hasNext()) {
-                    PitchMapData data = iterator.next();
-                    if (data == null) {
-                        continue;
+            Charset charset = prefixmapName.equals("prefix.map") ? SJIS : StandardCharsets.UTF_8;
+            try {
+                writeAtomically(pitchFile, charset, writer -> {
+                    if (charset.equals(StandardCharsets.UTF_8)) {
+                        writeLine(writer, "#Charset:UTF-8");
                     }
-                    // Don't try to save Unicode characters to prefix.map.
-                    String pitchCharset = getCharset(
-                            data.getPitch() +data.getPrefix() + data.getSuffix());
-                    if (charset.equals("SJIS") && !pitchCharset.equals("SJIS")) {
-                        continue;
+                    Iterator<PitchMapData> iterator = voicebank.getPitchData();
+                    while (iterator.hasNext()) {
+                        PitchMapData data = iterator.next();
+                        if (data == null) {
+                            continue;
+                        }
+                        // Don't try to save Unicode characters to prefix.map.
+                        if (charset.equals(SJIS) && !canEncodeSjis(
+                                data.getPitch() + data.getPrefix() + data.getSuffix())) {
+                            continue;
+                        }
+                        writer.write(data.getPitch()
+                                + "\t" + data.getPrefix() +
+                                "\t" + data.getSuffix() + "\n");
                     }
-                    ps.print(data.getPitch()
-                            + "\t" + data.getPrefix() +
-                            "\t" + data.getSuffix() + "\n");
-                }
-                ps.flush();
-            } catch (FileNotFoundException | UnsupportedEncodingException e) {
+                });
+            } catch (IOException e) {
                 // TODO: Handle this.
                 errorLogger.logError(e);
             }
         }
     }
 
-    private String getCharset(String toRender) {
-        // Default to Shift-JIS unless there are Unicode-only characters.
-        String charset = "SJIS";
+    // Saves lyric configs of edited categories. Includes blank file in main directory if
+    // necessary.
+    private void writeOtoFiles(Voicebank voicebank, File saveDir) {
+        Set<String> toSave = voicebank.takeUnsavedCategories();
+        ImmutableSet<String> categories = ImmutableSet.<String>builder()
+                .addAll(voicebank.getCategories()).add(LyricConfigMap.MAIN_CATEGORY).build();
+        Map<String, List<String>> utfLines = new HashMap<>();
+        List<String> utfOnlyLyrics = new ArrayList<>();
+        for (String category : categories) {
+            // For now, always use foldered oto structure for oto.ini.
+            Path categoryDir = category.equals(LyricConfigMap.MAIN_CATEGORY) ? saveDir.toPath()
+                    : saveDir.toPath().resolve(category);
+            File otoFile = categoryDir.resolve("oto.ini").toFile();
+            if (!toSave.contains(category) && otoFile.exists()) {
+                continue;
+            }
+            List<String> categoryUtfLines = new ArrayList<>();
+            List<String> categoryUtfOnlyLyrics = new ArrayList<>();
+            List<String> sjisLyrics = new ArrayList<>();
+            try {
+                writeAtomically(otoFile, SJIS, writer -> {
+                    Iterator<LyricConfig> iterator = voicebank.getLyricConfigs(category);
+                    while (iterator.hasNext()) {
+                        LyricConfig config = iterator.next();
+                        if (config == null) {
+                            continue;
+                        }
+                        String values = getOtoValues(config);
+                        categoryUtfLines.add(config.getFilename() + "=" + values);
+                        // Don't try to save Unicode characters to oto.ini.
+                        if (canEncodeSjis(config.getFilename() + config.getTrueLyric())) {
+                            writer.write(config.getPathToFile().getName() + "=" + values);
+                            sjisLyrics.add(config.getTrueLyric());
+                        } else {
+                            categoryUtfOnlyLyrics.add(config.getTrueLyric());
+                        }
+                    }
+                });
+                utfLines.put(category, categoryUtfLines);
+                utfOnlyLyrics.addAll(categoryUtfOnlyLyrics);
+                voicebank.setOtoFile(LyricConfig.getFileName(saveDir, otoFile), sjisLyrics);
+            } catch (IOException e) {
+                // TODO: Handle this.
+                errorLogger.logError(e);
+                voicebank.markUnsaved(ImmutableSet.of(category));
+            }
+        }
+
+        // Save oto_ini.txt, which has every category, reusing lines of categories not saved again.
+        File utfOtoFile = saveDir.toPath().resolve("oto_ini.txt").toFile();
+        if (utfLines.isEmpty() && utfOtoFile.exists()) {
+            return; // Nothing was edited.
+        }
+        if (!utfLines.keySet().containsAll(categories)) {
+            Optional<Map<String, List<String>>> savedLines = readUtfOtoLines(utfOtoFile);
+            if (savedLines.isPresent()) {
+                savedLines.get().forEach(utfLines::putIfAbsent);
+            } else {
+                // Fall back to writing every category again.
+                for (String category : categories) {
+                    utfLines.computeIfAbsent(category, key -> getUtfOtoLines(voicebank, key));
+                }
+            }
+        }
         try {
-            sjisEncoder.encode(CharBuffer.wrap(toRender.toCharArray()));
-        } catch (MalformedInputException | UnmappableCharacterException e) {
-            charset = "UTF-8";
+            writeAtomically(utfOtoFile, StandardCharsets.UTF_8, writer -> {
+                writeLine(writer, "#Charset:UTF-8");
+                for (String category : categories) {
+                    for (String line : utfLines.getOrDefault(category, List.of())) {
+                        writer.write(line);
+                    }
+                }
+            });
+            voicebank.setOtoFile(LyricConfig.getFileName(saveDir, utfOtoFile), utfOnlyLyrics);
         } catch (IOException e) {
             // TODO: Handle this.
             errorLogger.logError(e);
+            voicebank.markUnsaved(categories);
+        }
+    }
+
+    // Everything in an oto line after the file name, such as "ka,1,2,3,4,5\n".
+    private static String getOtoValues(LyricConfig config) {
+        return config.getTrueLyric() + ","
+                + RoundUtils.roundDecimal(config.getOffset(), "#.#") + ","
+                + RoundUtils.roundDecimal(config.getConsonant(), "#.#") + ","
+                + RoundUtils.roundDecimal(config.getCutoff(), "#.#") + ","
+                + RoundUtils.roundDecimal(config.getPreutterance(), "#.#") + ","
+                + RoundUtils.roundDecimal(config.getOverlap(), "#.#") + "\n";
+    }
+
+    private static List<String> getUtfOtoLines(Voicebank voicebank, String category) {
+        List<String> lines = new ArrayList<>();
+        Iterator<LyricConfig> iterator = voicebank.getLyricConfigs(category);
+        while (iterator.hasNext()) {
+            LyricConfig config = iterator.next();
+            if (config != null) {
+                lines.add(config.getFilename() + "=" + getOtoValues(config));
+            }
         }
-        return charset;
+        return lines;
+    }
+
+    // Reads the lines of a previously saved oto_ini.txt, grouped by category.
+    private Optional<Map<String, List<String>>> readUtfOtoLines(File utfOtoFile) {
+        if (!utfOtoFile.canRead()) {
+            return Optional.empty();
+        }
+        Map<String, List<String>> linesByCategory = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(utfOtoFile.toPath(), StandardCharsets.UTF_8)) {
+                Optional<OtoLine> otoLine = OtoLine.parse(line.trim());
+                if (otoLine.isPresent()) {
+                    linesByCategory.computeIfAbsent(
+                            LyricConfig.getCategory(otoLine.get().fileName),
+                            key -> new ArrayList<>()).add(line + "\n");
+                }
+            }
+        } catch (IOException e) {
+            errorLogger.logWarning(e);
+            return Optional.empty();
+        }
+        return Optional.of(linesByCategory);
+    }
+
+    private static void writeLine(BufferedWriter writer, String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+    }
+
+    private static void writeAtomically(File file, Charset charset, ContentWriter contentWriter)
+            throws IOException {
+        File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(tempFile), charset))) {
+                contentWriter.write(writer);
+            }
+            try {
+                // Replace the old file in one step so it is never partly written.
+                Files.move(
+                        tempFile.toPath(),
+                        file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    private static boolean canEncodeSjis(String toRender) {
+        synchronized (sjisEncoder) {
+            return sjisEncoder.canEncode(toRender);
+        }
+    }
+
+    private static Charset getCharset(String toRender) {
+        // Default to Shift-JIS unless there are Unicode-only characters.
+        return canEncodeSjis(toRender) ? SJIS : StandardCharsets.UTF_8;
     }
 }
@@ -3,6 +3,7 @@ package com.utsusynth.utsu.model;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.collect.ImmutableList;
 import com.google.inject.AbstractModule;
@@ -26,6 +27,7 @@ public class ModelModule extends AbstractModule {
         bind(PortamentoFactory.class).asEagerSingleton();
         bind(SongManager.class).asEagerSingleton();
         bind(VoicebankManager.class).asEagerSingleton();
+        bind(VoicebankWatcher.class).asEagerSingleton();
     }
 
     @Provides
@@ -46,7 +48,12 @@ public class ModelModule extends AbstractModule {
             PreferencesManager preferencesManager,
             PresampConfig presampConfig) {
         return new Voicebank(
-                configMap, pitchMap, new HashSet<>(), frqGen, preferencesManager, presampConfig);
+                configMap,
+                pitchMap,
+                ConcurrentHashMap.newKeySet(), // Updated by parallel frq generation.
+                frqGen,
+                preferencesManager,
+                presampConfig);
     }
 
     @Provides
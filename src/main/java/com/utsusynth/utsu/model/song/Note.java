@@ -43,6 +43,7 @@ public class Note {
     private double realStartPoint;
     private String trueLyric; // Note's lyric after processing and formatting.
     private Optional<File> cacheFile; // Result of applying resampler to this note.
+    private int cacheGeneration; // Incremented whenever the note's cache is cleared.
 
     public Note() {
         // Set every required field to its default.
@@ -73,6 +74,39 @@ public class Note {
         this.realStartPoint = 0;
         this.trueLyric = ""; // Defaults to "" if no lyric is found.
         this.cacheFile = Optional.empty();
+        this.cacheGeneration = 0;
+    }
+
+    /** Returns a copy of this note that shares none of its mutable state. */
+    Note copy() {
+        Note copy = new Note();
+        copy.delta = delta;
+        copy.duration = duration;
+        copy.length = length;
+        copy.lyric = lyric;
+        copy.noteNum = noteNum;
+        copy.preutter = preutter;
+        copy.overlap = overlap;
+        copy.velocity = velocity;
+        copy.startPoint = startPoint;
+        copy.intensity = intensity;
+        copy.modulation = modulation;
+        copy.noteFlags = noteFlags;
+        copy.pbs = pbs;
+        copy.pbw = pbw;
+        copy.pby = pby;
+        copy.pbm = pbm;
+        copy.envelopeWidth = envelopeWidth.clone();
+        copy.envelopeHeight = envelopeHeight.clone();
+        copy.envelopeOverlap = envelopeOverlap;
+        copy.vibrato = vibrato.clone();
+        copy.realPreutter = realPreutter;
+        copy.realDuration = realDuration;
+        copy.realStartPoint = realStartPoint;
+        copy.trueLyric = trueLyric;
+        copy.cacheFile = cacheFile;
+        copy.cacheGeneration = cacheGeneration;
+        return copy;
     }
 
     public void setDelta(int delta) {
@@ -390,6 +424,21 @@ public class Note {
         return envelope;
     }
 
+    /** Restores an envelope in the format returned by getRawFullEnvelope. */
+    void setRawFullEnvelope(double[] envelope) {
+        envelopeWidth[0] = envelope[0]; // p1
+        envelopeWidth[1] = envelope[1]; // p2
+        envelopeWidth[2] = envelope[2]; // p3
+        envelopeHeight[0] = envelope[3]; // v1
+        envelopeHeight[1] = envelope[4]; // v2
+        envelopeHeight[2] = envelope[5]; // v3
+        envelopeHeight[3] = envelope[6]; // v4
+        envelopeOverlap = envelope[7]; // overlap
+        envelopeWidth[3] = envelope[8]; // p4
+        envelopeWidth[4] = envelope[9]; // p5
+        envelopeHeight[4] = envelope[10]; // v5
+    }
+
     public void setEnvelope(EnvelopeData envelopeData) {
         // Ignore the envPreutter and envLength received from the view.
         envelopeWidth = envelopeData.getWidths();
@@ -477,6 +526,14 @@ public class Note {
         this.cacheFile = cacheFile;
     }
 
+    int getCacheGeneration() {
+        return cacheGeneration;
+    }
+
+    void incrementCacheGeneration() {
+        cacheGeneration++;
+    }
+
     private static double safeParseDouble(String fromMe, double fallback) {
         try {
             return Double.parseDouble(fromMe);
@@ -0,0 +1,90 @@
+package com.utsusynth.utsu.model.song;
+
+import com.utsusynth.utsu.common.utils.RegionBounds;
+
+/**
+ * Moves through song notes in order. Unlike NoteIterator, a cursor does not allocate anything as
+ * it moves, and exposes the current note's position and neighbors directly. Neighbor getters
+ * return null when the neighbor does not exist, so check the matching has* method first.
+ */
+public class NoteCursor {
+    private final RegionBounds bounds;
+
+    private NoteNode curNode; // Null until the first call to next().
+    private int curPosition;
+    private NoteNode nextNode; // Next node within bounds, null if there is none.
+    private int nextPosition;
+
+    NoteCursor(NoteNode startNode, int startPosition, RegionBounds bounds) {
+        this.bounds = bounds;
+        this.curNode = null;
+        this.curPosition = 0;
+        this.nextNode = startNode;
+        this.nextPosition = startPosition;
+    }
+
+    /**
+     * Moves to the next note within bounds.
+     *
+     * @return Whether there was a next note to move to.
+     */
+    public boolean next() {
+        if (nextNode == null) {
+            return false;
+        }
+        curNode = nextNode;
+        curPosition = nextPosition;
+
+        // Set up next note, if within bounds.
+        nextNode = null;
+        if (curNode.getNext().isPresent()) {
+            NoteNode candidate = curNode.getNext().get();
+            int candidatePosition = curPosition + candidate.getNote().getDelta();
+            int candidateEnd = candidatePosition + candidate.getNote().getDuration();
+            if (bounds.intersects(candidatePosition, candidateEnd)) {
+                nextNode = candidate;
+                nextPosition = candidatePosition;
+            }
+        }
+        return true;
+    }
+
+    /** The current note. */
+    public Note getNote() {
+        return curNode.getNote();
+    }
+
+    /** Absolute position of the current note. */
+    public int getPosition() {
+        return curPosition;
+    }
+
+    /** Whether the current note has a previous note, even one outside of bounds. */
+    public boolean hasPrevNote() {
+        return curNode != null && curNode.getPrev().isPresent();
+    }
+
+    public Note getPrevNote() {
+        return hasPrevNote() ? curNode.getPrev().get().getNote() : null;
+    }
+
+    public int getPrevPosition() {
+        return curPosition - curNode.getNote().getDelta();
+    }
+
+    /**
+     * Whether there is a next note within bounds. Before the first call to next(), this is
+     * whether there are any notes within bounds at all.
+     */
+    public boolean hasNextNote() {
+        return nextNode != null;
+    }
+
+    public Note getNextNote() {
+        return nextNode == null ? null : nextNode.getNote();
+    }
+
+    public int getNextPosition() {
+        return nextPosition;
+    }
+}
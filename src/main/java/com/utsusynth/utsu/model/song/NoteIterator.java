@@ -2,6 +2,7 @@ package com.utsusynth.utsu.model.song;
 
 import java.util.Iterator;
 import java.util.Optional;
+import java.util.function.IntSupplier;
 import com.utsusynth.utsu.common.utils.RegionBounds;
 
 /**
@@ -9,30 +10,31 @@ import com.utsusynth.utsu.common.utils.RegionBounds;
  */
 public class NoteIterator implements Iterator<Note> {
     private final RegionBounds bounds;
+    private final IntSupplier numNotesBefore; // Counts notes before the first note in bounds.
 
     private Optional<NoteNode> prevNode;
     private Optional<NoteNode> curNode;
-    int curIndex;
+    int numVisited; // Number of notes returned so far.
     int curDelta;
 
-    NoteIterator(Optional<NoteNode> startNode, RegionBounds bounds) {
+    /**
+     * Creates an iterator starting at the first note within bounds, if it exists.
+     *
+     * @param startPosition Absolute position of the start node.
+     * @param numNotesBefore Counts the notes before the start node, only called if needed.
+     */
+    NoteIterator(
+            Optional<NoteNode> startNode,
+            int startPosition,
+            IntSupplier numNotesBefore,
+            RegionBounds bounds) {
         this.bounds = bounds;
+        this.numNotesBefore = numNotesBefore;
         this.prevNode = Optional.empty();
         this.curNode = startNode;
-        this.curIndex = 0;
-        this.curDelta = 0;
-
-        // Start at first note contained within bounds, if it exists.
-        while (curNode.isPresent()) {
-            int newDelta = curDelta + curNode.get().getNote().getDelta();
-            if (bounds.intersects(newDelta, newDelta + curNode.get().getNote().getDuration())) {
-                break;
-            } else {
-                curIndex++;
-                curDelta = newDelta;
-                curNode = curNode.get().getNext();
-            }
-        }
+        this.numVisited = 0;
+        this.curDelta = startNode.isPresent()
+                ? startPosition - startNode.get().getNote().getDelta() : 0;
     }
 
     @Override
@@ -46,7 +48,7 @@ public class NoteIterator implements Iterator<Note> {
             return null;
         }
         Note note = curNode.get().getNote();
-        curIndex++;
+        numVisited++;
         curDelta += note.getDelta();
         prevNode = curNode;
 
@@ -63,8 +65,9 @@ public class NoteIterator implements Iterator<Note> {
         return note;
     }
 
+    /** Index within the whole song of the next note this iterator would return. */
     public int getCurIndex() {
-        return curIndex;
+        return numNotesBefore.getAsInt() + numVisited;
     }
 
     public int getCurDelta() {
@@ -1,18 +1,22 @@
 package com.utsusynth.utsu.model.song;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import com.utsusynth.utsu.common.utils.RegionBounds;
 import com.utsusynth.utsu.common.exception.NoteAlreadyExistsException;
 import com.utsusynth.utsu.model.voicebank.Voicebank;
 
 /**
- * Implementation of a linked list of SongNotes, including head.
+ * Implementation of a linked list of SongNotes, including head. Nodes are also indexed by their
+ * absolute position, so any note or region can be found without walking the list.
  */
 public class NoteList implements Iterable<Note> {
     private Optional<NoteNode> head;
-    private Map<Integer, NoteNode> nodeMap;
+    private TreeMap<Integer, NoteNode> nodeMap;
 
     public class Builder {
         private NoteList noteList;
@@ -30,7 +34,7 @@ public class NoteList implements Iterable<Note> {
 
         private Builder setHead(Optional<NoteNode> newHead) {
             noteList.head = newHead;
-            noteList.nodeMap = new HashMap<>();
+            noteList.nodeMap = new TreeMap<>();
             totalDelta = 0;
             overrideDelta = 0;
             if (newHead.isPresent()) {
@@ -105,11 +109,14 @@ public class NoteList implements Iterable<Note> {
         }
 
         public void standardize(NoteStandardizer standardizer, Voicebank voicebank) {
+            List<NoteNode> nodes = new ArrayList<>();
             Optional<NoteNode> cur = tail;
             while (cur.isPresent()) {
-                cur.get().standardize(standardizer, voicebank);
+                nodes.add(cur.get());
                 cur = cur.get().getPrev();
             }
+            Collections.reverse(nodes);
+            standardizer.standardizeAll(nodes, voicebank);
         }
 
         public Optional<Note> getLatestNote() {
@@ -131,7 +138,7 @@ public class NoteList implements Iterable<Note> {
 
     public NoteList() {
         this.head = Optional.empty();
-        this.nodeMap = new HashMap<>();
+        this.nodeMap = new TreeMap<>();
     }
 
     /**
@@ -144,30 +151,24 @@ public class NoteList implements Iterable<Note> {
      */
     NoteNode insertNote(Note noteToInsert, int deltaToInsert) throws NoteAlreadyExistsException {
         NoteNode inserted;
+        Map.Entry<Integer, NoteNode> floor = nodeMap.floorEntry(deltaToInsert);
         if (!head.isPresent()) {
             this.head = Optional.of(new NoteNode(noteToInsert));
             this.head.get().getNote().setDelta(deltaToInsert);
             inserted = this.head.get();
-        } else if (head.get().getNote().getDelta() > deltaToInsert) {
+        } else if (floor == null) {
             this.head = Optional.of(this.head.get().insertFirstNote(noteToInsert, deltaToInsert));
             inserted = this.head.get();
         } else {
-            inserted = this.head.get().insertNote(noteToInsert, deltaToInsert, 0);
+            // Start the search at the last note before this position.
+            NoteNode floorNode = floor.getValue();
+            int prevDelta = floor.getKey() - floorNode.getNote().getDelta();
+            inserted = floorNode.insertNote(noteToInsert, deltaToInsert, prevDelta);
         }
         nodeMap.put(deltaToInsert, inserted);
         return inserted;
     }
 
-    /**
-     * Adds a note to the note list, starting search at a specific node.
-     */
-    NoteNode insertNote(Note noteToInsert, int deltaToInsert, NoteNode startNode, int startDelta)
-            throws NoteAlreadyExistsException {
-        NoteNode inserted = startNode.insertNote(noteToInsert, deltaToInsert, startDelta);
-        nodeMap.put(deltaToInsert, inserted);
-        return inserted;
-    }
-
     /**
      * Removes a note from the note list.
      * 
@@ -217,10 +218,81 @@ public class NoteList implements Iterable<Note> {
 
     @Override
     public NoteIterator iterator() {
-        return new NoteIterator(this.head, RegionBounds.WHOLE_SONG);
+        return boundedIterator(RegionBounds.WHOLE_SONG);
     }
 
     NoteIterator boundedIterator(RegionBounds bounds) {
-        return new NoteIterator(this.head, bounds);
+        Map.Entry<Integer, NoteNode> start = findFirstEntry(bounds);
+        if (start == null) {
+            return new NoteIterator(Optional.empty(), 0, nodeMap::size, bounds);
+        }
+        int startPosition = start.getKey();
+        return new NoteIterator(
+                Optional.of(start.getValue()),
+                startPosition,
+                () -> nodeMap.headMap(startPosition).size(),
+                bounds);
+    }
+
+    /**
+     * Copies the notes within bounds, plus the nearest note on either side, into a new list. Notes
+     * keep their absolute positions, and each copy is mapped to its original in originals.
+     */
+    NoteList copy(RegionBounds bounds, Map<Note, Note> originals) {
+        NoteList copy = new NoteList();
+        Map.Entry<Integer, NoteNode> start = findFirstEntry(bounds);
+        if (start == null) {
+            return copy;
+        }
+        Map.Entry<Integer, NoteNode> first = nodeMap.lowerEntry(start.getKey());
+        Map.Entry<Integer, NoteNode> last = start;
+        while (nodeMap.higherEntry(last.getKey()) != null && intersects(last, bounds)) {
+            last = nodeMap.higherEntry(last.getKey());
+        }
+        NoteNode tail = null;
+        for (Map.Entry<Integer, NoteNode> entry : nodeMap.subMap(
+                first == null ? start.getKey() : first.getKey(), true, last.getKey(), true)
+                .entrySet()) {
+            Note original = entry.getValue().getNote();
+            Note noteCopy = original.copy();
+            originals.put(noteCopy, original);
+            NoteNode node = new NoteNode(noteCopy);
+            if (tail == null) {
+                copy.head = Optional.of(node);
+            } else {
+                tail.linkRight(node);
+            }
+            copy.nodeMap.put(entry.getKey(), node);
+            tail = node;
+        }
+        return copy;
+    }
+
+    NoteCursor cursor(RegionBounds bounds) {
+        Map.Entry<Integer, NoteNode> start = findFirstEntry(bounds);
+        if (start == null) {
+            return new NoteCursor(null, 0, bounds);
+        }
+        return new NoteCursor(start.getValue(), start.getKey(), bounds);
+    }
+
+    // Returns the entry of the first note within bounds, or null if there is none.
+    private Map.Entry<Integer, NoteNode> findFirstEntry(RegionBounds bounds) {
+        // Notes never overlap, so no note before the last one starting at or before the region
+        // can intersect it.
+        Map.Entry<Integer, NoteNode> start = nodeMap.floorEntry(bounds.getMinMs());
+        if (start == null) {
+            start = nodeMap.firstEntry();
+        }
+        while (start != null && start.getKey() < bounds.getMaxMs()
+                && !intersects(start, bounds)) {
+            start = nodeMap.higherEntry(start.getKey());
+        }
+        return start == null || !intersects(start, bounds) ? null : start;
+    }
+
+    private static boolean intersects(Map.Entry<Integer, NoteNode> entry, RegionBounds bounds) {
+        int position = entry.getKey();
+        return bounds.intersects(position, position + entry.getValue().getNote().getDuration());
     }
 }
@@ -64,6 +64,13 @@ public class NoteNode {
         }
     }
 
+    /** Links a node directly to the right of this one without changing either note. */
+    NoteNode linkRight(NoteNode linkMe) {
+        this.next = Optional.of(linkMe);
+        linkMe.prev = Optional.of(this);
+        return linkMe;
+    }
+
     NoteNode insertFirstNote(Note noteToInsert, int deltaToInsert) {
         int newDelta = this.note.getDelta() - deltaToInsert;
         this.note.setDelta(newDelta);
@@ -5,12 +5,78 @@ import com.utsusynth.utsu.common.utils.PitchUtils;
 import com.utsusynth.utsu.model.voicebank.LyricConfig;
 import com.utsusynth.utsu.model.voicebank.Voicebank;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 /**
  * Standardizes a song note and prepares it for rendering.
  */
 public class NoteStandardizer {
+    // Below this many notes per thread, standardizing in parallel costs more than it saves.
+    private static final int MIN_CHUNK_SIZE = 512;
+
+    /**
+     * Standardizes every note in a list, given from first to last. Long lists are split into
+     * chunks that are standardized in parallel, with the last note of each chunk ignoring the
+     * note after it. Chunk boundaries are then redone from last to first, walking backwards until
+     * a redone note matches what the note before it already saw, so results are the same as
+     * standardizing the whole list on one thread.
+     */
+    void standardizeAll(List<NoteNode> nodes, Voicebank voicebank) {
+        int numChunks = Math.min(
+                Runtime.getRuntime().availableProcessors(), nodes.size() / MIN_CHUNK_SIZE);
+        standardizeAll(nodes, voicebank, numChunks);
+    }
+
+    void standardizeAll(List<NoteNode> nodes, Voicebank voicebank, int numChunks) {
+        int numNotes = nodes.size();
+        if (numChunks <= 1) {
+            for (int i = numNotes - 1; i >= 0; i--) {
+                nodes.get(i).standardize(this, voicebank);
+            }
+            return;
+        }
+
+        int chunkSize = (numNotes + numChunks - 1) / numChunks;
+        int numFullChunks = (numNotes + chunkSize - 1) / chunkSize; // Skips empty chunks.
+        double[][] envelopes = new double[numNotes][]; // Envelopes before standardizing.
+        double[] fadeIns = new double[numNotes]; // Fade ins before the previous note shrinks them.
+        IntStream.range(0, numFullChunks).parallel().forEach(chunk -> {
+            int first = chunk * chunkSize;
+            int last = Math.min(numNotes, first + chunkSize) - 1;
+            for (int i = last; i >= first; i--) {
+                NoteNode node = nodes.get(i);
+                Note note = node.getNote();
+                envelopes[i] = note.getRawFullEnvelope();
+                if (i == last && i < numNotes - 1) {
+                    // Leave the next chunk alone, this note gets redone after it finishes.
+                    Optional<Note> prev = node.getPrev().map(NoteNode::getNote);
+                    standardize(prev, note, Optional.empty(), voicebank);
+                } else {
+                    node.standardize(this, voicebank);
+                }
+                fadeIns[i] = note.getFadeIn();
+            }
+        });
+
+        for (int chunk = numFullChunks - 2; chunk >= 0; chunk--) {
+            for (int i = (chunk + 1) * chunkSize - 1; i >= 0; i--) {
+                Note note = nodes.get(i).getNote();
+                double shrunkFadeIn = note.getFadeIn();
+                note.setRawFullEnvelope(envelopes[i]);
+                nodes.get(i).standardize(this, voicebank);
+                if (note.getFadeIn() == fadeIns[i]) {
+                    // The previous note saw the same fade in, so its results still hold.
+                    note.setFadeIn(shrunkFadeIn);
+                    break;
+                }
+                fadeIns[i] = note.getFadeIn();
+            }
+        }
+    }
+
     // This function should be called in the order: last note -> first note
     void standardize(Optional<Note> prev, Note note, Optional<Note> next, Voicebank voicebank) {
         double consonantScaleFactor = Math.pow(2, 1 - (note.getVelocity() / 100.0));
@@ -85,6 +151,20 @@ public class NoteStandardizer {
         // TODO: Enforce pitchbend size/location limits.
     }
 
+    /**
+     * Whether standardizing a note again would use a different lyric config than it did last
+     * time, given the lyrics whose configs changed since then.
+     */
+    boolean usesChangedConfig(
+            Optional<Note> prev, Note note, Voicebank voicebank, Set<String> changedLyrics) {
+        String pitch = PitchUtils.noteNumToPitch(note.getNoteNum());
+        String prevLyric = getNearbyPrevLyric(prev);
+        String trueLyric = voicebank.getLyricConfig(prevLyric, note.getLyric(), pitch)
+                .map(LyricConfig::getTrueLyric)
+                .orElse("");
+        return !trueLyric.equals(note.getTrueLyric()) || changedLyrics.contains(trueLyric);
+    }
+
     // Returns empty string if there is no nearby (within DEFAULT_NOTE_DURATION) previous note.
     private static String getNearbyPrevLyric(Optional<Note> prev) {
         if (prev.isPresent() && prev.get().getLength()
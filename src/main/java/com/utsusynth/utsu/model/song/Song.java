@@ -13,6 +13,7 @@ import com.utsusynth.utsu.model.voicebank.VoicebankContainer;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * In-code representation of a song. Compatible with UST versions 1.2 and 2.0.
@@ -34,6 +35,13 @@ public class Song {
     private boolean mode2 = true;
     private Optional<File> instrumental; // Not yet written to UST.
 
+    // Incremented whenever the song changes, so renders can tell whether their input is stale.
+    private long version = 0;
+
+    // Changes made by the current edit, published to listeners once the edit is done.
+    private final List<SongChange> pendingChanges = new ArrayList<>();
+    private final List<SongListener> listeners = new CopyOnWriteArrayList<>();
+
     // Set to a value after rendering song, cleared whenever song changes.
     private RegionBounds cacheRegion = RegionBounds.INVALID;
     private Optional<File> cacheFile = Optional.empty();
@@ -41,6 +49,9 @@ public class Song {
     // Notes. (Anything marked with [#0000]-[#9999], [#TRACKEND] marks the end of these)
     private NoteList noteList;
 
+    // Positions of notes by the true lyric they were last standardized with.
+    private final TrueLyricIndex trueLyricIndex = new TrueLyricIndex();
+
     // Pitchbends, kept in a format suitable for rendering.
     private final PitchCurve pitchbends;
 
@@ -119,10 +130,97 @@ public class Song {
         public Song build() {
             noteListBuilder.standardize(newSong.standardizer, newSong.voicebank.get());
             newSong.noteList = noteListBuilder.build();
+            newSong.indexTrueLyrics();
+            newSong.pitchbends.takeChangedRegion(); // Building a song is not a change to it.
             return newSong;
         }
     }
 
+    /**
+     * Collects note changes so they can be applied to the song all at once. Notes are removed,
+     * then added, then modified, and every note between the added and removed notes is
+     * standardized once at the end, so pitch and render caches are invalidated once for the whole
+     * batch. Modified notes keep their lyric, position, and duration, so like modifyNote they are
+     * not standardized again.
+     */
+    public class Batch {
+        private final Set<Integer> positionsToRemove;
+        private final List<NoteData> notesToAdd;
+        private final List<NoteData> notesToModify;
+
+        private Batch() {
+            this.positionsToRemove = new HashSet<>();
+            this.notesToAdd = new ArrayList<>();
+            this.notesToModify = new ArrayList<>();
+        }
+
+        public Batch removeNotes(Collection<Integer> positions) {
+            positionsToRemove.addAll(positions);
+            return this;
+        }
+
+        /** Adds notes, which may replace notes removed in the same batch. */
+        public Batch addNotes(Collection<NoteData> notes) {
+            notesToAdd.addAll(notes);
+            return this;
+        }
+
+        /** Modifies notes in-place without changing their lyric, position, or duration. */
+        public Batch modifyNotes(Collection<NoteData> notes) {
+            notesToModify.addAll(notes);
+            return this;
+        }
+
+        /**
+         * Applies every change in this batch.
+         *
+         * @return All standardized notes, plus the neighbors just outside the changed region. If
+         *         notes were only modified, returns the modified notes.
+         */
+        public MutateResponse apply() {
+            synchronized (Song.this) {
+                version++;
+                int firstPosition = Integer.MAX_VALUE;
+                int lastPosition = Integer.MIN_VALUE;
+                MutateResponse response;
+                pitchbends.startBatch();
+                try {
+                    if (!positionsToRemove.isEmpty()) {
+                        MutateResponse removed = deleteNotes(positionsToRemove);
+                        for (Optional<NoteUpdateData> neighbor
+                                : List.of(removed.getPrev(), removed.getNext())) {
+                            if (neighbor.isPresent()) {
+                                firstPosition =
+                                        Math.min(firstPosition, neighbor.get().getPosition());
+                                lastPosition = Math.max(lastPosition, neighbor.get().getPosition());
+                            }
+                        }
+                    }
+                    insertNotes(notesToAdd);
+                    LinkedList<NoteUpdateData> modifiedNotes = new LinkedList<>();
+                    for (NoteData toModify : notesToModify) {
+                        modifiedNotes.add(changeNote(toModify));
+                    }
+                    for (NoteData noteData : notesToAdd) {
+                        firstPosition = Math.min(firstPosition, noteData.getPosition());
+                        lastPosition = Math.max(lastPosition, noteData.getPosition());
+                    }
+                    if (firstPosition > lastPosition) {
+                        // Notes were only modified, or every note was removed.
+                        response = new MutateResponse(
+                                modifiedNotes, Optional.empty(), Optional.empty());
+                    } else {
+                        response = standardizeRange(firstPosition, lastPosition);
+                    }
+                } finally {
+                    pitchbends.finishBatch();
+                }
+                publishChanges();
+                return response;
+            }
+        }
+    }
+
     public Song(
             VoicebankContainer voicebankContainer,
             NoteStandardizer standardizer,
@@ -139,6 +237,7 @@ public class Song {
         this.projectName = "(no title)";
         this.flags = "";
         this.instrumental = Optional.empty();
+        this.listeners.add(this::updateRenderCache);
     }
 
     public Builder toBuilder() {
@@ -156,18 +255,27 @@ public class Song {
                 .setInstrumental(this.instrumental);
     }
 
+    /** Starts a batch of note changes, which are applied when its apply() method is called. */
+    public Batch batch() {
+        return new Batch();
+    }
+
     /**
      * Adds a note or notes to the song object.
      *
      * @param notesToAdd In-order list of notes to add.
      */
-    public void addNotes(List<NoteData> notesToAdd) {
+    public synchronized void addNotes(List<NoteData> notesToAdd) {
         if (notesToAdd.isEmpty()) {
             System.out.println("Error: Add notes called on empty list!");
             return;
         }
-        NoteNode curNode = null; // Where to start search for place to insert new note.
-        int searchStartMs = 0;
+        version++;
+        insertNotes(notesToAdd);
+        publishChanges();
+    }
+
+    private void insertNotes(List<NoteData> notesToAdd) {
         for (NoteData toAdd : notesToAdd) {
             Note note = new Note();
             // New note's delta/length may be overridden while inserting into note list.
@@ -188,12 +296,9 @@ public class Song {
 
             int positionMs = toAdd.getPosition();
             try {
-                if (curNode == null) {
-                    curNode = this.noteList.insertNote(note, positionMs);
-                } else {
-                    curNode = this.noteList.insertNote(note, positionMs, curNode, searchStartMs);
-                }
-                searchStartMs = positionMs - curNode.getNote().getDelta();
+                this.noteList.insertNote(note, positionMs);
+                recordChange(
+                        SongChange.Type.NOTES_ADDED, positionMs, positionMs + note.getLength());
             } catch (NoteAlreadyExistsException e) {
                 // Swallow this for now.
             }
@@ -203,12 +308,18 @@ public class Song {
     /**
      * Removes all notes at the specified positions from the song object.
      */
-    public MutateResponse removeNotes(Set<Integer> positions) {
+    public synchronized MutateResponse removeNotes(Set<Integer> positions) {
         if (positions.isEmpty()) {
             System.out.println("Error: Remove notes called on empty collection!");
             return null;
         }
+        version++;
+        MutateResponse response = deleteNotes(positions);
+        publishChanges();
+        return response;
+    }
 
+    private MutateResponse deleteNotes(Set<Integer> positions) {
         HashSet<NoteUpdateData> removedNotes = new HashSet<>(); // Return value.
         int firstNeighbor = Integer.MAX_VALUE;
         int lastNeighbor = Integer.MIN_VALUE;
@@ -216,6 +327,11 @@ public class Song {
         NoteNode curNode;
         for (int position : positions) {
             curNode = this.noteList.removeNote(position);
+            trueLyricIndex.remove(position);
+            recordChange(
+                    SongChange.Type.NOTES_REMOVED,
+                    position,
+                    position + curNode.getNote().getLength());
             clearNoteCache(curNode.getNote());
             this.pitchbends.removePitchbends(
                     position,
@@ -259,10 +375,19 @@ public class Song {
     /**
      * Modifies a note in-place without changing its lyric, position, or duration.
      */
-    public NoteUpdateData modifyNote(NoteData toModify) {
+    public synchronized NoteUpdateData modifyNote(NoteData toModify) {
+        version++;
+        NoteUpdateData response = changeNote(toModify);
+        publishChanges();
+        return response;
+    }
+
+    private NoteUpdateData changeNote(NoteData toModify) {
         int positionMs = toModify.getPosition();
         NoteNode node = this.noteList.getNote(positionMs);
         Note note = node.getNote();
+        recordChange(
+                SongChange.Type.NOTES_MODIFIED, positionMs, positionMs + note.getLength());
         // Need to clear previous note's cache in case a pitchbend change affects it.
         clearNoteCache(note);
         if (node.getPrev().isPresent()) {
@@ -293,7 +418,77 @@ public class Song {
     /**
      * Standardizes a set of notes.
      */
-    public MutateResponse standardizeNotes(int firstPosition, int lastPosition) {
+    public synchronized MutateResponse standardizeNotes(int firstPosition, int lastPosition) {
+        version++;
+        MutateResponse response = standardizeRange(firstPosition, lastPosition);
+        publishChanges();
+        return response;
+    }
+
+    /**
+     * Finds notes that should be standardized again after lyric configs of their voicebank
+     * changed. Notes using a changed config are looked up by their true lyric.
+     *
+     * @param changedLyrics True lyrics whose configs were added, removed, or changed.
+     * @param aliasesChanged Whether aliases were added or removed, in which case any note's lyric
+     *                       may now resolve to a different alias and every note is checked.
+     * @return Runs of adjacent notes, from the first note's position to the last note's.
+     */
+    public synchronized List<RegionBounds> findNotesToRestandardize(
+            Set<String> changedLyrics, boolean aliasesChanged) {
+        List<RegionBounds> runs = new ArrayList<>();
+        if (aliasesChanged) {
+            Voicebank curVoicebank = voicebank.get();
+            NoteCursor cursor = noteList.cursor(RegionBounds.WHOLE_SONG);
+            while (cursor.next()) {
+                Optional<Note> prev = cursor.hasPrevNote()
+                        ? Optional.of(cursor.getPrevNote()) : Optional.empty();
+                if (standardizer.usesChangedConfig(
+                        prev, cursor.getNote(), curVoicebank, changedLyrics)) {
+                    addToRuns(runs, cursor.getPosition(), cursor.getPrevNote(), cursor.getNote());
+                }
+            }
+            return runs;
+        }
+
+        TreeMap<Integer, NoteNode> nodes = new TreeMap<>();
+        for (String trueLyric : changedLyrics) {
+            for (int position : trueLyricIndex.getPositions(trueLyric)) {
+                NoteNode node = noteList.getNote(position);
+                if (node != null && node.getNote().getTrueLyric().equals(trueLyric)) {
+                    nodes.put(position, node);
+                }
+            }
+        }
+        for (Map.Entry<Integer, NoteNode> entry : nodes.entrySet()) {
+            NoteNode node = entry.getValue();
+            Note prev = node.getPrev().isPresent() ? node.getPrev().get().getNote() : null;
+            addToRuns(runs, entry.getKey(), prev, node.getNote());
+        }
+        return runs;
+    }
+
+    // Adds a note to the last run if the previous note ends it, or starts a new run.
+    private static void addToRuns(List<RegionBounds> runs, int position, Note prev, Note note) {
+        int lastRun = runs.size() - 1;
+        if (lastRun >= 0 && prev != null
+                && runs.get(lastRun).getMaxMs() == position - note.getDelta()) {
+            runs.set(lastRun, new RegionBounds(runs.get(lastRun).getMinMs(), position));
+        } else {
+            runs.add(new RegionBounds(position, position));
+        }
+    }
+
+    // Rebuilds the true lyric index from every note.
+    private void indexTrueLyrics() {
+        trueLyricIndex.clear();
+        NoteCursor cursor = noteList.cursor(RegionBounds.WHOLE_SONG);
+        while (cursor.next()) {
+            trueLyricIndex.put(cursor.getPosition(), cursor.getNote().getTrueLyric());
+        }
+    }
+
+    private MutateResponse standardizeRange(int firstPosition, int lastPosition) {
         LinkedList<NoteUpdateData> updatedNotes = new LinkedList<>();
         Optional<NoteUpdateData> prevNeighbor = Optional.empty();
         Optional<NoteUpdateData> nextNeighbor = Optional.empty();
@@ -319,7 +514,10 @@ public class Song {
             Note note = curNode.get().getNote();
             // Standardize.
             curNode.get().standardize(standardizer, voicebank.get());
+            trueLyricIndex.put(curPosition, note.getTrueLyric());
             clearNoteCache(note);
+            recordChange(
+                    SongChange.Type.NOTES_MODIFIED, curPosition, curPosition + note.getLength());
             if (nextNeighbor.isEmpty() || curPosition < startPosition) {
                 updatedNotes.addFirst(note.getUpdateData(curPosition));
             }
@@ -344,8 +542,14 @@ public class Song {
 
         // Include the prev neighbor of the first note, if present. No need to change pitch.
         if (curNode.isPresent()) {
+            Note prevNote = curNode.get().getNote();
             curNode.get().standardize(standardizer, voicebank.get());
-            clearNoteCache(curNode.get().getNote());
+            trueLyricIndex.put(curPosition, prevNote.getTrueLyric());
+            clearNoteCache(prevNote);
+            recordChange(
+                    SongChange.Type.NOTES_MODIFIED,
+                    curPosition,
+                    curPosition + prevNote.getLength());
             prevNeighbor = Optional.of(curNode.get().getNote().getUpdateData(curPosition));
         }
         return new MutateResponse(updatedNotes, prevNeighbor, nextNeighbor);
@@ -354,7 +558,8 @@ public class Song {
     /**
      * Only clears cache without making changes to the notes themselves.
      */
-    public void clearNoteCache(int firstPosition, int lastPosition) {
+    public synchronized void clearNoteCache(int firstPosition, int lastPosition) {
+        version++;
         int curPosition = firstPosition;
         NoteNode startNode = this.noteList.getNote(firstPosition);
         if (startNode == null) {
@@ -386,31 +591,30 @@ public class Song {
 
     public LinkedList<NoteData> getNotes(RegionBounds bounds, List<FilterType> filters) {
         LinkedList<NoteData> notes = new LinkedList<>();
-        NoteIterator iterator = noteList.boundedIterator(bounds);
-        while (iterator.hasNext()) {
-            Note note = iterator.next();
+        NoteCursor cursor = noteList.cursor(bounds);
+        while (cursor.next()) {
+            Note note = cursor.getNote();
             // Apply all filters.
             if (filters.contains(FilterType.SILENCE_BEFORE)) {
-                Optional<Note> prev = iterator.peekPrev();
-                if (prev.isPresent() && prev.get().getDuration() == prev.get().getLength()) {
+                Note prev = cursor.getPrevNote();
+                if (prev != null && prev.getDuration() == prev.getLength()) {
                     continue;
                 }
             }
             if (filters.contains(FilterType.SILENCE_AFTER)) {
-                Optional<Note> next = iterator.peekNext();
-                if (next.isPresent() && note.getDuration() == note.getLength()) {
+                if (cursor.hasNextNote() && note.getDuration() == note.getLength()) {
                     continue;
                 }
             }
             if (filters.contains(FilterType.RISING_NOTE)) {
-                Optional<Note> prev = iterator.peekPrev();
-                if (prev.isEmpty() || prev.get().getNoteNum() >= note.getNoteNum()) {
+                Note prev = cursor.getPrevNote();
+                if (prev == null || prev.getNoteNum() >= note.getNoteNum()) {
                     continue;
                 }
             }
             if (filters.contains(FilterType.FALLING_NOTE)) {
-                Optional<Note> prev = iterator.peekPrev();
-                if (prev.isEmpty() || prev.get().getNoteNum() <= note.getNoteNum()) {
+                Note prev = cursor.getPrevNote();
+                if (prev == null || prev.getNoteNum() <= note.getNoteNum()) {
                     continue;
                 }
             }
@@ -431,7 +635,7 @@ public class Song {
             }
             notes.add(
                     new NoteData(
-                            iterator.getCurDelta(),
+                            cursor.getPosition(),
                             note.getDuration(),
                             PitchUtils.noteNumToPitch(note.getNoteNum()),
                             note.getLyric(),
@@ -497,7 +701,7 @@ public class Song {
         return Optional.empty();
     }
 
-    public void clearAllCacheValues() {
+    public synchronized void clearAllCacheValues() {
         // Clear song cache.
         clearCache();
         // Clear all note caches.
@@ -506,19 +710,106 @@ public class Song {
         }
     }
 
+    /**
+     * Copies a region of the song so it can be rendered while the song keeps changing. Should be
+     * called from the thread that edits the song.
+     */
+    public synchronized SongSnapshot snapshot(RegionBounds bounds) {
+        return new SongSnapshot(
+                this,
+                version,
+                bounds,
+                tempo,
+                flags,
+                instrumental,
+                voicebank.get(),
+                cacheRegion,
+                cacheFile,
+                noteList,
+                pitchbends);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
     // Can be changed without converting song to a builder and back.
-    public void setCache(RegionBounds cacheRegion, File cacheFile) {
-        clearCache();
+    synchronized boolean setCache(long renderedVersion, RegionBounds cacheRegion, File cacheFile) {
+        if (renderedVersion != version) {
+            return false; // Song changed while rendering.
+        }
+        this.cacheFile.ifPresent(cacheManager::clearCache);
         this.cacheRegion = cacheRegion;
         this.cacheFile = Optional.of(cacheFile);
+        return true;
     }
 
-    public void clearCache() {
+    public synchronized void clearCache() {
+        version++;
+        dropRenderCache();
+    }
+
+    private void dropRenderCache() {
         cacheFile.ifPresent(cacheManager::clearCache);
         cacheRegion = RegionBounds.INVALID;
         cacheFile = Optional.empty();
     }
 
+    // The rendered region only needs to be dropped when a change touches it.
+    private void updateRenderCache(SongChange change) {
+        if (cacheFile.isPresent() && change.touches(cacheRegion)) {
+            dropRenderCache();
+        }
+    }
+
+    // Outside listeners register with SongContainer, which keeps them when the song is replaced.
+    void addListener(SongListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(SongListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Tells listeners that song-wide settings changed, such as when the song was replaced. */
+    synchronized void publishSettingsChanged() {
+        recordChange(SongChange.Type.SETTINGS_CHANGED, 0, Integer.MAX_VALUE);
+        publishChanges();
+    }
+
+    // Merges a change into the pending changes of the current edit.
+    private void recordChange(SongChange.Type type, int firstMs, int lastMs) {
+        SongChange change = new SongChange(type, version, new RegionBounds(firstMs, lastMs));
+        int lastIndex = pendingChanges.size() - 1;
+        if (lastIndex >= 0 && pendingChanges.get(lastIndex).getType() == type) {
+            pendingChanges.set(lastIndex, pendingChanges.get(lastIndex).mergeWith(change));
+        } else {
+            pendingChanges.add(change);
+        }
+    }
+
+    private void publishChanges() {
+        RegionBounds pitchRegion = pitchbends.takeChangedRegion();
+        if (!pitchRegion.equals(RegionBounds.INVALID)) {
+            recordChange(
+                    SongChange.Type.PITCH_CHANGED, pitchRegion.getMinMs(), pitchRegion.getMaxMs());
+        }
+        List<SongChange> changes = new ArrayList<>(pendingChanges);
+        pendingChanges.clear();
+        for (SongChange change : changes) {
+            for (SongListener listener : listeners) {
+                listener.onSongChange(change);
+            }
+        }
+    }
+
+    // Only accepts a rendered note if the note's cache was not cleared while rendering.
+    synchronized void setNoteCacheFile(Note note, int renderedGeneration, File noteCache) {
+        if (note.getCacheGeneration() == renderedGeneration && note.getCacheFile().isEmpty()) {
+            note.setCacheFile(Optional.of(noteCache));
+        }
+    }
+
     public RegionBounds getCacheRegion() {
         return cacheRegion;
     }
@@ -532,6 +823,7 @@ public class Song {
             cacheManager.clearCache(note.getCacheFile().get());
         }
         note.setCacheFile(Optional.empty());
+        note.incrementCacheGeneration();
     }
 
     public String getProjectName() {
@@ -558,6 +850,14 @@ public class Song {
         return noteList.boundedIterator(bounds);
     }
 
+    public NoteCursor getNoteCursor() {
+        return noteList.cursor(RegionBounds.WHOLE_SONG);
+    }
+
+    public NoteCursor getNoteCursor(RegionBounds bounds) {
+        return noteList.cursor(bounds);
+    }
+
     public String getFlags() {
         return flags;
     }
@@ -577,8 +877,4 @@ public class Song {
     public int getNumNotes() {
         return noteList.getSize();
     }
-
-    public String getPitchString(int firstPitchStep, int lastPitchStep, int noteNum) {
-        return pitchbends.renderPitchbends(firstPitchStep, lastPitchStep, noteNum);
-    }
 }
@@ -0,0 +1,56 @@
+package com.utsusynth.utsu.model.song;
+
+import com.utsusynth.utsu.common.utils.RegionBounds;
+
+/**
+ * Describes one change to a song, as published to every SongListener. Regions are absolute
+ * positions in ms and include the full length of every changed note.
+ */
+public class SongChange {
+    public enum Type {
+        NOTES_ADDED, NOTES_REMOVED, NOTES_MODIFIED, PITCH_CHANGED, SETTINGS_CHANGED,
+    }
+
+    private final Type type;
+    private final long version;
+    private final RegionBounds region;
+
+    SongChange(Type type, long version, RegionBounds region) {
+        this.type = type;
+        this.version = version;
+        this.region = region;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** Version of the song after this change. */
+    public long getVersion() {
+        return version;
+    }
+
+    public RegionBounds getRegion() {
+        return region;
+    }
+
+    /** First pitch step touched by this change. There are always 5 ms per pitch step. */
+    public int getFirstPitchStep() {
+        return Math.floorDiv(region.getMinMs(), 5);
+    }
+
+    /** Last pitch step touched by this change. */
+    public int getLastPitchStep() {
+        return -Math.floorDiv(-region.getMaxMs(), 5);
+    }
+
+    /** Whether this change touches a region, counting changes that end where it starts. */
+    public boolean touches(RegionBounds other) {
+        return region.getMinMs() <= other.getMaxMs() && region.getMaxMs() >= other.getMinMs();
+    }
+
+    SongChange mergeWith(SongChange other) {
+        return new SongChange(
+                type, Math.max(version, other.version), region.mergeWith(other.region));
+    }
+}
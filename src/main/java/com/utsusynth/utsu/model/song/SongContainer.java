@@ -1,6 +1,8 @@
 package com.utsusynth.utsu.model.song;
 
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.exception.FileAlreadyOpenException;
 
@@ -10,6 +12,10 @@ public class SongContainer {
     private String saveFormat;
     private boolean hasPermanentLocation;
 
+    // Follow whichever song is in this container.
+    private final List<SongListener> listeners;
+    private final SongListener forwarder;
+
     private final SongManager songManager;
 
     @Inject
@@ -18,6 +24,9 @@ public class SongContainer {
         location = songManager.addSong(song);
         saveFormat = "UST 2.0 (UTF-8)";
         hasPermanentLocation = false;
+        listeners = new CopyOnWriteArrayList<>();
+        forwarder = change -> listeners.forEach(listener -> listener.onSongChange(change));
+        song.addListener(forwarder);
     }
 
     public Song get() {
@@ -32,8 +41,35 @@ public class SongContainer {
         hasPermanentLocation = false;
     }
 
+    /**
+     * Replaces the song with one whose settings changed, such as its tempo or voicebank, and
+     * publishes SETTINGS_CHANGED.
+     */
     public void setSong(Song newSong) {
+        loadSong(newSong);
+        newSong.publishSettingsChanged();
+    }
+
+    /** Replaces the song with one read from a file, without publishing any change. */
+    public void loadSong(Song newSong) {
+        Song oldSong = songManager.getSong(location);
+        if (oldSong != null) {
+            oldSong.removeListener(forwarder);
+        }
         songManager.setSong(location, newSong);
+        newSong.addListener(forwarder);
+    }
+
+    /**
+     * Adds a listener for changes to the song in this container. Listeners stay registered when
+     * the song is replaced.
+     */
+    public void addListener(SongListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SongListener listener) {
+        listeners.remove(listener);
     }
 
     public File getLocation() {
@@ -50,6 +86,10 @@ public class SongContainer {
 
     public void removeSong() {
         // Editors opening this song in the future will have to reload it from file.
+        Song oldSong = songManager.getSong(location);
+        if (oldSong != null) {
+            oldSong.removeListener(forwarder);
+        }
         songManager.removeSong(location);
     }
 
@@ -0,0 +1,9 @@
+package com.utsusynth.utsu.model.song;
+
+/**
+ * Receives changes to a song. Listeners are called on the thread that changed the song while it
+ * still holds the song's lock, so they should return quickly.
+ */
+public interface SongListener {
+    void onSongChange(SongChange change);
+}
@@ -0,0 +1,126 @@
+package com.utsusynth.utsu.model.song;
+
+import java.io.File;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import com.utsusynth.utsu.common.utils.RegionBounds;
+import com.utsusynth.utsu.model.song.pitch.PitchCurve;
+import com.utsusynth.utsu.model.voicebank.Voicebank;
+
+/**
+ * Frozen copy of one region of a song, taken at a specific version of that song. A snapshot can be
+ * read from any thread while the song keeps being edited. Render results are only written back to
+ * the song if the notes they came from have not changed since the snapshot was taken. Pitch is
+ * read from the song's own pitch curve until the snapshot is closed, so renders share its caches.
+ */
+public class SongSnapshot {
+    private final Song song;
+    private final long version;
+    private final RegionBounds bounds;
+    private final double tempo;
+    private final String flags;
+    private final Optional<File> instrumental;
+    private final Voicebank voicebank;
+    private final RegionBounds cacheRegion;
+    private final Optional<File> cacheFile;
+    private final NoteList notes;
+    private final Map<Note, Note> originals; // Maps copied notes to notes in the song.
+    private final PitchCurve.Reader pitchbends;
+
+    SongSnapshot(
+            Song song,
+            long version,
+            RegionBounds bounds,
+            double tempo,
+            String flags,
+            Optional<File> instrumental,
+            Voicebank voicebank,
+            RegionBounds cacheRegion,
+            Optional<File> cacheFile,
+            NoteList songNotes,
+            PitchCurve songPitchbends) {
+        this.song = song;
+        this.version = version;
+        this.bounds = bounds;
+        this.tempo = tempo;
+        this.flags = flags;
+        this.instrumental = instrumental;
+        this.voicebank = voicebank;
+        this.cacheRegion = cacheRegion;
+        this.cacheFile = cacheFile;
+        this.originals = new IdentityHashMap<>();
+        this.notes = songNotes.copy(bounds, originals);
+        this.pitchbends = songPitchbends.openReader();
+    }
+
+    /** Version of the song when this snapshot was taken. */
+    public long getVersion() {
+        return version;
+    }
+
+    public RegionBounds getBounds() {
+        return bounds;
+    }
+
+    public double getTempo() {
+        return tempo;
+    }
+
+    public String getFlags() {
+        return flags;
+    }
+
+    public Optional<File> getInstrumental() {
+        return instrumental;
+    }
+
+    public Voicebank getVoicebank() {
+        return voicebank;
+    }
+
+    /** Rendered region of the song when this snapshot was taken. */
+    public RegionBounds getCacheRegion() {
+        return cacheRegion;
+    }
+
+    public Optional<File> getCacheFile() {
+        return cacheFile;
+    }
+
+    /** Moves through the copied notes within this snapshot's bounds. */
+    public NoteCursor getNoteCursor() {
+        return notes.cursor(bounds);
+    }
+
+    public String getPitchString(int firstPitchStep, int lastPitchStep, int noteNum) {
+        return pitchbends.renderPitchbends(firstPitchStep, lastPitchStep, noteNum);
+    }
+
+    /** Should be called once done rendering, so the song stops keeping pitch for this snapshot. */
+    public void close() {
+        pitchbends.close();
+    }
+
+    /**
+     * Records a rendered note on both the copy and, if it has not changed since this snapshot was
+     * taken, the original note in the song.
+     */
+    public void setNoteCacheFile(Note note, File noteCache) {
+        note.setCacheFile(Optional.of(noteCache));
+        Note original = originals.get(note);
+        if (original != null) {
+            song.setNoteCacheFile(original, note.getCacheGeneration(), noteCache);
+        }
+    }
+
+    /**
+     * Records the rendered region on the song, if the song has not changed since this snapshot
+     * was taken.
+     *
+     * @return Whether the song accepted the rendered region.
+     */
+    public boolean setCache(File renderedCache) {
+        return song.setCache(version, bounds, renderedCache);
+    }
+}
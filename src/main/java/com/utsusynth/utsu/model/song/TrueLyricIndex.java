@@ -0,0 +1,53 @@
+package com.utsusynth.utsu.model.song;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index from true lyric to the positions of notes standardized with that lyric's config, so notes
+ * using a config can be found without resolving every note's alias again. Entries are only
+ * updated as notes are standardized or removed, so callers should check each position found.
+ */
+class TrueLyricIndex {
+    private final Map<String, Set<Integer>> positionsByLyric;
+    private final Map<Integer, String> lyricsByPosition;
+
+    TrueLyricIndex() {
+        positionsByLyric = new HashMap<>();
+        lyricsByPosition = new HashMap<>();
+    }
+
+    void put(int position, String trueLyric) {
+        remove(position);
+        if (trueLyric.isEmpty()) {
+            return; // Notes without a config can't be affected by config changes.
+        }
+        lyricsByPosition.put(position, trueLyric);
+        positionsByLyric.computeIfAbsent(trueLyric, key -> new HashSet<>()).add(position);
+    }
+
+    void remove(int position) {
+        String oldLyric = lyricsByPosition.remove(position);
+        if (oldLyric == null) {
+            return;
+        }
+        Set<Integer> positions = positionsByLyric.get(oldLyric);
+        positions.remove(position);
+        if (positions.isEmpty()) {
+            positionsByLyric.remove(oldLyric);
+        }
+    }
+
+    void clear() {
+        positionsByLyric.clear();
+        lyricsByPosition.clear();
+    }
+
+    Set<Integer> getPositions(String trueLyric) {
+        return ImmutableSet.copyOf(positionsByLyric.getOrDefault(trueLyric, ImmutableSet.of()));
+    }
+}
@@ -1,31 +1,187 @@
 package com.utsusynth.utsu.model.song.pitch;
 
-import java.util.HashMap;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.data.PitchbendData;
+import com.utsusynth.utsu.common.utils.RegionBounds;
+import com.utsusynth.utsu.model.song.pitch.StepIntervalIndex.StepInterval;
 import com.utsusynth.utsu.model.song.pitch.portamento.Portamento;
 import com.utsusynth.utsu.model.song.pitch.portamento.PortamentoFactory;
 
 /**
- * Stores up to one pitchbend for each "pitch step" in a song. There are always 96 pitch steps per
- * beat, regardless of tempo.
+ * Stores the portamentos and vibratos of every note in a song, indexed by the "pitch steps" they
+ * cover. There are always 96 pitch steps per beat, regardless of tempo. Evaluated pitch is cached
+ * per step, and so is the pitch string rendered for each window of steps. Both are only
+ * recomputed for steps touched by an added or removed pitchbend.
  */
 public class PitchCurve {
-    // Map of pitch step number to attached pitchbend, if any.
+    // Max number of rendered pitch strings to keep before starting over.
+    private static final int MAX_RENDERED_WINDOWS = 65536;
+
     // TODO: Limit the minimum and maximum x-values of portamento/vibrato.
-    private final HashMap<Integer, Pitchbend> pitchbends;
+    private final StepIntervalIndex<Portamento> portamentos;
+    private final StepIntervalIndex<Vibrato> vibratos;
     private final PortamentoFactory portamentoFactory;
 
+    // Dense cache of evaluated pitch for each step, starting at cacheStartStep.
+    private int cacheStartStep;
+    private boolean[] cached; // Whether the values of a step are up to date.
+    private double[] cachedPitches; // Pitchbend value in tenths, NaN if there is no pitchbend.
+    private double[] cachedStartPitches; // Start of current portamento, NaN if there is none.
+    private double[] cachedEndPitches; // End of current portamento, NaN if there is none.
+    private double[] vibratoPitches; // Scratch space for evaluating vibrato.
+
+    // Pitch strings rendered so far, keyed by the first step of their window.
+    private final TreeMap<Integer, List<RenderedWindow>> renderedWindows;
+    private int maxWindowSpan; // Largest lastStep - firstStep of any rendered window.
+    private int numRenderedWindows;
+
+    // While a batch is open, invalidated steps are merged here and only dropped when it finishes.
+    private int batchDepth;
+    private int pendingFirstStep;
+    private int pendingLastStep;
+
+    // Every step invalidated since the last call to takeChangedRegion.
+    private int changedFirstStep;
+    private int changedLastStep;
+
+    // Readers still reading this curve, which are given a copy of it before it next changes.
+    private final List<Reader> openReaders;
+
     @Inject
     public PitchCurve(PortamentoFactory portamentoFactory) {
-        this.pitchbends = new HashMap<>();
+        this.portamentos = new StepIntervalIndex<>();
+        this.vibratos = new StepIntervalIndex<>();
         this.portamentoFactory = portamentoFactory;
+        this.cacheStartStep = 0;
+        this.cached = new boolean[0];
+        this.cachedPitches = new double[0];
+        this.cachedStartPitches = new double[0];
+        this.cachedEndPitches = new double[0];
+        this.vibratoPitches = new double[0];
+        this.renderedWindows = new TreeMap<>();
+        this.maxWindowSpan = 0;
+        this.numRenderedWindows = 0;
+        this.batchDepth = 0;
+        this.pendingFirstStep = Integer.MAX_VALUE;
+        this.pendingLastStep = Integer.MIN_VALUE;
+        this.changedFirstStep = Integer.MAX_VALUE;
+        this.changedLastStep = Integer.MIN_VALUE;
+        this.openReaders = new ArrayList<>();
+    }
+
+    /**
+     * Reads pitch as it was when the reader was opened. Until this curve changes, reads go to the
+     * curve itself, so they fill and reuse its caches. Just before it changes, every open reader is
+     * given one shared copy of the curve as it was.
+     */
+    public static class Reader {
+        private final PitchCurve curve;
+        private PitchCurve frozen; // Guarded by curve. Null while the curve is unchanged.
+
+        private Reader(PitchCurve curve) {
+            this.curve = curve;
+        }
+
+        /** Writes out pitchbends for a section into a format readable by resamplers. */
+        public String renderPitchbends(int firstStep, int lastStep, int noteNum) {
+            PitchCurve frozenCurve;
+            synchronized (curve) {
+                if (frozen == null) {
+                    return curve.renderPitchbends(firstStep, lastStep, noteNum);
+                }
+                frozenCurve = frozen;
+            }
+            return frozenCurve.renderPitchbends(firstStep, lastStep, noteNum);
+        }
+
+        /** Stops reading, so later changes to the curve no longer need to copy it. */
+        public void close() {
+            synchronized (curve) {
+                curve.openReaders.remove(this);
+            }
+        }
+    }
+
+    /** Opens a reader that keeps seeing this curve as it is now. */
+    public synchronized Reader openReader() {
+        Reader reader = new Reader(this);
+        openReaders.add(reader);
+        return reader;
+    }
+
+    // Gives every open reader a copy of this curve before it changes.
+    private void freezeReaders() {
+        if (openReaders.isEmpty()) {
+            return;
+        }
+        PitchCurve frozen = copy();
+        for (Reader reader : openReaders) {
+            reader.frozen = frozen;
+        }
+        openReaders.clear();
+    }
+
+    /**
+     * Returns a copy of this curve that can be read while this one keeps changing. Pitch
+     * mutations and rendered pitch strings never change once created, so they are shared.
+     */
+    private PitchCurve copy() {
+        PitchCurve copy = new PitchCurve(portamentoFactory);
+        copy.portamentos.addAll(portamentos);
+        copy.vibratos.addAll(vibratos);
+        for (Map.Entry<Integer, List<RenderedWindow>> entry : renderedWindows.entrySet()) {
+            copy.renderedWindows.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        copy.maxWindowSpan = maxWindowSpan;
+        copy.numRenderedWindows = numRenderedWindows;
+        return copy;
+    }
+
+    /**
+     * Starts a batch of pitchbend changes. Until the matching finishBatch call, cached pitch is
+     * not invalidated per change, so nothing should be rendered in between.
+     */
+    public synchronized void startBatch() {
+        batchDepth++;
+    }
+
+    /** Finishes a batch of pitchbend changes, invalidating every step they touched at once. */
+    public synchronized void finishBatch() {
+        if (batchDepth == 0) {
+            return;
+        }
+        batchDepth--;
+        if (batchDepth == 0 && pendingFirstStep <= pendingLastStep) {
+            invalidate(pendingFirstStep, pendingLastStep);
+            pendingFirstStep = Integer.MAX_VALUE;
+            pendingLastStep = Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Returns the region covered by every pitch step changed since this was last called, or
+     * RegionBounds.INVALID if nothing changed.
+     */
+    public synchronized RegionBounds takeChangedRegion() {
+        if (changedFirstStep > changedLastStep) {
+            return RegionBounds.INVALID;
+        }
+        RegionBounds changed = new RegionBounds(changedFirstStep * 5, changedLastStep * 5);
+        changedFirstStep = Integer.MAX_VALUE;
+        changedLastStep = Integer.MIN_VALUE;
+        return changed;
     }
 
     /** Adds pitchbends for a single note. */
-    public void addPitchbends(
+    public synchronized void addPitchbends(
             int noteStartMs,
             int noteLengthMs,
             PitchbendData data,
@@ -35,6 +191,7 @@ public class PitchCurve {
             // TODO: Handle this.
             return;
         }
+        freezeReaders();
         // Start x value (in milliseconds) and y value (in tenths) of a pitchbend.
         double startMs = noteStartMs + data.getPBS().get(0);
         double pitchStart = prevNoteNum * 10; // Measured in tenths (1/10 a semitone.)
@@ -58,11 +215,21 @@ public class PitchCurve {
                     .makePortamento(startMs, pitchStart, endMs, pitchEnd, pitchShape);
 
             // Add portamento to all affected steps on the pitch curve.
-            for (int j = nextPitchStep(startMs); j <= prevPitchStep(endMs); j++) {
-                if (pitchbends.containsKey(j)) {
-                    pitchbends.get(j).addPortamento(noteStartMs, portamento);
+            int firstStep = nextPitchStep(startMs);
+            int lastStep = prevPitchStep(endMs);
+            if (firstStep <= lastStep) {
+                boolean duplicate = false;
+                for (StepInterval<Portamento> existing
+                        : portamentos.getOverlapping(firstStep, lastStep)) {
+                    duplicate |= existing.noteStartMs == noteStartMs;
+                }
+                if (duplicate) {
+                    // TODO: Handle this.
+                    System.out.println("Error: tried to add portamento twice.");
                 } else {
-                    pitchbends.put(j, Pitchbend.makePitchbend(noteStartMs, portamento));
+                    portamentos.add(
+                            new StepInterval<>(firstStep, lastStep, noteStartMs, portamento));
+                    invalidate(firstStep, lastStep);
                 }
             }
             // End of the current pitchbend is the start of the next one.
@@ -86,107 +253,253 @@ public class PitchCurve {
                     data.getVibrato(5),
                     data.getVibrato(6),
                     data.getVibrato(8));
-            for (int i = nextPitchStep(vibratoStartMs); i < prevPitchStep(vibratoEndMs); i++) {
-                if (pitchbends.containsKey(i)) {
-                    pitchbends.get(i).addVibrato(vibrato);
+            int firstStep = nextPitchStep(vibratoStartMs);
+            int lastStep = prevPitchStep(vibratoEndMs) - 1;
+            if (firstStep <= lastStep) {
+                if (!vibratos.getOverlapping(firstStep, lastStep).isEmpty()) {
+                    // TODO: Handle this.
+                    System.out.println("Error: tried to add overlapping vibrato.");
                 } else {
-                    pitchbends.put(i, Pitchbend.makePitchbend(vibrato));
+                    vibratos.add(new StepInterval<>(firstStep, lastStep, noteStartMs, vibrato));
+                    invalidate(firstStep, lastStep);
                 }
             }
         }
     }
 
     /** Removes pitchbends for a single note. */
-    public void removePitchbends(int noteStartMs, int noteLengthMs, PitchbendData data) {
+    public synchronized void removePitchbends(
+            int noteStartMs, int noteLengthMs, PitchbendData data) {
         if (data.getPBS().isEmpty() || data.getPBW().isEmpty()) {
             // TODO: Handle this.
             return;
         }
+        freezeReaders();
         double startMs = noteStartMs + data.getPBS().get(0);
         double endMs = startMs;
         for (double width : data.getPBW()) {
             endMs += width;
         }
-        for (int i = nextPitchStep(startMs); i <= prevPitchStep(endMs); i++) {
-            // Remove portamento from each pitch step it covers.
-            if (pitchbends.containsKey(i)) {
-                Pitchbend pitchbend = pitchbends.get(i);
-                pitchbend.removePortamento(noteStartMs);
-                if (pitchbend.isEmpty()) {
-                    pitchbends.remove(i);
-                }
+        // Remove every portamento this note added.
+        for (StepInterval<Portamento> portamento
+                : portamentos.getOverlapping(nextPitchStep(startMs), prevPitchStep(endMs))) {
+            if (portamento.noteStartMs == noteStartMs) {
+                portamentos.remove(portamento);
+                invalidate(portamento.firstStep, portamento.lastStep);
             }
         }
 
         // Remove vibrato from the entire note.
         if (data.getVibrato(0) > 0 || data.getVibrato(1) > 0) {
             double noteEndMs = noteStartMs + noteLengthMs;
-            for (int i = nextPitchStep(noteStartMs); i < prevPitchStep(noteEndMs); i++) {
-                if (pitchbends.containsKey(i)) {
-                    Pitchbend pitchbend = pitchbends.get(i);
-                    pitchbend.removeVibrato();
-                    if (pitchbend.isEmpty()) {
-                        pitchbends.remove(i);
-                    }
-                }
+            for (StepInterval<Vibrato> vibrato : vibratos
+                    .getOverlapping(nextPitchStep(noteStartMs), prevPitchStep(noteEndMs) - 1)) {
+                vibratos.remove(vibrato);
+                invalidate(vibrato.firstStep, vibrato.lastStep);
             }
         }
     }
 
     /** Writes out pitchbends for a section into a format readable by resamplers. */
-    public String renderPitchbends(int firstStep, int lastStep, int noteNum) {
+    public synchronized String renderPitchbends(int firstStep, int lastStep, int noteNum) {
+        List<RenderedWindow> sameStart = renderedWindows.get(firstStep);
+        if (sameStart != null) {
+            for (RenderedWindow window : sameStart) {
+                if (window.lastStep == lastStep && window.noteNum == noteNum) {
+                    return window.pitchString;
+                }
+            }
+        }
+        String pitchString = encodePitchbends(firstStep, lastStep, noteNum);
+        if (numRenderedWindows >= MAX_RENDERED_WINDOWS) {
+            renderedWindows.clear();
+            numRenderedWindows = 0;
+        }
+        renderedWindows.computeIfAbsent(firstStep, key -> new ArrayList<>(1))
+                .add(new RenderedWindow(lastStep, noteNum, pitchString));
+        numRenderedWindows++;
+        maxWindowSpan = Math.max(maxWindowSpan, lastStep - firstStep);
+        return pitchString;
+    }
+
+    private String encodePitchbends(int firstStep, int lastStep, int noteNum) {
+        if (firstStep > lastStep) {
+            return "";
+        }
+        fillCache(firstStep, lastStep);
+        int firstIndex = firstStep - cacheStartStep;
+        int lastIndex = lastStep - cacheStartStep;
+
         StringBuilder result = new StringBuilder();
         double noteNumPitch = noteNum * 10; // In tenths. (1/10 of a semitone)
         double defaultPitch = 0; // In tenths. (1/10 of a semitone)
-        for (int scanStep = firstStep; scanStep <= lastStep; scanStep++) {
+        for (int scanIndex = firstIndex; scanIndex <= lastIndex; scanIndex++) {
             // Scan through the steps until first default pitch is found.
-            if (pitchbends.containsKey(scanStep)) {
-                Optional<Portamento> portamento = pitchbends.get(scanStep).getPortamento();
-                if (portamento.isPresent()) {
-                    defaultPitch = portamento.get().getStartPitch();
-                    break;
-                }
+            if (!Double.isNaN(cachedStartPitches[scanIndex])) {
+                defaultPitch = cachedStartPitches[scanIndex];
+                break;
             }
         }
 
-        for (int step = firstStep; step <= lastStep; step++) {
-            if (pitchbends.containsKey(step)) {
+        for (int index = firstIndex; index <= lastIndex; index++) {
+            if (!Double.isNaN(cachedPitches[index])) {
                 // Write pitchbend.
-                int positionMs = step * 5; // 92 pitch steps in a beat of 480 ms.
-                double realPitch = pitchbends.get(step).apply(positionMs); // In tenths.
-                if (!pitchbends.get(step).getPortamento().isPresent()) {
+                double realPitch = cachedPitches[index]; // In tenths.
+                boolean hasPortamento = !Double.isNaN(cachedEndPitches[index]);
+                if (!hasPortamento) {
                     realPitch += defaultPitch; // Vibrato modifies default pitch if no portamento.
                 }
                 int diff = (int) ((realPitch - noteNumPitch) * 10); // In cents.
                 result.append(convertTo12Bit(diff));
 
                 // Set the default pitch to the one at the end of current portamento.
-                Optional<Portamento> portamento = pitchbends.get(step).getPortamento();
-                if (portamento.isPresent()) {
-                    defaultPitch = portamento.get().getEndPitch();
+                if (hasPortamento) {
+                    defaultPitch = cachedEndPitches[index];
                 }
             } else {
                 // Write a stretch of no pitchbends.
-                int numEmpty = 0;
-                int emptyStep = step;
-                for (; emptyStep <= lastStep; emptyStep++) {
-                    if (pitchbends.containsKey(emptyStep)) {
-                        break;
-                    } else {
-                        numEmpty++;
-                    }
+                int emptyIndex = index;
+                while (emptyIndex <= lastIndex && Double.isNaN(cachedPitches[emptyIndex])) {
+                    emptyIndex++;
                 }
+                int numEmpty = emptyIndex - index;
                 int diff = (int) ((defaultPitch - noteNumPitch) * 10); // In cents.
                 result.append(convertTo12Bit(diff));
                 if (numEmpty > 1) {
                     result.append(String.format("#%d#", numEmpty - 1));
                 }
-                step = emptyStep - 1; // Move step to the end of the empty stretch.
+                index = emptyIndex - 1; // Move index to the end of the empty stretch.
             }
         }
         return result.toString();
     }
 
+    // Evaluates every stale step in a range, growing the cache to fit it if necessary.
+    private void fillCache(int firstStep, int lastStep) {
+        growCache(firstStep, lastStep);
+        int index = firstStep - cacheStartStep;
+        int lastIndex = lastStep - cacheStartStep;
+        while (index <= lastIndex) {
+            if (cached[index]) {
+                index++;
+                continue;
+            }
+            int staleEnd = index;
+            while (staleEnd + 1 <= lastIndex && !cached[staleEnd + 1]) {
+                staleEnd++;
+            }
+            evaluate(index + cacheStartStep, staleEnd + cacheStartStep);
+            index = staleEnd + 1;
+        }
+    }
+
+    private void evaluate(int firstStep, int lastStep) {
+        int firstIndex = firstStep - cacheStartStep;
+        int endIndex = lastStep - cacheStartStep + 1;
+        Arrays.fill(cachedPitches, firstIndex, endIndex, Double.NaN);
+        Arrays.fill(cachedStartPitches, firstIndex, endIndex, Double.NaN);
+        Arrays.fill(cachedEndPitches, firstIndex, endIndex, Double.NaN);
+
+        // Where portamentos overlap, the one belonging to the latest note wins.
+        List<StepInterval<Portamento>> overlapping =
+                portamentos.getOverlapping(firstStep, lastStep);
+        overlapping.sort(Comparator.comparingInt(interval -> interval.noteStartMs));
+        for (StepInterval<Portamento> interval : overlapping) {
+            Portamento portamento = interval.mutation;
+            int first = Math.max(firstStep, interval.firstStep);
+            int count = Math.min(lastStep, interval.lastStep) - first + 1;
+            int index = first - cacheStartStep;
+            // Portamento is absolute.
+            portamento.applyRange(first * 5, 5, count, cachedPitches, index);
+            Arrays.fill(cachedStartPitches, index, index + count, portamento.getStartPitch());
+            Arrays.fill(cachedEndPitches, index, index + count, portamento.getEndPitch());
+        }
+        // Vibrato is centered on zero, meant to modify portamento pitch.
+        for (StepInterval<Vibrato> interval : vibratos.getOverlapping(firstStep, lastStep)) {
+            int first = Math.max(firstStep, interval.firstStep);
+            int count = Math.min(lastStep, interval.lastStep) - first + 1;
+            if (vibratoPitches.length < count) {
+                vibratoPitches = new double[count];
+            }
+            interval.mutation.applyRange(first * 5, 5, count, vibratoPitches, 0);
+            int index = first - cacheStartStep;
+            for (int i = 0; i < count; i++, index++) {
+                double portamentoPitch =
+                        Double.isNaN(cachedPitches[index]) ? 0 : cachedPitches[index];
+                cachedPitches[index] = portamentoPitch + vibratoPitches[i];
+            }
+        }
+        Arrays.fill(cached, firstIndex, endIndex, true);
+    }
+
+    // Marks a range of steps as stale so they are re-evaluated the next time they are rendered.
+    private void invalidate(int firstStep, int lastStep) {
+        if (batchDepth > 0) {
+            pendingFirstStep = Math.min(pendingFirstStep, firstStep);
+            pendingLastStep = Math.max(pendingLastStep, lastStep);
+            return;
+        }
+        changedFirstStep = Math.min(changedFirstStep, firstStep);
+        changedLastStep = Math.max(changedLastStep, lastStep);
+        int firstIndex = Math.max(0, firstStep - cacheStartStep);
+        int endIndex = Math.min(cached.length, lastStep - cacheStartStep + 1);
+        if (firstIndex < endIndex) {
+            Arrays.fill(cached, firstIndex, endIndex, false);
+        }
+
+        // Drop every rendered pitch string that included one of these steps.
+        Iterator<Map.Entry<Integer, List<RenderedWindow>>> sameStartIterator = renderedWindows
+                .subMap(firstStep - maxWindowSpan, true, lastStep, true).entrySet().iterator();
+        while (sameStartIterator.hasNext()) {
+            List<RenderedWindow> sameStart = sameStartIterator.next().getValue();
+            int sizeBefore = sameStart.size();
+            sameStart.removeIf(window -> window.lastStep >= firstStep);
+            numRenderedWindows -= sizeBefore - sameStart.size();
+            if (sameStart.isEmpty()) {
+                sameStartIterator.remove();
+            }
+        }
+    }
+
+    private void growCache(int firstStep, int lastStep) {
+        int cacheEndStep = cacheStartStep + cached.length; // Exclusive.
+        if (firstStep >= cacheStartStep && lastStep < cacheEndStep) {
+            return;
+        }
+        int newStartStep;
+        int newEndStep;
+        if (cached.length == 0) {
+            cacheStartStep = firstStep;
+            newStartStep = firstStep;
+            newEndStep = lastStep + 1;
+        } else {
+            // Leave room to grow in the same direction without copying every time.
+            newStartStep = Math.min(cacheStartStep, firstStep);
+            newEndStep = Math.max(cacheEndStep, lastStep + 1);
+            if (newStartStep < cacheStartStep) {
+                newStartStep -= cached.length;
+            }
+            if (newEndStep > cacheEndStep) {
+                newEndStep += cached.length;
+            }
+        }
+        int offset = cacheStartStep - newStartStep;
+        int newLength = newEndStep - newStartStep;
+        boolean[] newCached = new boolean[newLength];
+        System.arraycopy(cached, 0, newCached, offset, cached.length);
+        cached = newCached;
+        cachedPitches = copyInto(cachedPitches, newLength, offset);
+        cachedStartPitches = copyInto(cachedStartPitches, newLength, offset);
+        cachedEndPitches = copyInto(cachedEndPitches, newLength, offset);
+        cacheStartStep = newStartStep;
+    }
+
+    private static double[] copyInto(double[] values, int newLength, int offset) {
+        double[] newValues = new double[newLength];
+        System.arraycopy(values, 0, newValues, offset, values.length);
+        return newValues;
+    }
+
     /**
      * For some reason, resamplers want two characters that represent a 12-bit number in two's
      * complement form (-2048 to 2047). I would not be using this format if existing resamplers
@@ -238,4 +551,17 @@ public class PitchCurve {
         }
         return prevStep;
     }
+
+    /** Pitch string rendered for a window of steps ending at lastStep, relative to noteNum. */
+    private static class RenderedWindow {
+        private final int lastStep;
+        private final int noteNum;
+        private final String pitchString;
+
+        private RenderedWindow(int lastStep, int noteNum, String pitchString) {
+            this.lastStep = lastStep;
+            this.noteNum = noteNum;
+            this.pitchString = pitchString;
+        }
+    }
 }
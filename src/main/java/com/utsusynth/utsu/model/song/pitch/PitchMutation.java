@@ -3,4 +3,10 @@ package com.utsusynth.utsu.model.song.pitch;
 public interface PitchMutation {
 	/** Returns pitch value (in 1/10 of a semitone) for this position. */
 	double apply(int positionMs);
+
+	/**
+	 * Writes pitch values (in 1/10 of a semitone) for count positions, starting at startMs and
+	 * stepMs apart, into out starting at offset. Positions this mutation doesn't cover get 0.
+	 */
+	void applyRange(int startMs, int stepMs, int count, double[] out, int offset);
 }
@@ -0,0 +1,72 @@
+package com.utsusynth.utsu.model.song.pitch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index of pitch mutations by the inclusive range of pitch steps they cover. Intervals are sorted
+ * by first step, and the longest interval ever added bounds how far back an overlap query needs to
+ * look, so finding the intervals around a step does not touch the rest of the song.
+ */
+class StepIntervalIndex<T extends PitchMutation> {
+    private final TreeMap<Integer, List<StepInterval<T>>> intervals;
+    private int maxSpan; // Largest lastStep - firstStep of any interval added so far.
+
+    StepIntervalIndex() {
+        this.intervals = new TreeMap<>();
+        this.maxSpan = 0;
+    }
+
+    void add(StepInterval<T> interval) {
+        intervals.computeIfAbsent(interval.firstStep, key -> new ArrayList<>(1)).add(interval);
+        maxSpan = Math.max(maxSpan, interval.lastStep - interval.firstStep);
+    }
+
+    /** Adds every interval of another index. Intervals are immutable, so they are shared. */
+    void addAll(StepIntervalIndex<T> other) {
+        for (Map.Entry<Integer, List<StepInterval<T>>> entry : other.intervals.entrySet()) {
+            intervals.computeIfAbsent(entry.getKey(), key -> new ArrayList<>(1))
+                    .addAll(entry.getValue());
+        }
+        maxSpan = Math.max(maxSpan, other.maxSpan);
+    }
+
+    void remove(StepInterval<T> interval) {
+        List<StepInterval<T>> sameStart = intervals.get(interval.firstStep);
+        if (sameStart != null && sameStart.remove(interval) && sameStart.isEmpty()) {
+            intervals.remove(interval.firstStep);
+        }
+    }
+
+    /** Returns every interval overlapping the given steps, in order of first step. */
+    List<StepInterval<T>> getOverlapping(int firstStep, int lastStep) {
+        List<StepInterval<T>> overlapping = new ArrayList<>();
+        Map<Integer, List<StepInterval<T>>> candidates =
+                intervals.subMap(firstStep - maxSpan, true, lastStep, true);
+        for (List<StepInterval<T>> sameStart : candidates.values()) {
+            for (StepInterval<T> interval : sameStart) {
+                if (interval.lastStep >= firstStep) {
+                    overlapping.add(interval);
+                }
+            }
+        }
+        return overlapping;
+    }
+
+    /** A pitch mutation belonging to one note, covering firstStep through lastStep. */
+    static class StepInterval<T extends PitchMutation> {
+        final int firstStep;
+        final int lastStep;
+        final int noteStartMs; // Start of the note that added this interval.
+        final T mutation;
+
+        StepInterval(int firstStep, int lastStep, int noteStartMs, T mutation) {
+            this.firstStep = firstStep;
+            this.lastStep = lastStep;
+            this.noteStartMs = noteStartMs;
+            this.mutation = mutation;
+        }
+    }
+}
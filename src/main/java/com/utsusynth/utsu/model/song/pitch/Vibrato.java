@@ -61,4 +61,35 @@ class Vibrato implements PitchMutation {
             return 0;
         }
     }
+
+    @Override
+    public void applyRange(int startMs, int stepMs, int count, double[] out, int offset) {
+        // Evaluate each section of the vibrato in its own loop instead of branching per position.
+        int i = offset;
+        int end = offset + count;
+        int positionMs = startMs;
+        for (; i < end && positionMs < this.startMs; i++, positionMs += stepMs) {
+            out[i] = 0;
+        }
+        for (; i < end && positionMs < this.startMs + phaseIn; i++, positionMs += stepMs) {
+            double frequency = startFreq + freqSlope * (positionMs - this.startMs);
+            double incScale = Math.abs(positionMs - this.startMs) / phaseIn;
+            double sine = Math.sin((positionMs - this.startMs) * frequency - phase);
+            out[i] = amplitude * incScale * sine + (pitchChange * incScale);
+        }
+        for (; i < end && positionMs < endMs - phaseOut; i++, positionMs += stepMs) {
+            double frequency = startFreq + freqSlope * (positionMs - this.startMs);
+            out[i] = amplitude * Math.sin((positionMs - this.startMs) * frequency - phase)
+                    + pitchChange;
+        }
+        for (; i < end && positionMs < endMs; i++, positionMs += stepMs) {
+            double frequency = startFreq + freqSlope * (positionMs - this.startMs);
+            double decScale = Math.abs(endMs - positionMs) / phaseOut;
+            double sine = Math.sin((positionMs - this.startMs) * frequency - phase);
+            out[i] = amplitude * decScale * sine + (pitchChange * decScale);
+        }
+        for (; i < end; i++) {
+            out[i] = 0;
+        }
+    }
 }
@@ -27,6 +27,19 @@ class LinearPortamento extends Portamento {
 		return slope * adjustedX + y1;
 	}
 
+	@Override
+	public void applyRange(int startMs, int stepMs, int count, double[] out, int offset) {
+		int positionMs = startMs;
+		for (int i = offset; i < offset + count; i++, positionMs += stepMs) {
+			if (positionMs < x1 || positionMs > x2) {
+				out[i] = 0.0;
+				continue;
+			}
+			double adjustedX = positionMs - x1;
+			out[i] = slope * adjustedX + y1;
+		}
+	}
+
 	@Override
 	public double getStartPitch() {
 		return y1;
@@ -39,6 +39,25 @@ class LogarithmicPortamento extends Portamento {
 		return pitch;
 	}
 
+	@Override
+	public void applyRange(int startMs, int stepMs, int count, double[] out, int offset) {
+		boolean rising = y2 > y1;
+		int positionMs = startMs;
+		for (int i = offset; i < offset + count; i++, positionMs += stepMs) {
+			if (positionMs < x1 || positionMs > x2) {
+				out[i] = 0.0;
+				continue;
+			}
+			double adjustedX = positionMs - x1;
+			if (adjustedX == 0.0) {
+				out[i] = y1;
+				continue;
+			}
+			double pitch = (yStretch * Math.log(adjustedX * xStretch)) + constant + y1;
+			out[i] = (rising && y1 > pitch) || (y1 > y2 && pitch > y1) ? y1 : pitch;
+		}
+	}
+
 	@Override
 	public double getStartPitch() {
 		return y1;
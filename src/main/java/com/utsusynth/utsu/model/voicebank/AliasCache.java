@@ -0,0 +1,84 @@
+package com.utsusynth.utsu.model.voicebank;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Remembers which lyric config each alias lookup resolved to, so that repeated lookups cost a
+ * single hash probe, along with the alias trie used to resolve new lookups. Must be cleared
+ * whenever the lyric configs, pitch map, or presamp config it was filled from change. Safe to use
+ * from multiple threads.
+ */
+class AliasCache {
+    private volatile Map<Key, Optional<LyricConfig>> results = new ConcurrentHashMap<>();
+    private volatile AliasTrie trie = null; // Built on first use.
+
+    Optional<LyricConfig> get(
+            String prevLyric,
+            String lyric,
+            String pitch,
+            Supplier<Optional<LyricConfig>> resolver) {
+        // Results resolved while the cache is being cleared go to the discarded map.
+        Map<Key, Optional<LyricConfig>> curResults = results;
+        Key key = new Key(prevLyric, lyric, pitch);
+        Optional<LyricConfig> result = curResults.get(key);
+        if (result == null) {
+            result = resolver.get();
+            curResults.put(key, result);
+        }
+        return result;
+    }
+
+    AliasTrie getTrie(LyricConfigMap lyricConfigs) {
+        AliasTrie curTrie = trie;
+        if (curTrie == null) {
+            synchronized (this) {
+                if (trie == null) {
+                    trie = AliasTrie.of(lyricConfigs.getLyrics());
+                }
+                curTrie = trie;
+            }
+        }
+        return curTrie;
+    }
+
+    void clear() {
+        synchronized (this) {
+            trie = null;
+        }
+        results = new ConcurrentHashMap<>();
+    }
+
+    private static class Key {
+        private final String prevLyric;
+        private final String lyric;
+        private final String pitch;
+        private final int hashCode;
+
+        private Key(String prevLyric, String lyric, String pitch) {
+            this.prevLyric = prevLyric;
+            this.lyric = lyric;
+            this.pitch = pitch;
+            this.hashCode = Objects.hash(prevLyric, lyric, pitch);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key otherKey = (Key) other;
+            return lyric.equals(otherKey.lyric)
+                    && prevLyric.equals(otherKey.prevLyric)
+                    && pitch.equals(otherKey.pitch);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.utsusynth.utsu.model.voicebank;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Read-only trie of every alias in a voicebank. Nodes are plain ints and children are kept in
+ * sorted arrays, so candidate aliases can be matched piece by piece without building strings.
+ */
+class AliasTrie {
+    static final int ROOT = 0;
+    static final int NO_NODE = -1;
+
+    private final int[] firstEdge; // Edges of node n are firstEdge[n] until firstEdge[n + 1].
+    private final char[] edgeChars; // Sorted within each node. Edge e leads to node e + 1.
+    private final String[] aliases; // Alias that ends at each node, or null.
+
+    private static class BuildNode {
+        private final Map<Character, BuildNode> children = new TreeMap<>();
+        private String alias = null;
+    }
+
+    static AliasTrie of(Collection<String> allAliases) {
+        BuildNode root = new BuildNode();
+        for (String alias : allAliases) {
+            BuildNode node = root;
+            for (int i = 0; i < alias.length(); i++) {
+                node = node.children.computeIfAbsent(alias.charAt(i), c -> new BuildNode());
+            }
+            node.alias = alias;
+        }
+
+        // Number nodes breadth-first, so that children are numbered in the same order as edges.
+        List<BuildNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        int numEdges = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            nodes.addAll(nodes.get(i).children.values());
+            numEdges += nodes.get(i).children.size();
+        }
+        int[] firstEdge = new int[nodes.size() + 1];
+        char[] edgeChars = new char[numEdges];
+        String[] aliases = new String[nodes.size()];
+        int edge = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            firstEdge[i] = edge;
+            aliases[i] = nodes.get(i).alias;
+            for (char c : nodes.get(i).children.keySet()) {
+                edgeChars[edge++] = c;
+            }
+        }
+        firstEdge[nodes.size()] = edge;
+        return new AliasTrie(firstEdge, edgeChars, aliases);
+    }
+
+    private AliasTrie(int[] firstEdge, char[] edgeChars, String[] aliases) {
+        this.firstEdge = firstEdge;
+        this.edgeChars = edgeChars;
+        this.aliases = aliases;
+    }
+
+    /** Follows one character from a node, returning NO_NODE if no alias continues that way. */
+    int walk(int node, char c) {
+        if (node == NO_NODE) {
+            return NO_NODE;
+        }
+        int low = firstEdge[node];
+        int high = firstEdge[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (edgeChars[mid] < c) {
+                low = mid + 1;
+            } else if (edgeChars[mid] > c) {
+                high = mid - 1;
+            } else {
+                return mid + 1;
+            }
+        }
+        return NO_NODE;
+    }
+
+    /** Follows every character of a string from a node. */
+    int walk(int node, String text) {
+        for (int i = 0; i < text.length() && node != NO_NODE; i++) {
+            node = walk(node, text.charAt(i));
+        }
+        return node;
+    }
+
+    boolean hasAlias(int node) {
+        return node != NO_NODE && aliases[node] != null;
+    }
+
+    /** Returns the alias that ends at a node. Only valid if hasAlias is true for that node. */
+    String getAlias(int node) {
+        return aliases[node];
+    }
+}
@@ -33,10 +33,7 @@ public class LyricConfig implements Comparable<LyricConfig> {
         this(
                 pathToVoicebank,
                 trueLyric,
-                pathToFile.toPath().toAbsolutePath().subpath(
-                        // Get part of pathToFile not in pathToVoicebank.
-                        pathToVoicebank.toPath().toAbsolutePath().getNameCount(),
-                        pathToFile.toPath().toAbsolutePath().getNameCount()).toString(),
+                getFileName(pathToVoicebank, pathToFile),
                 Double.parseDouble(configValues[0]),
                 Double.parseDouble(configValues[1]),
                 Double.parseDouble(configValues[2]),
@@ -100,7 +97,15 @@ public class LyricConfig implements Comparable<LyricConfig> {
         return trueLyric;
     }
 
-    private static String getCategory(String fileName) {
+    /** Gets the part of pathToFile not in pathToVoicebank, such as "C3/de.wav". */
+    public static String getFileName(File pathToVoicebank, File pathToFile) {
+        return pathToFile.toPath().toAbsolutePath().subpath(
+                pathToVoicebank.toPath().toAbsolutePath().getNameCount(),
+                pathToFile.toPath().toAbsolutePath().getNameCount()).toString();
+    }
+
+    /** Gets the category of a file name such as "C3/de.wav", which is its folder. */
+    public static String getCategory(String fileName) {
         String category = new File(fileName).getParent();
         if (category == null) {
             category = MAIN_CATEGORY;
@@ -138,4 +143,14 @@ public class LyricConfig implements Comparable<LyricConfig> {
     public boolean equals(LyricConfig other) {
         return this.compareTo(other) == 0;
     }
+
+    /** Whether both configs point to the same file with the same timings. */
+    boolean hasSameValues(LyricConfig other) {
+        return equals(other)
+                && offset == other.offset
+                && consonant == other.consonant
+                && cutoff == other.cutoff
+                && preutterance == other.preutterance
+                && overlap == other.overlap;
+    }
 }
@@ -2,89 +2,250 @@ package com.utsusynth.utsu.model.voicebank;
 
 import com.google.common.collect.ImmutableSet;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A map of lyric to LyricConfig where the values can be retrieved at any time in sorted order.
+ * Lyrics can be added lazily, in which case their configs are only built once they are looked up
+ * or their category is opened. Safe to use from multiple threads. Looking up a lyric only locks
+ * the map to build a lazy config, so lookups from many threads do not wait on each other.
  */
 public class LyricConfigMap {
     public static final String MAIN_CATEGORY = "Main";
 
-    private final SortedMap<String, SortedSet<LyricConfig>> configSets;
-    private final Map<String, LyricConfig> configMap;
+    private final SortedSet<String> categories;
+    private final SortedMap<String, SortedSet<LyricConfig>> configSets; // Built configs only.
+    private final Map<String, LyricConfig> configMap; // Read without locking.
+    private final Map<String, LazyConfig> lazyConfigs; // Lyrics without a built config.
+    private final Map<String, Set<String>> lazyCategories; // Category to lazy lyrics.
+    private final Map<String, String> otoFiles; // Lyric to the oto file it was read from.
+    private final Set<String> unsavedCategories; // Categories edited since the last save.
+    private boolean savedInFull; // Whether every category has been saved at least once.
 
     public static class Reader {
-        private final Map<String, LyricConfig> readonlyConfigMap;
-        private Reader(Map<String, LyricConfig> readonlyConfigMap) {
+        private final LyricConfigMap readonlyConfigMap;
+        private Reader(LyricConfigMap readonlyConfigMap) {
             this.readonlyConfigMap = readonlyConfigMap;
         }
 
         public Optional<LyricConfig> getConfig(String lyric) {
-            if (readonlyConfigMap.containsKey(lyric)) {
-                return Optional.of(readonlyConfigMap.get(lyric));
-            }
-            return Optional.empty();
+            return Optional.ofNullable(readonlyConfigMap.getConfig(lyric));
+        }
+    }
+
+    private static class LazyConfig {
+        private final File pathToVoicebank;
+        private final String trueLyric;
+        private final String fileName;
+        private final double[] configValues;
+
+        private LazyConfig(
+                File pathToVoicebank, String trueLyric, String fileName, double[] configValues) {
+            this.pathToVoicebank = pathToVoicebank;
+            this.trueLyric = trueLyric;
+            this.fileName = fileName;
+            this.configValues = configValues;
+        }
+
+        private LyricConfig build() {
+            return new LyricConfig(pathToVoicebank, trueLyric, fileName, configValues);
         }
     }
 
     public LyricConfigMap() {
+        categories = new TreeSet<>();
         configSets = new TreeMap<>();
-        configMap = new HashMap<>();
+        configMap = new ConcurrentHashMap<>();
+        lazyConfigs = new ConcurrentHashMap<>();
+        lazyCategories = new HashMap<>();
+        otoFiles = new HashMap<>();
+        unsavedCategories = new HashSet<>();
+        savedInFull = false;
     }
 
     public boolean hasLyric(String lyric) {
-        return configMap.containsKey(lyric);
+        // Built configs are added before their lazy config is removed, so check lazy ones first.
+        return lazyConfigs.containsKey(lyric) || configMap.containsKey(lyric);
     }
 
+    /** Returns the config for a lyric, building it if needed, or null if there is none. */
     public LyricConfig getConfig(String lyric) {
+        if (lazyConfigs.containsKey(lyric)) {
+            return buildLazyConfig(lyric);
+        }
         return configMap.get(lyric);
     }
 
-    public Set<String> getCategories() {
-        return configSets.keySet();
+    public synchronized Set<String> getCategories() {
+        return ImmutableSet.copyOf(categories);
     }
 
-    public Iterator<LyricConfig> getConfigs(String category) {
+    public synchronized Iterator<LyricConfig> getConfigs(String category) {
+        // Opening a category builds all of its configs.
+        Set<String> lazyLyrics = lazyCategories.get(category);
+        if (lazyLyrics != null) {
+            for (String lyric : new ArrayList<>(lazyLyrics)) {
+                buildLazyConfig(lyric);
+            }
+        }
         if (configSets.containsKey(category)) {
-            return configSets.get(category).iterator();
+            // Copied, since other threads may build configs into this category meanwhile.
+            return new ArrayList<>(configSets.get(category)).iterator();
         }
         return Collections.emptyIterator();
     }
 
+    /** Every lyric with a config, for building lookup structures. */
+    synchronized Set<String> getLyrics() {
+        return ImmutableSet.<String>builder()
+                .addAll(configMap.keySet())
+                .addAll(lazyConfigs.keySet())
+                .build();
+    }
+
     /**
      * Adds a lyric config if configMap doesn't have a config for that lyric already.
      *
      * @return whether a config was added.
      */
-    public boolean addConfig(LyricConfig config) {
-        if (configMap.containsKey(config.getTrueLyric())) {
+    public synchronized boolean addConfig(LyricConfig config) {
+        if (hasLyric(config.getTrueLyric())) {
             return false;
         }
+        putConfig(config);
+        unsavedCategories.add(config.getCategory());
+        return true;
+    }
 
-        // Add category if it doesn't already exist.
-        String category = config.getCategory();
-        if (!configSets.containsKey(category)) {
-            configSets.put(category, new TreeSet<>());
+    /**
+     * Adds a lyric whose config is only built once it is used, if there is no config for that
+     * lyric already.
+     *
+     * @param otoFile The oto file the lyric was read from, relative to the voicebank.
+     * @return whether a lyric was added.
+     */
+    public synchronized boolean addLazyConfig(
+            File pathToVoicebank,
+            String trueLyric,
+            String fileName,
+            double[] configValues,
+            String otoFile) {
+        if (hasLyric(trueLyric)) {
+            return false;
         }
-        configSets.get(category).add(config);
-        configMap.put(config.getTrueLyric(), config);
+        otoFiles.put(trueLyric, otoFile);
+        String category = LyricConfig.getCategory(fileName);
+        categories.add(category);
+        lazyConfigs.put(
+                trueLyric, new LazyConfig(pathToVoicebank, trueLyric, fileName, configValues));
+        lazyCategories.computeIfAbsent(category, key -> new HashSet<>()).add(trueLyric);
         return true;
     }
 
     /**
      * Adds a lyric config, overwriting any existing ones with the same lyric.
      */
-    public void setConfig(LyricConfig config) {
-        if (configMap.containsKey(config.getTrueLyric())) {
-            LyricConfig oldConfig = configMap.get(config.getTrueLyric());
-            String oldCategory = oldConfig.getCategory();
-            if (configSets.containsKey(oldCategory)) {
-                configSets.get(oldCategory).remove(oldConfig);
+    public synchronized void setConfig(LyricConfig config) {
+        // The lyric stays in its oto file until the next save.
+        String otoFile = otoFiles.get(config.getTrueLyric());
+        removeConfig(config.getTrueLyric());
+        putConfig(config);
+        if (otoFile != null) {
+            otoFiles.put(config.getTrueLyric(), otoFile);
+        }
+        unsavedCategories.add(config.getCategory());
+    }
+
+    public synchronized void removeConfig(String lyric) {
+        removeLyric(lyric).ifPresent(unsavedCategories::add);
+    }
+
+    /**
+     * Replaces the lyrics read from one oto file with the lyrics another map read from that file
+     * again, such as after another program edited it. Lyrics the file no longer defines are
+     * removed, unless they were read from a different oto file. Every lyric the file defines is
+     * taken from it, even if another oto file defined it first. Configs that did not change are
+     * kept.
+     *
+     * @param otoFile The oto file, relative to the voicebank.
+     * @return Lyrics whose configs were added, removed, or changed.
+     */
+    synchronized Set<String> replaceOtoFile(String otoFile, LyricConfigMap source) {
+        Set<String> newLyrics = source.getLyrics();
+        Set<String> changedLyrics = new HashSet<>();
+        for (Map.Entry<String, String> entry : ImmutableSet.copyOf(otoFiles.entrySet())) {
+            if (entry.getValue().equals(otoFile) && !newLyrics.contains(entry.getKey())) {
+                removeLyric(entry.getKey());
+                changedLyrics.add(entry.getKey());
             }
         }
+        for (String lyric : newLyrics) {
+            LyricConfig newConfig = source.getConfig(lyric);
+            LyricConfig oldConfig = getConfig(lyric);
+            if (oldConfig == null || !oldConfig.hasSameValues(newConfig)) {
+                removeLyric(lyric);
+                putConfig(newConfig);
+                changedLyrics.add(lyric);
+            }
+            otoFiles.put(lyric, otoFile);
+        }
+        return changedLyrics;
+    }
+
+    /** Records that some lyrics were saved to an oto file, relative to the voicebank. */
+    synchronized void setOtoFile(String otoFile, Collection<String> lyrics) {
+        for (String lyric : lyrics) {
+            if (hasLyric(lyric)) {
+                otoFiles.put(lyric, otoFile);
+            }
+        }
+    }
+
+    /**
+     * Returns the categories whose oto files need saving and counts them as saved. Every category
+     * needs saving until the first save, since oto files on disk may be laid out differently.
+     */
+    synchronized Set<String> takeUnsavedCategories() {
+        Set<String> toSave =
+                savedInFull ? ImmutableSet.copyOf(unsavedCategories) : getCategories();
+        unsavedCategories.clear();
+        savedInFull = true;
+        return toSave;
+    }
+
+    /** Counts categories as unsaved again, such as when saving them failed. */
+    synchronized void markUnsaved(Set<String> categories) {
+        unsavedCategories.addAll(categories);
+    }
+
+    /** Roughly estimates the memory used by all configs, in bytes. */
+    synchronized long estimateBytes() {
+        long bytes = 0;
+        for (LyricConfig config : configMap.values()) {
+            // Map entry, config, a File, and four strings.
+            bytes += 240 + 2L * (config.getTrueLyric().length()
+                    + config.getFilename().length()
+                    + config.getCategory().length()
+                    + config.getPathToFile().getPath().length());
+        }
+        for (LazyConfig lazyConfig : lazyConfigs.values()) {
+            // Map entries, lazy config, an array of five doubles, and two strings.
+            bytes += 200 + 2L * (lazyConfig.trueLyric.length() + lazyConfig.fileName.length());
+        }
+        return bytes;
+    }
+
+    /** Returns a readonly view of a lyric config map, useful for plugins. */
+    public Reader getReader() {
+        return new Reader(this);
+    }
 
+    private void putConfig(LyricConfig config) {
         // Add category if it doesn't already exist.
         String category = config.getCategory();
+        categories.add(category);
         if (!configSets.containsKey(category)) {
             configSets.put(category, new TreeSet<>());
         }
@@ -92,19 +253,44 @@ public class LyricConfigMap {
         configMap.put(config.getTrueLyric(), config);
     }
 
-    public void removeConfig(String lyric) {
-        if (configMap.containsKey(lyric)) {
-            LyricConfig toRemove = configMap.get(lyric);
-            String category = toRemove.getCategory();
-            if (configSets.containsKey(category)) {
-                configSets.get(category).remove(toRemove);
-            }
+    // Builds each lazy config only once, even if several threads look it up at the same time.
+    private synchronized LyricConfig buildLazyConfig(String lyric) {
+        LazyConfig lazyConfig = lazyConfigs.get(lyric);
+        if (lazyConfig == null) {
+            return configMap.get(lyric); // Built or removed while waiting for the lock.
         }
-        configMap.remove(lyric);
+        LyricConfig config = lazyConfig.build();
+        putConfig(config);
+        lazyConfigs.remove(lyric);
+        removeLazyLyric(config.getCategory(), lyric);
+        return config;
     }
 
-    /** Returns a readonly view of a lyric config map, useful for plugins. */
-    public Reader getReader() {
-        return new Reader(configMap);
+    // Removes a lyric without counting its category as edited, returning that category.
+    private Optional<String> removeLyric(String lyric) {
+        otoFiles.remove(lyric);
+        LazyConfig lazyConfig = lazyConfigs.remove(lyric);
+        if (lazyConfig != null) {
+            String category = LyricConfig.getCategory(lazyConfig.fileName);
+            removeLazyLyric(category, lyric);
+            return Optional.of(category);
+        }
+        LyricConfig toRemove = configMap.remove(lyric);
+        if (toRemove == null) {
+            return Optional.empty();
+        }
+        String category = toRemove.getCategory();
+        if (configSets.containsKey(category)) {
+            configSets.get(category).remove(toRemove);
+        }
+        return Optional.of(category);
+    }
+
+    private void removeLazyLyric(String category, String lyric) {
+        Set<String> lazyLyrics = lazyCategories.get(category);
+        lazyLyrics.remove(lyric);
+        if (lazyLyrics.isEmpty()) {
+            lazyCategories.remove(category);
+        }
     }
 }
@@ -1,12 +1,17 @@
 package com.utsusynth.utsu.model.voicebank;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.utsusynth.utsu.common.utils.Pitch;
 import com.utsusynth.utsu.common.utils.PitchUtils;
 
+/**
+ * Prefixes and suffixes for each pitch. Safe to use from multiple threads, since the pitch map
+ * can be reloaded while notes are being rendered.
+ */
 public class PitchMap {
     private final ImmutableList<String> allPitches;
     private final Map<String, String> prefixes;
@@ -23,25 +28,19 @@ public class PitchMap {
         }
 
         public String getPrefix(String pitch) {
-            if (readonlyPrefixes.containsKey(pitch)) {
-                return readonlyPrefixes.get(pitch);
-            }
-            return "";
+            return readonlyPrefixes.getOrDefault(pitch, "");
         }
 
         public String getSuffix(String pitch) {
-            if (readonlySuffixes.containsKey(pitch)) {
-                return readonlySuffixes.get(pitch);
-            }
-            return "";
+            return readonlySuffixes.getOrDefault(pitch, "");
         }
     }
 
     public PitchMap() {
-        prefixes = new HashMap<>();
-        allPrefixes = new HashSet<>();
-        suffixes = new HashMap<>();
-        allSuffixes = new HashSet<>();
+        prefixes = new ConcurrentHashMap<>();
+        allPrefixes = ConcurrentHashMap.newKeySet();
+        suffixes = new ConcurrentHashMap<>();
+        allSuffixes = ConcurrentHashMap.newKeySet();
         ImmutableList.Builder<String> pitchBuilder = ImmutableList.builder();
         for (int octave = 7; octave > 0; octave--) {
             for (String pitch : PitchUtils.REVERSE_PITCHES) {
@@ -52,10 +51,7 @@ public class PitchMap {
     }
 
     public String getPrefix(String pitch) {
-        if (prefixes.containsKey(pitch)) {
-            return prefixes.get(pitch);
-        }
-        return "";
+        return prefixes.getOrDefault(pitch, "");
     }
 
     public ImmutableList<String> getAllPrefixes() {
@@ -63,10 +59,7 @@ public class PitchMap {
     }
 
     public String getSuffix(String pitch) {
-        if (suffixes.containsKey(pitch)) {
-            return suffixes.get(pitch);
-        }
-        return "";
+        return suffixes.getOrDefault(pitch, "");
     }
 
     public ImmutableList<String> getAllSuffixes() {
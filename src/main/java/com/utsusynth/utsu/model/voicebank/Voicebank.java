@@ -14,6 +14,9 @@ import com.utsusynth.utsu.files.PreferencesManager.GuessAliasMode;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
 
 /**
  * In-code representation of a voice bank. Compatible with oto.ini files. TODO: Support oto_ini.txt
@@ -28,6 +31,7 @@ public class Voicebank {
     private final FrqGenerator frqGenerator;
     private final PreferencesManager preferencesManager;
     private PresampConfig presampConfig; // Immutable value.
+    private AliasCache aliasCache; // Shared by voicebanks that share lyric configs.
 
     private File pathToVoicebank; // Example: "/Library/Iona.utau/"
     private String name; // Example: "Iona"
@@ -86,6 +90,25 @@ public class Voicebank {
             }
         }
 
+        /**
+         * Adds a lyric whose config is only built once it is looked up or its category opened.
+         *
+         * @param otoFile The oto file the lyric was read from, relative to the voicebank.
+         */
+        public void addLyric(
+                String trueLyric,
+                String fileName,
+                double[] configValues,
+                boolean hasFrq,
+                String otoFile) {
+            File pathToVoicebank = newVoicebank.pathToVoicebank;
+            newVoicebank.lyricConfigs.addLazyConfig(
+                    pathToVoicebank, trueLyric, fileName, configValues, otoFile);
+            if (hasFrq) {
+                newVoicebank.soundFiles.add(pathToVoicebank.toPath().resolve(fileName).toFile());
+            }
+        }
+
         public void addPitchPrefix(String pitch, String prefix) {
             newVoicebank.pitchMap.putPrefix(pitch, prefix);
         }
@@ -103,6 +126,7 @@ public class Voicebank {
                 // TODO: Handle this.
                 System.out.println("Tried to build an empty voicebank!");
             }
+            newVoicebank.aliasCache.clear();
             return newVoicebank;
         }
     }
@@ -120,6 +144,7 @@ public class Voicebank {
         this.frqGenerator = frqGenerator;
         this.preferencesManager = preferencesManager;
         this.presampConfig = presampConfig;
+        this.aliasCache = new AliasCache();
 
         // Default values.
         this.name = "";
@@ -133,14 +158,15 @@ public class Voicebank {
     public Builder toBuilder() {
         // Returns the builder of a new Voicebank with this one's attributes.
         // The old Voicebank's final fields are used--the objects are not regenerated.
-        return new Builder(
-                new Voicebank(
-                        this.lyricConfigs,
-                        this.pitchMap,
-                        this.soundFiles,
-                        this.frqGenerator,
-                        this.preferencesManager,
-                        this.presampConfig))
+        Voicebank newVoicebank = new Voicebank(
+                this.lyricConfigs,
+                this.pitchMap,
+                this.soundFiles,
+                this.frqGenerator,
+                this.preferencesManager,
+                this.presampConfig);
+        newVoicebank.aliasCache = this.aliasCache;
+        return new Builder(newVoicebank)
                 .setPathToVoicebank(this.pathToVoicebank)
                 .setName(this.name)
                 .setAuthor(this.author)
@@ -194,41 +220,86 @@ public class Voicebank {
             return lyricConfigs.hasLyric(lyric)
                     ? Optional.of(lyricConfigs.getConfig(lyric)) : Optional.empty();
         }
-        String vcvPrefix = getVowel(prevLyric) + " "; // Most common VCV format.
+        return aliasCache.get(
+                prevLyric, lyric, pitch, () -> guessLyricConfig(prevLyric, lyric, pitch));
+    }
+
+    private Optional<LyricConfig> guessLyricConfig(String prevLyric, String lyric, String pitch) {
+        AliasTrie trie = aliasCache.getTrie(lyricConfigs);
+        char vowel = getVowel(prevLyric); // Most common VCV format is vowel + space.
         String prefix = pitchMap.getPrefix(pitch); // Pitch prefix.
         String suffix = pitchMap.getSuffix(pitch); // Pitch suffix.
 
         // Check all possible prefix/lyric/suffix combinations.
-        for (String combo : allCombinations(prefix, vcvPrefix, lyric, suffix)) {
-            if (lyricConfigs.hasLyric(combo)) {
-                return Optional.of(lyricConfigs.getConfig(combo));
-            }
+        int match = findAlias(trie, prefix, vowel, "", lyric, "", suffix);
+        if (match != AliasTrie.NO_NODE) {
+            return Optional.of(lyricConfigs.getConfig(trie.getAlias(match)));
         }
 
-        SortedSet<LyricConfig> matches = new TreeSet<>();
+        LyricConfig bestMatch = null;
+        String startPitch = PitchUtils.extractStartPitch(lyric);
+        String endPitch = PitchUtils.extractEndPitch(lyric);
         String strippedLyric = PitchUtils.removePitches(lyric);
         for (String candidate : presampConfig.getLyricConversions().getGroup(strippedLyric)) {
-            String convertedLyric =
-                    PitchUtils.extractStartPitch(lyric)
-                            + candidate
-                            + PitchUtils.extractEndPitch(lyric);
-            if (convertedLyric.equals(lyric)) {
+            if (candidate.equals(strippedLyric)) {
                 // Don't check the same lyric twice.
                 continue;
             }
-
-            for (String combo : allCombinations(prefix, vcvPrefix, convertedLyric, suffix)) {
-                if (lyricConfigs.hasLyric(combo)) {
-                    matches.add(lyricConfigs.getConfig(combo));
+            match = findAlias(trie, prefix, vowel, startPitch, candidate, endPitch, suffix);
+            if (match != AliasTrie.NO_NODE) {
+                LyricConfig config = lyricConfigs.getConfig(trie.getAlias(match));
+                // For now, arbitrarily but consistently return the first match.
+                if (bestMatch == null || config.compareTo(bestMatch) < 0) {
+                    bestMatch = config;
                 }
             }
         }
-        // For now, arbitrarily but consistently return the first match.
-        if (!matches.isEmpty()) {
-            return Optional.of(matches.first());
+        return Optional.ofNullable(bestMatch);
+    }
+
+    /**
+     * Finds the most detailed alias for a lyric, which is given as a start pitch, lyric body, and
+     * end pitch. Each piece is walked through the trie once and shared between combinations.
+     *
+     * @return The node of the matching alias, or NO_NODE if there is none.
+     */
+    private static int findAlias(
+            AliasTrie trie,
+            String prefix,
+            char vowel,
+            String startPitch,
+            String body,
+            String endPitch,
+            String suffix) {
+        int atPrefix = trie.walk(AliasTrie.ROOT, prefix);
+        int atPrefixVcv = trie.walk(trie.walk(atPrefix, vowel), ' ');
+        int atVcv = trie.walk(trie.walk(AliasTrie.ROOT, vowel), ' ');
+        int withPrefixVcv = walkLyric(trie, atPrefixVcv, startPitch, body, endPitch);
+        int withVcv = walkLyric(trie, atVcv, startPitch, body, endPitch);
+        int withPrefix = walkLyric(trie, atPrefix, startPitch, body, endPitch);
+        int withNothing = walkLyric(trie, AliasTrie.ROOT, startPitch, body, endPitch);
+
+        // Try to get the lyric with as much detail as possible.
+        int[] combinations = {
+                trie.walk(withPrefixVcv, suffix),
+                withPrefixVcv,
+                trie.walk(withVcv, suffix),
+                trie.walk(withPrefix, suffix),
+                trie.walk(withNothing, suffix),
+                withPrefix,
+                withVcv,
+                withNothing};
+        for (int node : combinations) {
+            if (trie.hasAlias(node)) {
+                return node;
+            }
         }
+        return AliasTrie.NO_NODE;
+    }
 
-        return Optional.empty();
+    private static int walkLyric(
+            AliasTrie trie, int node, String startPitch, String body, String endPitch) {
+        return trie.walk(trie.walk(trie.walk(node, startPitch), body), endPitch);
     }
 
     // Finds the vowel sound of a lyric by converting to ASCII and taking the last character.
@@ -246,20 +317,6 @@ public class Voicebank {
         return ' ';
     }
 
-    private List<String> allCombinations(
-            String prefix, String vcvPrefix, String lyric, String suffix) {
-        // Try to get the lyric with as much detail as possible.
-        return ImmutableList.of(
-                prefix + vcvPrefix + lyric + suffix,
-                prefix + vcvPrefix + lyric,
-                vcvPrefix + lyric + suffix,
-                prefix + lyric + suffix,
-                lyric + suffix,
-                prefix + lyric,
-                vcvPrefix + lyric,
-                lyric);
-    }
-
     /**
      * Returns a list of sub-folders for WAV files in the voicebank.
      */
@@ -305,11 +362,14 @@ public class Voicebank {
                 data.getLyric(),
                 data.getFileName(),
                 data.getConfigValues());
-        return lyricConfigs.addConfig(newConfig);
+        boolean added = lyricConfigs.addConfig(newConfig);
+        aliasCache.clear();
+        return added;
     }
 
     public void removeLyricConfig(String lyric) {
         lyricConfigs.removeConfig(lyric);
+        aliasCache.clear();
     }
 
     public void modifyLyricData(LyricConfigData data) {
@@ -319,6 +379,54 @@ public class Voicebank {
                 data.getFileName(),
                 data.getConfigValues());
         lyricConfigs.setConfig(newConfig);
+        aliasCache.clear();
+    }
+
+    /**
+     * Replaces the lyrics read from one oto file with the ones in another voicebank, such as one
+     * read from that oto file after it was edited.
+     *
+     * @param otoFile The oto file, relative to the voicebank.
+     * @return Lyrics whose configs were added, removed, or changed.
+     */
+    public Set<String> replaceLyrics(String otoFile, Voicebank source) {
+        Set<String> changedLyrics = lyricConfigs.replaceOtoFile(otoFile, source.lyricConfigs);
+        soundFiles.addAll(source.soundFiles);
+        aliasCache.clear();
+        return changedLyrics;
+    }
+
+    /** Replaces every pitch prefix and suffix with the ones in another voicebank. */
+    public void replacePitchMap(Voicebank source) {
+        Iterator<String> pitchIterator = pitchMap.getOrderedPitches();
+        while (pitchIterator.hasNext()) {
+            String pitch = pitchIterator.next();
+            pitchMap.putPrefix(pitch, source.pitchMap.getPrefix(pitch));
+            pitchMap.putSuffix(pitch, source.pitchMap.getSuffix(pitch));
+        }
+        aliasCache.clear();
+    }
+
+    /**
+     * Returns the categories whose oto files need saving and counts them as saved. Categories
+     * that fail to save should be passed to markUnsaved.
+     */
+    public Set<String> takeUnsavedCategories() {
+        return lyricConfigs.takeUnsavedCategories();
+    }
+
+    public void markUnsaved(Set<String> categories) {
+        lyricConfigs.markUnsaved(categories);
+    }
+
+    /**
+     * Records that some lyrics were saved to an oto file, so that later edits to that file
+     * replace them.
+     *
+     * @param otoFile The oto file, relative to the voicebank.
+     */
+    public void setOtoFile(String otoFile, Collection<String> lyrics) {
+        lyricConfigs.setOtoFile(otoFile, lyrics);
     }
 
     public Iterator<PitchMapData> getPitchData() {
@@ -342,37 +450,64 @@ public class Voicebank {
         // Replace value that has changed, leave others the same.
         pitchMap.putPrefix(data.getPitch(), data.getPrefix());
         pitchMap.putSuffix(data.getPitch(), data.getSuffix());
+        aliasCache.clear();
     }
 
     private boolean generateFrq(File wavFile) {
         String wavName = wavFile.getName();
         String frqName = wavName.substring(0, wavName.length() - 4) + "_wav.frq";
         File frqFile = wavFile.getParentFile().toPath().resolve(frqName).toFile();
-        frqGenerator.genFrqFile(wavFile, frqFile);
-        if (frqFile.canRead()) {
-            soundFiles.remove(frqFile); // Removes existing frq file, if present.
-            soundFiles.add(frqFile);
+        if (frqGenerator.genFrqFile(wavFile, frqFile) && frqFile.canRead()) {
+            soundFiles.add(wavFile); // Marks wav file as having a frq file.
             return true;
         }
         return false;
     }
 
     /**
-     * Generates the specified frq files and updates each piece of data.
+     * Generates the specified frq files in parallel and updates each piece of data. Aliases that
+     * share a wav file only analyze it once.
+     *
+     * @param onProgress Called from worker threads with the fraction of wav files finished.
+     * @param isCancelled Checked before each wav file is analyzed. Data for wav files that were
+     *                    never analyzed keeps its previous status.
      */
-    public void generateFrqs(Iterator<LyricConfigData> dataIterator) {
+    public void generateFrqs(
+            Iterator<LyricConfigData> dataIterator,
+            DoubleConsumer onProgress,
+            BooleanSupplier isCancelled) {
+        Map<File, List<LyricConfigData>> dataByFile = new LinkedHashMap<>();
+        Map<LyricConfigData, String> oldStatuses = new HashMap<>();
         while (dataIterator.hasNext()) {
             LyricConfigData data = dataIterator.next();
             if (data == null) {
                 continue;
             }
+            dataByFile.computeIfAbsent(data.getPathToFile(), file -> new ArrayList<>()).add(data);
+            oldStatuses.put(data, data.frqStatusProperty().get());
             data.setFrqStatus(FrqStatus.LOADING);
-            if (generateFrq(data.getPathToFile())) {
-                data.setFrqStatus(FrqStatus.VALID);
-            } else {
-                data.setFrqStatus(FrqStatus.INVALID);
-            }
         }
+
+        AtomicInteger numFinished = new AtomicInteger(0);
+        dataByFile.entrySet().parallelStream().forEach(entry -> {
+            if (isCancelled.getAsBoolean()) {
+                for (LyricConfigData data : entry.getValue()) {
+                    data.frqStatusProperty().set(oldStatuses.get(data));
+                }
+                return;
+            }
+            FrqStatus status = generateFrq(entry.getKey()) ? FrqStatus.VALID : FrqStatus.INVALID;
+            for (LyricConfigData data : entry.getValue()) {
+                data.setFrqStatus(status);
+            }
+            onProgress.accept(numFinished.incrementAndGet() * 1.0 / dataByFile.size());
+        });
+    }
+
+    /** Roughly estimates the memory used by this voicebank, in bytes. */
+    public long estimateBytes() {
+        // Each sound file with a frq file costs about one set entry and one File.
+        return lyricConfigs.estimateBytes() + soundFiles.size() * 150L;
     }
 
     /** Get readonly data about the voicebank. Useful for plugins. */
@@ -5,6 +5,7 @@ import com.utsusynth.utsu.common.exception.FileAlreadyOpenException;
 import com.utsusynth.utsu.files.voicebank.VoicebankReader;
 
 import java.io.File;
+import java.util.Set;
 
 /**
  * Manages a single voicebank and its save settings.
@@ -14,11 +15,16 @@ public class VoicebankContainer {
 
     private final VoicebankManager voicebankManager;
     private final VoicebankReader voicebankReader;
+    private final VoicebankWatcher voicebankWatcher;
 
     @Inject
-    public VoicebankContainer(VoicebankManager voicebankManager, VoicebankReader voicebankReader) {
+    public VoicebankContainer(
+            VoicebankManager voicebankManager,
+            VoicebankReader voicebankReader,
+            VoicebankWatcher voicebankWatcher) {
         this.voicebankManager = voicebankManager;
         this.voicebankReader = voicebankReader;
+        this.voicebankWatcher = voicebankWatcher;
         setVoicebankForRead(voicebankReader.getDefaultPath()); // Start with default voicebank.
     }
 
@@ -29,20 +35,28 @@ public class VoicebankContainer {
         } else {
             Voicebank voicebank = voicebankReader.loadVoicebankFromDirectory(location);
             voicebankManager.setVoicebank(location, voicebank);
+            voicebankWatcher.watch(location); // Picks up oto edits made by other programs.
             return voicebank;
         }
     }
 
+    /** Tells open songs that lyric configs of this voicebank were edited. */
+    public void notifyLyricsChanged(Set<String> changedLyrics, boolean aliasesChanged) {
+        voicebankManager.notifyVoicebankChanged(get(), changedLyrics, aliasesChanged);
+    }
+
     public void mutate(Voicebank newVoicebank) {
         voicebankManager.setVoicebank(location, newVoicebank);
     }
 
     public void setVoicebankForRead(File newLocation) {
         location = newLocation;
+        voicebankManager.holdVoicebank(this, location); // Keeps voicebank from unloading.
     }
 
     public void setVoicebankForEdit(File newLocation) throws FileAlreadyOpenException {
         location = newLocation;
+        voicebankManager.holdVoicebank(this, location);
         voicebankManager.openVoicebankForEdit(location);
     }
 
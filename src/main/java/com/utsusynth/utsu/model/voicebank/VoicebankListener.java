@@ -0,0 +1,16 @@
+package com.utsusynth.utsu.model.voicebank;
+
+import java.util.Set;
+
+/**
+ * Listens for changes to the lyric configs of loaded voicebanks, whether edited in the voicebank
+ * editor or reloaded after being edited outside of Utsu. May be called from any thread.
+ */
+public interface VoicebankListener {
+    /**
+     * @param changedLyrics Lyrics whose configs were added, removed, or changed.
+     * @param aliasesChanged Whether aliases were added or removed, or the pitch map changed, so
+     *                       that lyrics may resolve to different aliases than before.
+     */
+    void voicebankChanged(Voicebank voicebank, Set<String> changedLyrics, boolean aliasesChanged);
+}
@@ -1,46 +1,86 @@
 package com.utsusynth.utsu.model.voicebank;
 
+import com.google.inject.Inject;
 import com.utsusynth.utsu.common.exception.ErrorLogger;
 import com.utsusynth.utsu.common.exception.FileAlreadyOpenException;
+import com.utsusynth.utsu.files.PreferencesManager;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Manages all voicebanks in use by Utsu. This class is a singleton to ensure the same voicebank
- * does not open on two editors.
+ * does not open on two editors. Voicebanks not held by any live VoicebankContainer are unloaded,
+ * least recently used first, when loaded voicebanks go over the memory budget in preferences.
  */
 public class VoicebankManager {
     private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
 
-    private final Map<File, Voicebank> voicebanks;
+    private final PreferencesManager preferencesManager;
+    private final Map<File, Voicebank> voicebanks; // In least recently used order.
     private final Set<File> openForEdit;
+    private final Map<VoicebankContainer, File> holders; // Forgets containers once collected.
+    private final List<VoicebankListener> listeners;
 
-    public VoicebankManager() {
-        voicebanks = new HashMap<>();
+    @Inject
+    public VoicebankManager(PreferencesManager preferencesManager) {
+        this.preferencesManager = preferencesManager;
+        voicebanks = new LinkedHashMap<>(16, 0.75f, true);
         openForEdit = new HashSet<>();
+        holders = new WeakHashMap<>();
+        listeners = new CopyOnWriteArrayList<>();
     }
 
-    public boolean hasVoicebank(File location) {
+    public void addListener(VoicebankListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(VoicebankListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Tells listeners, such as open songs, that lyric configs of a voicebank changed. */
+    public void notifyVoicebankChanged(
+            Voicebank voicebank, Set<String> changedLyrics, boolean aliasesChanged) {
+        for (VoicebankListener listener : listeners) {
+            listener.voicebankChanged(voicebank, changedLyrics, aliasesChanged);
+        }
+    }
+
+    public synchronized boolean hasVoicebank(File location) {
         File normalized = normalize(location);
         return voicebanks.containsKey(normalized);
     }
 
-    public Voicebank getVoicebank(File location) {
+    public synchronized Voicebank getVoicebank(File location) {
         File normalized = normalize(location);
         return voicebanks.get(normalized);
     }
 
-    public void setVoicebank(File location, Voicebank voicebank) {
+    public synchronized void setVoicebank(File location, Voicebank voicebank) {
         File normalized = normalize(location);
-        voicebanks.put(normalized, voicebank);
+        if (voicebanks.put(normalized, voicebank) == null) {
+            System.out.println("Loaded voicebank " + normalized
+                    + " (~" + voicebank.estimateBytes() / 1024 + " KB)");
+            unloadUnusedVoicebanks(normalized);
+        }
     }
 
-    public void openVoicebankForEdit(File location) throws FileAlreadyOpenException {
+    /** Records which voicebank a container points to, replacing what it pointed to before. */
+    synchronized void holdVoicebank(VoicebankContainer holder, File location) {
+        holders.put(holder, normalize(location));
+    }
+
+    public synchronized void openVoicebankForEdit(File location) throws FileAlreadyOpenException {
         File normalized = normalize(location);
         if (openForEdit.contains(normalized)) {
             // No two tabs should point at the same file, to prevent headaches.
@@ -49,12 +89,41 @@ public class VoicebankManager {
         openForEdit.add(normalized);
     }
 
-    public void removeVoicebank(File location) {
+    synchronized boolean isOpenForEdit(File location) {
+        return openForEdit.contains(normalize(location));
+    }
+
+    public synchronized void removeVoicebank(File location) {
         File normalized = normalize(location);
         voicebanks.remove(normalized);
         openForEdit.remove(normalized);
     }
 
+    // Unloads voicebanks that nothing holds until the rest fit in the memory budget.
+    private void unloadUnusedVoicebanks(File justLoaded) {
+        // Estimates are redone each time since lyric configs are built as they get used.
+        long budget = preferencesManager.getVoicebankMemoryMb() * 1024 * 1024;
+        Map<File, Long> estimatedBytes = new HashMap<>();
+        long totalBytes = 0;
+        for (Map.Entry<File, Voicebank> entry : voicebanks.entrySet()) {
+            estimatedBytes.put(entry.getKey(), entry.getValue().estimateBytes());
+            totalBytes += estimatedBytes.get(entry.getKey());
+        }
+        Set<File> heldLocations = new HashSet<>(holders.values());
+        Iterator<File> iterator = voicebanks.keySet().iterator();
+        while (iterator.hasNext() && totalBytes > budget) {
+            File location = iterator.next();
+            if (location.equals(justLoaded)
+                    || heldLocations.contains(location)
+                    || openForEdit.contains(location)) {
+                continue;
+            }
+            totalBytes -= estimatedBytes.get(location);
+            iterator.remove();
+            System.out.println("Unloaded unused voicebank " + location);
+        }
+    }
+
     private File normalize(File rawFile) {
         try {
             return rawFile.getCanonicalFile();
@@ -0,0 +1,192 @@
+package com.utsusynth.utsu.model.voicebank;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+import com.utsusynth.utsu.common.exception.ErrorLogger;
+import com.utsusynth.utsu.files.voicebank.VoicebankReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watches the folders of loaded voicebanks for oto files and pitch maps edited outside of Utsu,
+ * and reloads only the files that changed. This class is a singleton so each folder is watched
+ * once.
+ */
+public class VoicebankWatcher {
+    private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+    private static final ImmutableSet<String> OTO_NAMES = ImmutableSet.of("oto.ini", "oto_ini.txt");
+    private static final ImmutableSet<String> PITCH_MAP_NAMES =
+            ImmutableSet.of("prefixmap", "prefix.map");
+    private static final long SETTLE_MS = 300; // Editors often write a file more than once.
+
+    private final VoicebankManager voicebankManager;
+    private final VoicebankReader voicebankReader;
+    private final Map<WatchKey, File> watchedDirs; // Watched folder to its voicebank location.
+    private final Set<File> watchedVoicebanks;
+    private WatchService watchService; // Started when the first voicebank is watched.
+
+    @Inject
+    public VoicebankWatcher(VoicebankManager voicebankManager, VoicebankReader voicebankReader) {
+        this.voicebankManager = voicebankManager;
+        this.voicebankReader = voicebankReader;
+        watchedDirs = new HashMap<>();
+        watchedVoicebanks = new HashSet<>();
+    }
+
+    /** Starts watching the folders of a voicebank, unless they are watched already. */
+    public synchronized void watch(File location) {
+        File normalized = normalize(location);
+        if (!normalized.isDirectory() || watchedVoicebanks.contains(normalized)) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread watchThread = new Thread(this::processEvents, "Voicebank watcher");
+                watchThread.setDaemon(true);
+                watchThread.start();
+            }
+            // Watch the same folders that are searched for oto files.
+            List<Path> dirs;
+            try (Stream<Path> paths = Files.walk(
+                    normalized.toPath(), 10, FileVisitOption.FOLLOW_LINKS)) {
+                dirs = paths.filter(Files::isDirectory).collect(Collectors.toList());
+            }
+            for (Path dir : dirs) {
+                WatchKey key = dir.register(
+                        watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirs.put(key, normalized);
+            }
+            watchedVoicebanks.add(normalized);
+        } catch (IOException e) {
+            // TODO: Handle this.
+            errorLogger.logError(e);
+        }
+    }
+
+    private void processEvents() {
+        while (true) {
+            Map<Path, File> changedOtoFiles = new LinkedHashMap<>();
+            Set<File> changedPitchMaps = new LinkedHashSet<>();
+            try {
+                WatchKey key = watchService.take();
+                // Wait until files stop changing so each file is only reloaded once.
+                while (key != null) {
+                    collectChanges(key, changedOtoFiles, changedPitchMaps);
+                    key = watchService.poll(SETTLE_MS, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            changedOtoFiles.forEach(this::reloadOtoIni);
+            changedPitchMaps.forEach(this::reloadPitchMap);
+        }
+    }
+
+    private synchronized void collectChanges(
+            WatchKey key, Map<Path, File> changedOtoFiles, Set<File> changedPitchMaps) {
+        File location = watchedDirs.get(key);
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (location == null) {
+                continue; // Voicebank is no longer watched.
+            }
+            boolean isRoot = dir.equals(location.toPath());
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Some events were lost, so reload anything that might have changed.
+                for (String otoName : OTO_NAMES) {
+                    changedOtoFiles.put(dir.resolve(otoName), location);
+                }
+                if (isRoot) {
+                    changedPitchMaps.add(location);
+                }
+                continue;
+            }
+            String fileName = ((Path) event.context()).toString();
+            if (OTO_NAMES.contains(fileName)) {
+                changedOtoFiles.put(dir.resolve(fileName), location);
+            } else if (isRoot && PITCH_MAP_NAMES.contains(fileName)) {
+                changedPitchMaps.add(location);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+    }
+
+    private void reloadOtoIni(Path otoFile, File location) {
+        Voicebank voicebank = getReloadableVoicebank(location);
+        if (voicebank == null) {
+            return;
+        }
+        Set<String> changedLyrics = voicebankReader.reloadOtoIni(voicebank, location, otoFile);
+        System.out.println("Reloaded " + otoFile + ", "
+                + changedLyrics.size() + " lyrics changed");
+        voicebankManager.notifyVoicebankChanged(voicebank, changedLyrics, true);
+    }
+
+    private void reloadPitchMap(File location) {
+        Voicebank voicebank = getReloadableVoicebank(location);
+        if (voicebank == null) {
+            return;
+        }
+        voicebankReader.reloadPitchMap(voicebank, location);
+        System.out.println("Reloaded pitch map of " + location);
+        voicebankManager.notifyVoicebankChanged(voicebank, ImmutableSet.of(), true);
+    }
+
+    // Returns null if a voicebank should not be reloaded, and stops watching unloaded voicebanks.
+    private synchronized Voicebank getReloadableVoicebank(File location) {
+        if (!voicebankManager.hasVoicebank(location)) {
+            Iterator<Map.Entry<WatchKey, File>> iterator = watchedDirs.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<WatchKey, File> entry = iterator.next();
+                if (entry.getValue().equals(location)) {
+                    entry.getKey().cancel();
+                    iterator.remove();
+                }
+            }
+            watchedVoicebanks.remove(location);
+            return null;
+        }
+        if (voicebankManager.isOpenForEdit(location)) {
+            // Don't overwrite unsaved changes in the voicebank editor.
+            return null;
+        }
+        return voicebankManager.getVoicebank(location);
+    }
+
+    private File normalize(File rawFile) {
+        try {
+            return rawFile.getCanonicalFile();
+        } catch (IOException e) {
+            // TODO: Handle this
+            errorLogger.logError(e);
+        }
+        // Return raw file if it cannot be normalized.
+        return rawFile;
+    }
+}
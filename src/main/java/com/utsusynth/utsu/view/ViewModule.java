@@ -6,6 +6,7 @@ import com.utsusynth.utsu.view.song.note.NoteFactory;
 import com.utsusynth.utsu.view.song.note.envelope.EnvelopeFactory;
 import com.utsusynth.utsu.view.song.note.pitch.PitchbendFactory;
 import com.utsusynth.utsu.view.song.note.pitch.portamento.CurveFactory;
+import com.utsusynth.utsu.view.voicebank.Spectrogram;
 
 public class ViewModule extends AbstractModule {
 
@@ -16,5 +17,6 @@ public class ViewModule extends AbstractModule {
         bind(PitchbendFactory.class).asEagerSingleton();
         bind(CurveFactory.class).asEagerSingleton();
         bind(SongClipboard.class).asEagerSingleton();
+        bind(Spectrogram.class).asEagerSingleton();
     }
 }
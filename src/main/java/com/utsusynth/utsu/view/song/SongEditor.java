@@ -426,6 +426,13 @@ public class SongEditor {
                 highlightedNotes.get(highlightedNotes.size() - 1).getAbsPositionMs());
     }
 
+    /** Standardizes runs of notes again, such as after their voicebank was reloaded. */
+    public void refreshNotes(List<RegionBounds> toStandardize) {
+        for (RegionBounds bounds : toStandardize) {
+            refreshNotes(bounds.getMinMs(), bounds.getMaxMs());
+        }
+    }
+
     private void refreshNotes(int firstPosition, int lastPosition) {
         MutateResponse standardizeResponse = model.standardizeNotes(firstPosition, lastPosition);
         String prevPitch = "";
@@ -9,18 +9,27 @@ import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.data.FrequencyData;
 import com.utsusynth.utsu.common.data.LyricConfigData;
+import com.utsusynth.utsu.common.data.PeakData;
 import com.utsusynth.utsu.common.data.WavData;
 import com.utsusynth.utsu.common.i18n.Localizer;
+import com.utsusynth.utsu.files.PeakCacheManager;
+import com.utsusynth.utsu.files.ThemeManager;
 import com.utsusynth.utsu.files.voicebank.SoundFileReader;
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.value.ChangeListener;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.geometry.Pos;
 import javafx.geometry.Side;
 import javafx.scene.Cursor;
 import javafx.scene.Group;
 import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart.Data;
@@ -31,6 +40,7 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
+import javafx.scene.paint.Color;
 import javafx.scene.shape.Line;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
@@ -39,10 +49,14 @@ import javafx.util.Duration;
 public class LyricConfigEditor {
     private static final double SCALE_X = 0.8;
     private static final int HEIGHT = 150;
+    private static final int WAVEFORM_TILE_WIDTH = 1024; // Well under max texture width.
+    private static final Color DEFAULT_WAVEFORM_COLOR = Color.ROYALBLUE;
     private static MediaPlayer mediaPlayer; // Used for audio playback.
 
     private final Group controlBars;
     private final SoundFileReader soundFileReader;
+    private final PeakCacheManager peakCacheManager;
+    private final ThemeManager themeManager;
     private final Spectrogram spectrogram;
     private final Localizer localizer;
 
@@ -55,10 +69,15 @@ public class LyricConfigEditor {
 
     // Recreated on each call to createConfigEditor.
     private LyricConfigData configData;
-    private WavData wavData;
+    private WavData wavData; // May be null, only loaded when peaks or spectrogram need it.
+    private PeakData peakData; // May be null.
     private GridPane background;
     private LineChart<Number, Number> chart;
-    private ImageView spectrogramView;
+    private Pane waveformView;
+    private Pane spectrogramView;
+    private Spectrogram.Levels spectrogramLevels; // May be null.
+    private ScrollPane watchedScrollPane; // May be null.
+    private final ChangeListener<Bounds> viewportListener;
     private Label playButton; // May be null.
 
     // Temporary cache values.
@@ -67,8 +86,14 @@ public class LyricConfigEditor {
 
     @Inject
     public LyricConfigEditor(
-            SoundFileReader soundFileReader, Spectrogram spectrogram, Localizer localizer) {
+            SoundFileReader soundFileReader,
+            PeakCacheManager peakCacheManager,
+            ThemeManager themeManager,
+            Spectrogram spectrogram,
+            Localizer localizer) {
         this.soundFileReader = soundFileReader;
+        this.peakCacheManager = peakCacheManager;
+        this.themeManager = themeManager;
         this.spectrogram = spectrogram;
         this.localizer = localizer;
 
@@ -76,8 +101,9 @@ public class LyricConfigEditor {
         background = new GridPane();
         chart = new LineChart<>(new NumberAxis(), new NumberAxis());
         chart.setOpacity(0);
+        waveformView = new Pane();
         controlBars = new Group();
-        spectrogramView = new ImageView();
+        spectrogramView = new Pane();
 
         isPlaying = new SimpleBooleanProperty(false);
         isPlaying.addListener(obs -> {
@@ -95,13 +121,21 @@ public class LyricConfigEditor {
         });
         showFrequency = new SimpleBooleanProperty(true);
         showWaveform = new SimpleBooleanProperty(true);
+        // Viewport bounds change both on scroll and on resize.
+        viewportListener = (obs, oldBounds, newBounds) -> {
+            drawVisibleTiles();
+            drawVisibleWaveformTiles();
+        };
         showSpectrogram = new SimpleBooleanProperty(false);
         showSpectrogram.addListener(obs -> {
-            if (!showSpectrogram.get() || spectrogramView == null
-                    || spectrogramView.getImage() != null || wavData == null) {
+            if (!showSpectrogram.get() || spectrogramView == null) {
                 return;
             }
-            spectrogramView.setImage(spectrogram.createSpectrogram(wavData, HEIGHT));
+            if (spectrogramLevels == null) {
+                initializeSpectrogram();
+            } else {
+                drawVisibleTiles();
+            }
         });
 
     }
@@ -115,12 +149,17 @@ public class LyricConfigEditor {
         this.configData = config;
         double lengthMs = createLineChart(config);
 
-        boolean drawSpec = showSpectrogram.get() && wavData != null;
-        spectrogramView = drawSpec ? new ImageView(spectrogram.createSpectrogram(wavData, HEIGHT))
-                : new ImageView();
-        spectrogramView.setFitWidth(lengthMs * SCALE_X);
+        spectrogramView = new Pane();
+        spectrogramView.setPrefSize(lengthMs * SCALE_X, HEIGHT);
         spectrogramView.setMouseTransparent(true);
         spectrogramView.visibleProperty().bind(showSpectrogram);
+        // Draw newly visible tiles whenever the spectrogram moves relative to the scene.
+        spectrogramView.localToSceneTransformProperty().addListener(
+                (obs, oldTransform, newTransform) -> drawVisibleTiles());
+        spectrogramLevels = null;
+        if (showSpectrogram.get()) {
+            initializeSpectrogram();
+        }
 
         background = new GridPane();
         double curLength = lengthMs;
@@ -262,7 +301,7 @@ public class LyricConfigEditor {
             config.overlapProperty().set(newOverlapX / SCALE_X);
         });
 
-        return ImmutableList.of(background, spectrogramView, controlBars, chart);
+        return ImmutableList.of(background, spectrogramView, waveformView, controlBars, chart);
     }
 
     public Group getControlElement() {
@@ -278,10 +317,109 @@ public class LyricConfigEditor {
                 createLabelButton("S", "Show Spectrogram", showSpectrogram));
     }
 
+    public void redrawWaveform() {
+        for (Node tile : waveformView.getChildren()) {
+            Canvas canvas = (Canvas) tile;
+            canvas.getGraphicsContext2D().clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            canvas.setUserData(null);
+        }
+        drawVisibleWaveformTiles();
+    }
+
     public void redrawSpectrogram() {
-        if (spectrogramView != null && wavData != null) {
-            spectrogramView.setImage(spectrogram.createSpectrogram(wavData, HEIGHT));
+        if (spectrogramView == null || spectrogramLevels == null) {
+            return;
+        }
+        // Only colors change with the theme, so the cached spectrogram levels can be reused.
+        for (Node tile : spectrogramView.getChildren()) {
+            ((ImageView) tile).setImage(null);
+        }
+        drawVisibleTiles();
+    }
+
+    private void initializeSpectrogram() {
+        if (peakData == null || configData == null) {
+            return;
+        }
+        if (wavData == null) {
+            // Waveforms are drawn from cached peaks, so samples are only read for spectrograms.
+            wavData = soundFileReader.loadWavData(configData.getPathToFile()).orElse(null);
+            if (wavData == null) {
+                return;
+            }
+        }
+        spectrogramLevels =
+                spectrogram.getLevels(configData.getPathToFile(), wavData, HEIGHT);
+        int numHops = spectrogramLevels.getNumHops();
+        double widthPerHop = numHops == 0 ? 0 : peakData.getLengthMs() * SCALE_X / numHops;
+        spectrogramView.getChildren().clear();
+        for (int tile = 0; tile < spectrogramLevels.getNumTiles(); tile++) {
+            ImageView tileView = new ImageView();
+            tileView.setLayoutX(tile * Spectrogram.TILE_WIDTH * widthPerHop);
+            tileView.setFitWidth(spectrogramLevels.getTileWidth(tile) * widthPerHop);
+            tileView.setFitHeight(HEIGHT);
+            spectrogramView.getChildren().add(tileView);
+        }
+        drawVisibleTiles();
+    }
+
+    /** Draws any spectrogram tiles that are visible in the scroll pane but not drawn yet. */
+    private void drawVisibleTiles() {
+        if (!showSpectrogram.get() || spectrogramLevels == null) {
+            return;
+        }
+        Optional<Bounds> viewport = findViewport(spectrogramView);
+        for (int tile = 0; tile < spectrogramView.getChildren().size(); tile++) {
+            ImageView tileView = (ImageView) spectrogramView.getChildren().get(tile);
+            if (tileView.getImage() != null) {
+                continue;
+            }
+            Bounds tileBounds = spectrogramView.localToScene(new BoundingBox(
+                    tileView.getLayoutX(), 0, tileView.getFitWidth(), HEIGHT));
+            if (viewport.isEmpty() || viewport.get().intersects(tileBounds)) {
+                tileView.setImage(spectrogram.renderTile(spectrogramLevels, tile));
+            }
+        }
+    }
+
+    /** Draws any waveform tiles that are visible in the scroll pane but not drawn yet. */
+    private void drawVisibleWaveformTiles() {
+        if (peakData == null) {
+            return;
+        }
+        Optional<Bounds> viewport = findViewport(waveformView);
+        for (Node tile : waveformView.getChildren()) {
+            Canvas canvas = (Canvas) tile;
+            if (canvas.getUserData() != null) {
+                continue; // Already drawn.
+            }
+            Bounds tileBounds = waveformView.localToScene(new BoundingBox(
+                    canvas.getLayoutX(), 0, canvas.getWidth(), HEIGHT));
+            if (viewport.isEmpty() || viewport.get().intersects(tileBounds)) {
+                drawWaveformTile(canvas);
+                canvas.setUserData(true);
+            }
+        }
+    }
+
+    /** Finds the visible region of the enclosing scroll pane, in scene coordinates. */
+    private Optional<Bounds> findViewport(Node node) {
+        Parent parent = node.getParent();
+        while (parent != null && !(parent instanceof ScrollPane)) {
+            parent = parent.getParent();
         }
+        if (parent == null) {
+            return Optional.empty();
+        }
+        ScrollPane scrollPane = (ScrollPane) parent;
+        if (scrollPane != watchedScrollPane) {
+            if (watchedScrollPane != null) {
+                watchedScrollPane.viewportBoundsProperty().removeListener(viewportListener);
+            }
+            scrollPane.viewportBoundsProperty().addListener(viewportListener);
+            watchedScrollPane = scrollPane;
+        }
+        return Optional.of(scrollPane.localToScene(scrollPane.getLayoutBounds()));
     }
 
     /**
@@ -375,40 +513,37 @@ public class LyricConfigEditor {
     }
 
     private double createLineChart(LyricConfigData config) {
-        // Initialize chart data sets.
-        ObservableList<Data<Number, Number>> wavSamples = FXCollections.observableArrayList();
-        Series<Number, Number> waveform = new Series<>(wavSamples);
+        // Initialize chart data sets. Waveform is drawn on a canvas, but keeps its chart series so
+        // the frequency series keeps its color.
+        Series<Number, Number> waveform = new Series<>();
         ObservableList<Data<Number, Number>> frqSamples = FXCollections.observableArrayList();
         Series<Number, Number> frequency = new Series<>(frqSamples);
 
         // Populate wav chart data.
+        // Only read the whole wav file if its peaks are not cached yet.
         File pathToWav = config.getPathToFile();
-        Optional<WavData> maybeWavData = soundFileReader.loadWavData(pathToWav);
-        if (maybeWavData.isEmpty()) {
-            chart = new LineChart<>(new NumberAxis(), new NumberAxis());
-            chart.setMouseTransparent(true);
-            chart.setOpacity(0); // Make chart invisible if wav file can't be read.
-            return 0.0;
-        }
-        wavData = maybeWavData.get();
-        double msPerSample = wavData.getLengthMs() / wavData.getSamples().length;
-        double currentTimeMs = msPerSample / 2; // Data point is halfway through sample.
-        double ampSum = 0;
-        for (int i = 0; i < wavData.getSamples().length; i++) {
-            ampSum += Math.abs(wavData.getSamples()[i]);
-            if (i % 100 == 0) {
-                // Only render every 100th sample to avoid overloading the frontend.
-                double ampValue = i % 200 == 0 ? ampSum / 100.0 : ampSum / -100.0;
-                wavSamples.add(new Data<>(currentTimeMs, ampValue));
-                ampSum = 0;
+        wavData = null;
+        peakData = peakCacheManager.getCachedPeaks(pathToWav).orElse(null);
+        if (peakData == null) {
+            Optional<WavData> maybeWavData = soundFileReader.loadWavData(pathToWav);
+            if (maybeWavData.isEmpty()) {
+                waveformView = new Pane();
+                chart = new LineChart<>(new NumberAxis(), new NumberAxis());
+                chart.setMouseTransparent(true);
+                chart.setOpacity(0); // Make chart invisible if wav file can't be read.
+                return 0.0;
             }
-            currentTimeMs += msPerSample;
+            wavData = maybeWavData.get();
+            peakData = peakCacheManager.getPeaks(pathToWav, wavData);
         }
+        double lengthMs = peakData.getLengthMs();
+        createWaveformTiles(lengthMs * SCALE_X);
+
         // Preferred width is 800 pixels per second.
         NumberAxis xAxis = new NumberAxis();
         xAxis.setAutoRanging(false);
         xAxis.setLowerBound(0);
-        xAxis.setUpperBound(wavData.getLengthMs());
+        xAxis.setUpperBound(lengthMs);
         xAxis.setTickUnit(100);
         xAxis.setSide(Side.TOP);
         xAxis.setTickLabelsVisible(true);
@@ -432,23 +567,85 @@ public class LyricConfigEditor {
         chart.setVerticalZeroLineVisible(false);
         chart.setCreateSymbols(false);
         chart.setPrefHeight(HEIGHT);
-        chart.setPrefWidth(wavData.getLengthMs() * SCALE_X);
+        chart.setPrefWidth(lengthMs * SCALE_X);
         chart.getData().setAll(ImmutableList.of(waveform, frequency));
-        waveform.getNode().visibleProperty().bind(showWaveform);
         chart.horizontalZeroLineVisibleProperty().bind(showWaveform);
         frequency.getNode().visibleProperty().bind(showFrequency);
 
         // Populate frequency chart data.
         populateFrqValues(frqSamples, pathToWav);
 
-        return wavData.getLengthMs();
+        return lengthMs;
+    }
+
+    /**
+     * Splits the waveform into canvases narrow enough to draw on any GPU, which are then drawn
+     * as they scroll into view.
+     */
+    private void createWaveformTiles(double totalWidth) {
+        waveformView = new Pane();
+        waveformView.setPrefSize(totalWidth, HEIGHT);
+        waveformView.setMouseTransparent(true);
+        waveformView.visibleProperty().bind(showWaveform);
+        // Draw newly visible tiles whenever the waveform moves relative to the scene.
+        waveformView.localToSceneTransformProperty().addListener(
+                (obs, oldTransform, newTransform) -> drawVisibleWaveformTiles());
+        for (double tileX = 0; tileX < totalWidth; tileX += WAVEFORM_TILE_WIDTH) {
+            Canvas tile = new Canvas(Math.min(WAVEFORM_TILE_WIDTH, totalWidth - tileX), HEIGHT);
+            tile.setLayoutX(tileX);
+            waveformView.getChildren().add(tile);
+        }
+        drawVisibleWaveformTiles();
+    }
+
+    /**
+     * Draws the min and max peak of each column of pixels in one waveform tile, using the closest
+     * level of peaks.
+     */
+    private void drawWaveformTile(Canvas tile) {
+        GraphicsContext gc = tile.getGraphicsContext2D();
+        gc.clearRect(0, 0, tile.getWidth(), tile.getHeight());
+        double totalWidth = waveformView.getPrefWidth();
+        if (peakData == null || totalWidth <= 0 || peakData.getNumSamples() == 0) {
+            return;
+        }
+        Color color = themeManager.getCurrentTheme().get().getColorMap()
+                .getOrDefault("WAVEFORM_LINE", DEFAULT_WAVEFORM_COLOR);
+        gc.setStroke(color);
+        gc.setLineWidth(1);
+
+        double samplesPerPixel = peakData.getNumSamples() / totalWidth;
+        int level = peakData.getLevelForSamplesPerPixel(samplesPerPixel);
+        float[] mins = peakData.getMins(level);
+        float[] maxes = peakData.getMaxes(level);
+        int bucketSize = peakData.getBucketSize(level);
+        double halfHeight = HEIGHT / 2.0;
+        int firstPixel = (int) tile.getLayoutX();
+        int numPixels = (int) Math.ceil(tile.getWidth());
+        for (int x = 0; x < numPixels; x++) {
+            int pixel = firstPixel + x;
+            int firstBucket = (int) (pixel * samplesPerPixel / bucketSize);
+            int lastBucket = (int) Math.ceil((pixel + 1) * samplesPerPixel / bucketSize);
+            lastBucket = Math.min(Math.max(lastBucket, firstBucket + 1), mins.length);
+            if (firstBucket >= lastBucket) {
+                break;
+            }
+            float min = mins[firstBucket];
+            float max = maxes[firstBucket];
+            for (int bucket = firstBucket + 1; bucket < lastBucket; bucket++) {
+                min = Math.min(min, mins[bucket]);
+                max = Math.max(max, maxes[bucket]);
+            }
+            double xPos = x + 0.5; // Center of the pixel, so lines stay crisp.
+            gc.strokeLine(xPos, halfHeight * (1 - max), xPos, halfHeight * (1 - min));
+        }
     }
 
     private void populateFrqValues(ObservableList<Data<Number, Number>> frqSamples, File wavFile) {
-        if (wavData == null) {
+        if (peakData == null || peakData.getNumSamples() == 0) {
             return; // Don't bother populating frq values if wav data not present.
         }
-        double msPerSample = wavData.getLengthMs() / wavData.getSamples().length;
+        double msPerSample = peakData.getLengthMs() / peakData.getNumSamples();
 
         // Populate frequency chart data.
         String wavName = wavFile.getName();
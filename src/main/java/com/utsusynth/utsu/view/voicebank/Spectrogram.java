@@ -1,19 +1,21 @@
 package com.utsusynth.utsu.view.voicebank;
 
-import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.data.WavData;
-import com.utsusynth.utsu.common.utils.Complex;
 import com.utsusynth.utsu.common.utils.FFTUtils;
 import com.utsusynth.utsu.common.utils.RoundUtils;
 import com.utsusynth.utsu.files.ThemeManager;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.nio.IntBuffer;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
 
 /**
  * Draws a wave spectrogram for the WAV files of lyrics.
@@ -29,99 +31,235 @@ public class Spectrogram {
      */
     private static final int WAV_HOP_SIZE = 1024;
 
+    /**
+     * Max number of hops drawn in a single tile of the spectrogram.
+     */
+    public static final int TILE_WIDTH = 256;
+
+    /**
+     * Max number of sample files whose spectrogram levels are kept in memory.
+     */
+    private static final int MAX_CACHED_FILES = 32;
+
     /**
      * Default color of the spectrogram.
      */
     private static final Color DEFAULT_COLOR = Color.DARKGOLDENROD;
 
     private final ThemeManager themeManager;
+    private final Map<LevelsKey, Levels> levelsCache;
+
+    // Most recent mel filter bank and the values it was created with.
+    private int[] freqFilters;
+    private int freqFiltersHeight;
+    private double freqFiltersSampleRate;
+
+    // Most recent color scale and the values it was created with.
+    private int[] colorScale;
+    private Color colorScaleColor;
+    private int colorScaleSize;
 
     @Inject
     public Spectrogram(ThemeManager themeManager) {
         this.themeManager = themeManager;
+        this.levelsCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LevelsKey, Levels> eldest) {
+                return size() > MAX_CACHED_FILES;
+            }
+        };
+    }
+
+    /**
+     * Color level of every pixel of a spectrogram, independent of the current theme.
+     */
+    public static class Levels {
+        private final int numHops;
+        private final int height;
+        private final short[] levels; // Stored hop by hop, lowest frequency first.
+
+        private Levels(int numHops, int height) {
+            this.numHops = numHops;
+            this.height = height;
+            this.levels = new short[numHops * height];
+        }
+
+        public int getNumHops() {
+            return numHops;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getNumTiles() {
+            return (numHops + TILE_WIDTH - 1) / TILE_WIDTH;
+        }
+
+        /** Returns the number of hops drawn in the given tile. */
+        public int getTileWidth(int tile) {
+            return Math.min(TILE_WIDTH, numHops - tile * TILE_WIDTH);
+        }
+    }
+
+    /**
+     * Computes color levels for every hop of a WAV file, or returns them from the cache if the
+     * file has not changed since they were last computed.
+     */
+    public Levels getLevels(File wavFile, WavData wavData, int height) {
+        LevelsKey key = new LevelsKey(wavFile, height);
+        synchronized (levelsCache) {
+            Levels cached = levelsCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Levels levels = computeLevels(wavData, height);
+        synchronized (levelsCache) {
+            levelsCache.put(key, levels);
+        }
+        return levels;
     }
 
-    public Image createSpectrogram(WavData wavData, int height) {
+    /**
+     * Draws one tile of a spectrogram using the colors of the current theme.
+     */
+    public Image renderTile(Levels levels, int tile) {
+        int firstHop = tile * TILE_WIDTH;
+        return renderHops(levels, firstHop, firstHop + levels.getTileWidth(tile));
+    }
+
+    private Levels computeLevels(WavData wavData, int height) {
         int numSamples = wavData.getSamples().length;
         double sampleRate = numSamples / (wavData.getLengthMs() / 1000);
+        int[] filters = getFreqFilters(height, sampleRate);
 
-        List<Color> colorScale = createColorScale(height);
-        List<Integer> freqFilters = createFreqFilters(height, sampleRate);
-
-        int totalNumHops = (numSamples + WAV_HOP_SIZE - WAV_WINDOW_SIZE) / WAV_HOP_SIZE;
-
-        WritableImage spectrogram = new WritableImage(totalNumHops, height);
-        // TODO: Do this for every hop in parallel.
-        for (int hop = 0; hop < totalNumHops; hop++) {
-            double[] window = FFTUtils.hammingWindow(
-                    wavData.getSamples(), hop * WAV_HOP_SIZE, WAV_WINDOW_SIZE);
-            Complex[] frequencies = FFTUtils.fft(FFTUtils.toComplex(window)); // FFT results.
-            double[] magnitudes = new double[height]; // Magnitude at each pixel.
-            double windowMin = Integer.MAX_VALUE; // Minimum magnitude of any pixel.
-            for (int i = 0; i < magnitudes.length; i++) {
-                int startBand = freqFilters.get(i);
-                int endBand = freqFilters.get(i + 2);
-                int numBands = endBand - startBand;
-                int halfBands = numBands / 2;
-
-                double maxMagnitude = Integer.MIN_VALUE;
-                for (int band = startBand; band < endBand; band++) {
-                    double magnitude;
-                    double fftResult =
-                            Math.sqrt((frequencies[band].getReal() * frequencies[band].getReal() )
-                                    + (frequencies[band].getImaginary()
-                                    * frequencies[band].getImaginary()));
-                    // Shrink the FFT result by the triangle frequency filter.
-                    if (band <= startBand + halfBands) {
-                        magnitude = (band - startBand + 1.0) / (halfBands + 1.0) * fftResult;
-                    } else {
-                        magnitude = (numBands - (band - startBand)) * 1.0 / halfBands * fftResult;
-                    }
-                    if (magnitude > maxMagnitude) {
-                        maxMagnitude = magnitude;
-                    }
-                }
-                magnitudes[i] = maxMagnitude == 0 ? 0 : 20 * Math.log10(maxMagnitude);
+        int totalNumHops =
+                Math.max(0, (numSamples + WAV_HOP_SIZE - WAV_WINDOW_SIZE) / WAV_HOP_SIZE);
+        Levels levels = new Levels(totalNumHops, height);
+        IntStream.range(0, totalNumHops).parallel().forEach(
+                hop -> computeHop(wavData.getSamples(), hop, filters, levels));
+        return levels;
+    }
 
-                if (magnitudes[i] < windowMin) {
-                    windowMin = magnitudes[i];
+    private static void computeHop(double[] samples, int hop, int[] freqFilters, Levels levels) {
+        int height = levels.getHeight();
+        double[] fftResults = new double[WAV_WINDOW_SIZE / 2 + 1];
+        FFTUtils.hammingMagnitudes(samples, hop * WAV_HOP_SIZE, WAV_WINDOW_SIZE, fftResults);
+        double[] magnitudes = new double[height]; // Magnitude at each pixel.
+        double windowMin = Integer.MAX_VALUE; // Minimum magnitude of any pixel.
+        for (int i = 0; i < magnitudes.length; i++) {
+            int startBand = freqFilters[i];
+            int endBand = freqFilters[i + 2];
+            int numBands = endBand - startBand;
+            int halfBands = numBands / 2;
+
+            double maxMagnitude = Integer.MIN_VALUE;
+            for (int band = startBand; band < endBand; band++) {
+                double magnitude;
+                double fftResult = fftResults[band];
+                // Shrink the FFT result by the triangle frequency filter.
+                if (band <= startBand + halfBands) {
+                    magnitude = (band - startBand + 1.0) / (halfBands + 1.0) * fftResult;
+                } else {
+                    magnitude = (numBands - (band - startBand)) * 1.0 / halfBands * fftResult;
+                }
+                if (magnitude > maxMagnitude) {
+                    maxMagnitude = magnitude;
                 }
             }
+            magnitudes[i] = maxMagnitude == 0 ? 0 : 20 * Math.log10(maxMagnitude);
 
-            if (windowMin < 0) {
-                for (int i = 0; i < magnitudes.length; i++) {
-                    magnitudes[i] -= windowMin;
-                }
+            if (magnitudes[i] < windowMin) {
+                windowMin = magnitudes[i];
             }
+        }
 
-            for (int i = 0; i < magnitudes.length; i++) {
-                int colorIndex = Math.max(0, Math.min(height - 1,
-                        RoundUtils.round(magnitudes[i] * height / 100.0)));
-                spectrogram.getPixelWriter().setColor(
-                        hop, height - (i + 1), colorScale.get(colorIndex));
+        int offset = hop * height;
+        for (int i = 0; i < magnitudes.length; i++) {
+            double magnitude = windowMin < 0 ? magnitudes[i] - windowMin : magnitudes[i];
+            levels.levels[offset + i] = (short) Math.max(0, Math.min(height - 1,
+                    RoundUtils.round(magnitude * height / 100.0)));
+        }
+    }
+
+    private Image renderHops(Levels levels, int firstHop, int lastHop) {
+        int width = lastHop - firstHop;
+        int height = levels.getHeight();
+        if (width <= 0 || height <= 0) {
+            return new WritableImage(1, 1);
+        }
+        int[] colors = getColorScale(height);
+
+        // Write every pixel into one buffer, row by row, then copy it into the image at once.
+        int[] pixels = new int[width * height];
+        for (int hop = firstHop; hop < lastHop; hop++) {
+            int offset = hop * height;
+            int x = hop - firstHop;
+            for (int i = 0; i < height; i++) {
+                int y = height - (i + 1);
+                pixels[y * width + x] = colors[levels.levels[offset + i]];
             }
         }
-        return spectrogram;
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(
+                0,
+                0,
+                width,
+                height,
+                PixelFormat.getIntArgbInstance(),
+                IntBuffer.wrap(pixels),
+                width);
+        return image;
     }
 
-    private List<Color> createColorScale(int numColors) {
+    private int[] getFreqFilters(int height, double sampleRate) {
+        synchronized (this) {
+            if (freqFilters == null
+                    || freqFiltersHeight != height
+                    || freqFiltersSampleRate != sampleRate) {
+                freqFilters = createFreqFilters(height, sampleRate);
+                freqFiltersHeight = height;
+                freqFiltersSampleRate = sampleRate;
+            }
+            return freqFilters;
+        }
+    }
+
+    private int[] getColorScale(int numColors) {
         Map<String, Color> colorMap = themeManager.getCurrentTheme().get().getColorMap();
         Color color = colorMap.getOrDefault("SPECTROGRAM", DEFAULT_COLOR);
+        if (colorScale == null || colorScaleSize != numColors || !color.equals(colorScaleColor)) {
+            colorScale = createColorScale(color, numColors);
+            colorScaleColor = color;
+            colorScaleSize = numColors;
+        }
+        return colorScale;
+    }
 
+    private static int[] createColorScale(Color color, int numColors) {
         // Num colors is a multiple of height, so scale can be drawn on the side if needed.
-        ArrayList<Color> colorScale = new ArrayList<>(numColors);
+        int[] colorScale = new int[numColors];
         int blackToColorSteps = numColors / 2;
         for (int i = 0; i < blackToColorSteps; i++) {
-            colorScale.add(Color.BLACK.interpolate(color, i * 1.0 / blackToColorSteps));
+            colorScale[i] = toArgb(Color.BLACK.interpolate(color, i * 1.0 / blackToColorSteps));
         }
         int colorToWhiteSteps = numColors - blackToColorSteps;
         for (int i = 0; i < colorToWhiteSteps; i++) {
-            colorScale.add(color.interpolate(Color.WHITE, i * 1.0 / colorToWhiteSteps));
+            colorScale[blackToColorSteps + i] =
+                    toArgb(color.interpolate(Color.WHITE, i * 1.0 / colorToWhiteSteps));
         }
         return colorScale;
     }
 
-    private ImmutableList<Integer> createFreqFilters(int height, double sampleRate) {
+    private static int toArgb(Color color) {
+        return (RoundUtils.round(color.getOpacity() * 255) << 24)
+                | (RoundUtils.round(color.getRed() * 255) << 16)
+                | (RoundUtils.round(color.getGreen() * 255) << 8)
+                | RoundUtils.round(color.getBlue() * 255);
+    }
+
+    private static int[] createFreqFilters(int height, double sampleRate) {
         // Min cycle length in seconds. FFT frequency bands will be based on this value.
         double minCycleLen = WAV_WINDOW_SIZE / sampleRate;
         int numBins = WAV_WINDOW_SIZE / 2; // Number of frequency bins returned by FFT.
@@ -129,18 +267,18 @@ public class Spectrogram {
         // Create an evenly-spaced axis of mels, sized for the height of the spectrogram.
         double maxMel = melTransform(numBins / minCycleLen);
         double minMel = melTransform(1.0 / minCycleLen);
-        ArrayList<Double> hzFilters = new ArrayList<>(height + 2);
+        double[] hzFilters = new double[height + 2];
         for (int i = 0; i < height + 2; i++) {
             double melFilter = minMel + (i / (height + 1.0) * (maxMel - minMel));
-            hzFilters.add(inverseMelTransform(melFilter)); // Convert from mels to Hz.
+            hzFilters[i] = inverseMelTransform(melFilter); // Convert from mels to Hz.
         }
 
         // Convert from Hz to the nearest preceding index in FFT output.
-        Integer[] freqFilters = new Integer[height + 2];
+        int[] freqFilters = new int[height + 2];
         int index = 0;
         for (int fftIndex = 1; fftIndex <= numBins; fftIndex++) {
             double freqInHz = fftIndex / minCycleLen;
-            if (freqInHz >= hzFilters.get(index)) {
+            if (freqInHz >= hzFilters[index]) {
                 freqFilters[index] = fftIndex - 1;
                 index++;
             }
@@ -149,7 +287,7 @@ public class Spectrogram {
             }
         }
         freqFilters[height + 1] = numBins;
-        return ImmutableList.copyOf(freqFilters);
+        return freqFilters;
     }
 
     private static double melTransform(double freqInHz) {
@@ -159,4 +297,36 @@ public class Spectrogram {
     private static double inverseMelTransform(double freqInMels) {
         return 700.0 * (Math.pow(Math.E, freqInMels / 1127.0) - 1);
     }
+
+    /** Identifies one version of a sample file drawn at one height. */
+    private static class LevelsKey {
+        private final File wavFile;
+        private final long lastModified;
+        private final long fileLength;
+        private final int height;
+
+        private LevelsKey(File wavFile, int height) {
+            this.wavFile = wavFile.getAbsoluteFile();
+            this.lastModified = wavFile.lastModified();
+            this.fileLength = wavFile.length();
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof LevelsKey)) {
+                return false;
+            }
+            LevelsKey otherKey = (LevelsKey) other;
+            return wavFile.equals(otherKey.wavFile)
+                    && lastModified == otherKey.lastModified
+                    && fileLength == otherKey.fileLength
+                    && height == otherKey.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(wavFile, lastModified, fileLength, height);
+        }
+    }
 }
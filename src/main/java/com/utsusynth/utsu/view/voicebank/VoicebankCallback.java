@@ -1,6 +1,7 @@
 package com.utsusynth.utsu.view.voicebank;
 
 import java.util.Iterator;
+import java.util.List;
 import com.utsusynth.utsu.common.data.LyricConfigData;
 
 public interface VoicebankCallback {
@@ -24,6 +25,9 @@ public interface VoicebankCallback {
 
     void generateFrqFiles(Iterator<LyricConfigData> configData);
 
+    /** Checks the lyric configs of a category once it is first shown, then marks any problems. */
+    void checkLyricData(List<LyricConfigData> lyricData);
+
     /** Records an action so it can be undone or redone later. */
     void recordAction(Runnable redoAction, Runnable undoAction);
 }
@@ -26,6 +26,7 @@ import java.util.*;
 public class VoicebankEditor implements Localizable {
     private final Localizer localizer;
     private final Map<String, TableView<LyricConfigData>> tables = new HashMap<>();
+    private final Map<String, String> problems = new HashMap<>(); // Lyric to its oto problem.
 
     private TabPane tabPane;
     private VoicebankCallback model;
@@ -94,6 +95,22 @@ public class VoicebankEditor implements Localizable {
         });
     }
 
+    /** Marks lyrics whose configs have problems, such as the ones found in a category. */
+    public void addProblems(Map<String, String> newProblems) {
+        problems.putAll(newProblems);
+        tables.values().forEach(TableView::refresh);
+    }
+
+    /** Marks or unmarks a single lyric, such as after it was edited. */
+    public void setProblem(String lyric, Optional<String> problem) {
+        if (problem.isPresent()) {
+            problems.put(lyric, problem.get());
+        } else if (problems.remove(lyric) == null) {
+            return; // Nothing changed.
+        }
+        tables.values().forEach(TableView::refresh);
+    }
+
     private ScrollPane newTable(String category, Iterator<LyricConfigData> lyricIterator) {
         ScrollPane scrollPane = new ScrollPane();
         // TODO: Add css for this.
@@ -112,7 +129,19 @@ public class VoicebankEditor implements Localizable {
 
         // Add a context menu.
         table.setRowFactory(source -> {
-            TableRow<LyricConfigData> row = new TableRow<>();
+            TableRow<LyricConfigData> row = new TableRow<>() {
+                @Override
+                protected void updateItem(LyricConfigData item, boolean empty) {
+                    super.updateItem(item, empty);
+                    // Show oto problems as a tooltip on the row.
+                    String problem = empty || item == null ? null : problems.get(item.getLyric());
+                    setTooltip(problem == null ? null : new Tooltip(problem));
+                    getStyleClass().remove("oto-problem");
+                    if (problem != null) {
+                        getStyleClass().add("oto-problem");
+                    }
+                }
+            };
             ContextMenu contextMenu = new ContextMenu();
             MenuItem addAliasItem = new MenuItem("Add Alias");
             addAliasItem.setOnAction(event -> {
@@ -203,6 +232,7 @@ public class VoicebankEditor implements Localizable {
             lyrics.add(data);
             initializeLyric(data);
         }
+        model.checkLyricData(List.copyOf(lyrics));
         return scrollPane;
     }
 
@@ -302,6 +332,7 @@ public class VoicebankEditor implements Localizable {
     private void clear() {
         // Remove current lyric configs.
         tables.clear();
+        problems.clear();
         tabPane = new TabPane();
         tabPane.setTabClosingPolicy(TabClosingPolicy.UNAVAILABLE);
         HBox.setHgrow(tabPane, Priority.ALWAYS);
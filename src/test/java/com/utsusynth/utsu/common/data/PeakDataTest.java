@@ -0,0 +1,34 @@
+package com.utsusynth.utsu.common.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link PeakData}. */
+public class PeakDataTest {
+  @Test
+  public void buildsEveryLevelFromSamples() {
+    double[] samples = new double[] {0.1, -0.2, 0.5, 0.3, -0.9, 0.0, 0.4};
+    PeakData peaks = PeakData.fromWavData(new WavData(1.0, samples), 2);
+
+    assertEquals(3, peaks.getNumLevels());
+    assertArrayEquals(new float[] {-0.2f, 0f, -0.9f, 0f}, peaks.getMins(0), 1e-6f);
+    assertArrayEquals(new float[] {0.1f, 0.5f, 0f, 0.4f}, peaks.getMaxes(0), 1e-6f);
+    assertArrayEquals(new float[] {-0.2f, -0.9f}, peaks.getMins(1), 1e-6f);
+    assertArrayEquals(new float[] {0.5f, 0.4f}, peaks.getMaxes(1), 1e-6f);
+    assertArrayEquals(new float[] {-0.9f}, peaks.getMins(2), 1e-6f);
+    assertArrayEquals(new float[] {0.5f}, peaks.getMaxes(2), 1e-6f);
+  }
+
+  @Test
+  public void picksLevelForZoom() {
+    PeakData peaks = PeakData.fromWavData(new WavData(1.0, new double[1000]), 10);
+
+    assertEquals(0, peaks.getLevelForSamplesPerPixel(1));
+    assertEquals(0, peaks.getLevelForSamplesPerPixel(19));
+    assertEquals(1, peaks.getLevelForSamplesPerPixel(20));
+    assertEquals(3, peaks.getLevelForSamplesPerPixel(100));
+    assertEquals(peaks.getNumLevels() - 1, peaks.getLevelForSamplesPerPixel(100000));
+  }
+}
@@ -0,0 +1,28 @@
+package com.utsusynth.utsu.common.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link FFTUtils}. */
+public class FFTUtilsTest {
+  @Test
+  public void windowsEachFrameFromItsOwnStart() {
+    int size = 256;
+    int offset = 37;
+    Random random = new Random(3);
+    double[] frame = new double[size];
+    double[] signal = new double[offset + size];
+    for (int i = 0; i < size; i++) {
+      frame[i] = random.nextDouble() * 2 - 1;
+      signal[offset + i] = frame[i];
+    }
+    double[] expected = new double[size / 2 + 1];
+    double[] magnitudes = new double[size / 2 + 1];
+    FFTUtils.hammingMagnitudes(frame, 0, size, expected);
+    FFTUtils.hammingMagnitudes(signal, offset, size, magnitudes);
+
+    assertArrayEquals(expected, magnitudes, 1e-9);
+  }
+}
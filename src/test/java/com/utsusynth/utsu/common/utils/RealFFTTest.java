@@ -0,0 +1,84 @@
+package com.utsusynth.utsu.common.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link RealFFT}. */
+public class RealFFTTest {
+  private static final double TOLERANCE = 1e-9;
+
+  @Test
+  public void matchesDiscreteFourierTransform() {
+    Random random = new Random(42);
+    for (int size = 2; size <= 1024; size *= 2) {
+      double[] signal = new double[size + 3];
+      for (int i = 0; i < signal.length; i++) {
+        signal[i] = random.nextDouble() * 2 - 1;
+      }
+      RealFFT fft = RealFFT.forSize(size);
+      double[] real = new double[fft.getNumBins()];
+      double[] imaginary = new double[fft.getNumBins()];
+      fft.transform(signal, 3, null, real, imaginary);
+
+      for (int k = 0; k < fft.getNumBins(); k++) {
+        double expectedReal = 0;
+        double expectedImaginary = 0;
+        for (int n = 0; n < size; n++) {
+          double angle = -2 * Math.PI * k * n / size;
+          expectedReal += signal[n + 3] * Math.cos(angle);
+          expectedImaginary += signal[n + 3] * Math.sin(angle);
+        }
+        assertEquals(expectedReal, real[k], TOLERANCE * size, "Real part of bin " + k);
+        assertEquals(
+                expectedImaginary, imaginary[k], TOLERANCE * size, "Imaginary part of bin " + k);
+      }
+    }
+  }
+
+  @Test
+  public void appliesWindowAndComputesMagnitudes() {
+    int size = 64;
+    double[] signal = new double[size];
+    for (int i = 0; i < size; i++) {
+      signal[i] = Math.cos(2 * Math.PI * 8 * i / size);
+    }
+    double[] window = new double[size];
+    Arrays.fill(window, 0.5);
+    double[] magnitudes = new double[size / 2 + 1];
+    RealFFT.forSize(size).magnitudes(signal, 0, window, magnitudes);
+
+    for (int k = 0; k < magnitudes.length; k++) {
+      assertEquals(k == 8 ? size / 4.0 : 0, magnitudes[k], TOLERANCE, "Magnitude of bin " + k);
+    }
+  }
+
+  @Test
+  public void inverseTransformRestoresSignal() {
+    Random random = new Random(7);
+    for (int size = 2; size <= 1024; size *= 2) {
+      double[] signal = new double[size];
+      for (int i = 0; i < size; i++) {
+        signal[i] = random.nextDouble() * 2 - 1;
+      }
+      RealFFT fft = RealFFT.forSize(size);
+      double[] real = new double[fft.getNumBins()];
+      double[] imaginary = new double[fft.getNumBins()];
+      double[] result = new double[size];
+      fft.transform(signal, 0, null, real, imaginary);
+      fft.inverseTransform(real, imaginary, result);
+
+      assertArrayEquals(signal, result, TOLERANCE, "Round trip of size " + size);
+    }
+  }
+
+  @Test
+  public void rejectsSizesThatAreNotPowersOfTwo() {
+    assertThrows(IllegalArgumentException.class, () -> RealFFT.forSize(0));
+    assertThrows(IllegalArgumentException.class, () -> RealFFT.forSize(96));
+  }
+}
@@ -0,0 +1,50 @@
+package com.utsusynth.utsu.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.utsusynth.utsu.common.StatusBar;
+import com.utsusynth.utsu.common.data.FrequencyData;
+import com.utsusynth.utsu.files.voicebank.SoundFileReader;
+import com.utsusynth.utsu.files.voicebank.SoundFileWriter;
+import java.io.File;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link FrqGenerator}. */
+public class FrqGeneratorTest {
+  // A short vowel cut from Iona_Beta/a.wav, and the frq file frq0003gen wrote for it.
+  private static final File WAV_PATH = new File("src/test/resources/frq/a_vowel.wav");
+  private static final File EXPECTED_FRQ_PATH = new File("src/test/resources/frq/a_vowel_wav.frq");
+
+  @TempDir File tempDir;
+
+  @Test
+  public void matchesFrq0003genOutput() {
+    SoundFileReader reader = new SoundFileReader(new StatusBar(null));
+    FrqGenerator generator =
+        new FrqGenerator(reader, new SoundFileWriter(), new YinPitchTracker(), 256);
+    File frqFile = new File(tempDir, "a_vowel_wav.frq");
+
+    assertTrue(generator.genFrqFile(WAV_PATH, frqFile));
+    FrequencyData expected = reader.loadFrqData(EXPECTED_FRQ_PATH).get();
+    FrequencyData actual = reader.loadFrqData(frqFile).get();
+
+    assertEquals(expected.getSamplesPerFreqValue(), actual.getSamplesPerFreqValue());
+    assertEquals(expected.getFrequencies().length, actual.getFrequencies().length);
+    assertEquals(expected.getAverageFreq(), actual.getAverageFreq(), 1);
+    double[] expectedFrequencies = expected.getFrequencies();
+    double[] expectedAmplitudes = expected.getAmplitudes();
+    for (int i = 0; i < expectedFrequencies.length; i++) {
+      // Pitch estimators differ slightly, so allow each block to be off by 10 cents.
+      double ratio = actual.getFrequencies()[i] / expectedFrequencies[i];
+      double cents = 1200 * Math.log(ratio) / Math.log(2);
+      assertTrue(Math.abs(cents) < 10, "Block " + i + " is off by " + cents + " cents");
+      // The last block is mostly padding past the end of the signal, so skip its amplitude.
+      if (i < expectedFrequencies.length - 1) {
+        assertEquals(
+            expectedAmplitudes[i], actual.getAmplitudes()[i], expectedAmplitudes[i] * 1e-6);
+      }
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.utsusynth.utsu.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.utsusynth.utsu.common.StatusBar;
+import com.utsusynth.utsu.common.data.FrequencyData;
+import com.utsusynth.utsu.common.data.WavData;
+import com.utsusynth.utsu.files.voicebank.SoundFileReader;
+import java.io.File;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link YinPitchTracker}. */
+public class YinPitchTrackerTest {
+  private static final File IONA_PATH = new File("src/main/resources/assets/sounds/Iona_Beta");
+
+  @Test
+  public void tracksSyntheticTone() {
+    double sampleRate = 44100;
+    double[] samples = new double[44100];
+    for (int i = 0; i < samples.length; i++) {
+      double phase = 2 * Math.PI * 220 * i / sampleRate;
+      samples[i] = 0.5 * Math.sin(phase) + 0.25 * Math.sin(2 * phase);
+    }
+    FrequencyData frqData = new YinPitchTracker().analyze(new WavData(1000, samples), 256);
+
+    assertEquals(173, frqData.getFrequencies().length);
+    assertEquals(256, frqData.getSamplesPerFreqValue());
+    assertEquals(220, frqData.getAverageFreq(), 0.5);
+    // The last blocks are mostly padding past the end of the signal, so only check the rest.
+    double[] frequencies = frqData.getFrequencies();
+    for (int i = 0; i < frequencies.length - 2; i++) {
+      assertEquals(220, frequencies[i], 1);
+    }
+  }
+
+  @Test
+  public void treatsSilenceAsUnvoiced() {
+    FrequencyData frqData =
+        new YinPitchTracker().analyze(new WavData(100, new double[4410]), 256);
+
+    assertEquals(0, frqData.getAverageFreq());
+    for (int i = 0; i < frqData.getFrequencies().length; i++) {
+      assertEquals(0, frqData.getFrequencies()[i]);
+      assertEquals(0, frqData.getAmplitudes()[i]);
+    }
+  }
+
+  @Test
+  public void matchesBundledFrqGenerator() {
+    // Average F0 written by the bundled frq0003gen for each sample.
+    assertMatchesAverage("a.wav", 442.04);
+    assertMatchesAverage("ka.wav", 445.20);
+    assertMatchesAverage("shi.wav", 445.64);
+    assertMatchesAverage("n.wav", 452.79);
+  }
+
+  private static void assertMatchesAverage(String fileName, double expectedAverage) {
+    SoundFileReader reader = new SoundFileReader(new StatusBar(null));
+    WavData wavData = reader.loadWavData(new File(IONA_PATH, fileName)).get();
+    FrequencyData frqData = new YinPitchTracker().analyze(wavData, 256);
+
+    assertEquals(expectedAverage, frqData.getAverageFreq(), expectedAverage * 0.005, fileName);
+    int numVoiced = 0;
+    for (double frequency : frqData.getFrequencies()) {
+      if (frequency > 0) {
+        numVoiced++;
+        // Onsets glide into the note, but no block should be an octave error.
+        assertTrue(
+            Math.abs(12 * Math.log(frequency / expectedAverage) / Math.log(2)) < 2, fileName);
+      }
+    }
+    assertTrue(numVoiced > frqData.getFrequencies().length * 0.9, fileName);
+  }
+}
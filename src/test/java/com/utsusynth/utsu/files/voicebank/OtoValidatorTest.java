@@ -0,0 +1,63 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import com.utsusynth.utsu.common.data.LyricConfigData;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link OtoValidator}. */
+public class OtoValidatorTest {
+  @TempDir File tempDir;
+
+  @Test
+  public void findsConfigsOutsideOfTheirSamples() throws Exception {
+    File wavFile = new File(tempDir, "a.wav");
+    writeWav(wavFile, 1000); // One second long.
+    Files.writeString(new File(tempDir, "b.wav").toPath(), "not a wav file");
+    OtoValidator validator = new OtoValidator();
+
+    Map<String, String> problems = validator.validate(List.of(
+        makeData("ok", "a.wav", 100, 50, -300),
+        makeData("fromEnd", "a.wav", 100, 50, 200),
+        makeData("lateOffset", "a.wav", 1200, 50, -300),
+        makeData("lateCutoff", "a.wav", 800, 50, -300),
+        makeData("backwardsCutoff", "a.wav", 500, 50, 600),
+        makeData("notWav", "b.wav", 0, 0, 0),
+        makeData("missing", "c.wav", 0, 0, 0)).iterator());
+
+    assertEquals(5, problems.size());
+    assertFalse(problems.containsKey("ok"));
+    assertFalse(problems.containsKey("fromEnd"));
+    assertEquals("Offset is past the end of the sample (1000.0 ms)", problems.get("lateOffset"));
+    assertEquals("Cutoff is past the end of the sample (1000.0 ms)", problems.get("lateCutoff"));
+    assertEquals("Cutoff is before the offset", problems.get("backwardsCutoff"));
+    assertEquals("Not a WAV file", problems.get("notWav"));
+    assertEquals("Missing file: c.wav", problems.get("missing"));
+  }
+
+  private LyricConfigData makeData(
+      String lyric, String fileName, double offset, double consonant, double cutoff) {
+    return new LyricConfigData(
+        new File(tempDir, fileName), "Main", lyric, fileName, "INVALID",
+        offset, consonant, cutoff, 0, 0);
+  }
+
+  private static void writeWav(File wavFile, int lengthMs) throws Exception {
+    int sampleRate = 44100;
+    int dataSize = sampleRate * lengthMs / 1000 * 2;
+    ByteBuffer buffer = ByteBuffer.allocate(44 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put("RIFF".getBytes()).putInt(36 + dataSize).put("WAVE".getBytes());
+    buffer.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1);
+    buffer.putInt(sampleRate).putInt(sampleRate * 2).putShort((short) 2).putShort((short) 16);
+    buffer.put("data".getBytes()).putInt(dataSize);
+    Files.write(wavFile.toPath(), buffer.array());
+  }
+}
@@ -0,0 +1,42 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.utsusynth.utsu.files.voicebank.VoicebankReader.OtoEntry;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link VoicebankIndex}. */
+public class VoicebankIndexTest {
+  @TempDir File tempDir;
+
+  @Test
+  public void readsIndexUntilSourcesChange() throws Exception {
+    File voicebankPath = new File(tempDir, "bank");
+    File otoFile = new File(voicebankPath, "oto.ini");
+    voicebankPath.mkdirs();
+    Files.writeString(otoFile.toPath(), "a.wav=- a,1,2,3,4,5");
+    VoicebankIndex index = new VoicebankIndex(new File(tempDir, "settings"));
+    OtoEntry entry =
+        new OtoEntry("- a", "C4/a.wav", new double[] {1, 2, 3, 4, 5}, true, "C4/oto.ini");
+
+    index.write(voicebankPath, List.of(voicebankPath, otoFile), List.of(entry));
+
+    List<OtoEntry> entries = index.read(voicebankPath).get();
+    assertEquals(1, entries.size());
+    assertEquals("- a", entries.get(0).trueLyric);
+    assertEquals("C4/a.wav", entries.get(0).fileName);
+    assertArrayEquals(new double[] {1, 2, 3, 4, 5}, entries.get(0).configValues);
+    assertTrue(entries.get(0).hasFrq);
+    assertEquals("C4/oto.ini", entries.get(0).otoFile);
+
+    Files.writeString(otoFile.toPath(), "a.wav=- a,1,2,3,4,5\nb.wav=- b,1,2,3,4,5");
+    assertFalse(index.read(voicebankPath).isPresent());
+  }
+}
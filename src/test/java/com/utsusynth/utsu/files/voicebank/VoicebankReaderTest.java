@@ -0,0 +1,33 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import com.utsusynth.utsu.files.voicebank.VoicebankReader.OtoLine;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link VoicebankReader}. */
+public class VoicebankReaderTest {
+  @Test
+  public void parsesOtoLines() {
+    OtoLine line = OtoLine.parse("_ka.wav=- ka,100,,-200,50.5,20").get();
+    assertEquals("_ka.wav", line.fileName);
+    assertEquals("- ka", line.lyric);
+    assertArrayEquals(new String[] {"100", "0", "-200", "50.5", "20"}, line.configValues);
+
+    // File names may contain '=' and end at the last ".wav=" followed by a comma.
+    OtoLine oddLine = OtoLine.parse("a=b.wav=c.wav=,1,2,3,4,5,extra").get();
+    assertEquals("a=b.wav=c.wav", oddLine.fileName);
+    assertEquals("", oddLine.lyric);
+    assertArrayEquals(new String[] {"1", "2", "3", "4", "5"}, oddLine.configValues);
+  }
+
+  @Test
+  public void rejectsMalformedOtoLines() {
+    assertFalse(OtoLine.parse("").isPresent());
+    assertFalse(OtoLine.parse(".wav=ka,1,2,3,4,5").isPresent());
+    assertFalse(OtoLine.parse("ka.wav=ka").isPresent());
+    assertEquals(0, OtoLine.parse("ka.wav=ka,1,2,3").get().configValues.length);
+  }
+}
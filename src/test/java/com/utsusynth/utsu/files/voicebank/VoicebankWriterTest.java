@@ -0,0 +1,58 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.utsusynth.utsu.files.PreferencesManager;
+import com.utsusynth.utsu.model.voicebank.LyricConfig;
+import com.utsusynth.utsu.model.voicebank.LyricConfigMap;
+import com.utsusynth.utsu.model.voicebank.PitchMap;
+import com.utsusynth.utsu.model.voicebank.Voicebank;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link VoicebankWriter}. */
+public class VoicebankWriterTest {
+  @TempDir File tempDir;
+
+  @Test
+  public void writesOnlyEditedCategories() throws Exception {
+    new File(tempDir, "C4").mkdirs();
+    LyricConfigMap configs = new LyricConfigMap();
+    configs.addConfig(new LyricConfig(tempDir, "a", "a.wav", 1, 2, 3, 4, 5));
+    configs.addConfig(new LyricConfig(tempDir, "ka", "C4/ka.wav", 1, 2, 3, 4, 5));
+    configs.addConfig(new LyricConfig(tempDir, "sa", "C4/sa.wav", 1, 2, 3, 4, 5));
+    PreferencesManager preferences =
+        new PreferencesManager(tempDir, null, null, ImmutableMap.of("guessAlias", "DISABLED"));
+    Voicebank voicebank =
+        new Voicebank(configs, new PitchMap(), new HashSet<>(), null, preferences, null);
+    VoicebankWriter writer = new VoicebankWriter();
+
+    // The first save writes every category.
+    writer.writeVoicebankToDirectory(voicebank, tempDir);
+    assertEquals("a.wav=a,1.0,2.0,3.0,4.0,5.0\n", read("oto.ini"));
+    assertEquals("ka.wav=ka,1.0,2.0,3.0,4.0,5.0\nsa.wav=sa,1.0,2.0,3.0,4.0,5.0\n", read("C4/oto.ini"));
+
+    // Later saves leave categories that were not edited alone.
+    Files.writeString(new File(tempDir, "oto.ini").toPath(), "untouched");
+    voicebank.removeLyricConfig("ka");
+    writer.writeVoicebankToDirectory(voicebank, tempDir);
+    assertEquals("untouched", read("oto.ini"));
+    assertEquals("sa.wav=sa,1.0,2.0,3.0,4.0,5.0\n", read("C4/oto.ini"));
+    String utfOto = read("oto_ini.txt");
+    assertTrue(utfOto.contains("a.wav=a,1.0,2.0,3.0,4.0,5.0\n"));
+    assertTrue(utfOto.contains("sa.wav=sa,1.0,2.0,3.0,4.0,5.0\n"));
+    assertFalse(utfOto.contains("ka.wav"));
+    assertEquals(0, new File(tempDir, "C4").list((dir, name) -> name.endsWith(".tmp")).length);
+  }
+
+  private String read(String fileName) throws Exception {
+    return Files.readString(new File(tempDir, fileName).toPath(), StandardCharsets.UTF_8);
+  }
+}
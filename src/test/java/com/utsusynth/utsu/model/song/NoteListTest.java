@@ -0,0 +1,119 @@
+package com.utsusynth.utsu.model.song;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.utsusynth.utsu.common.exception.NoteAlreadyExistsException;
+import com.utsusynth.utsu.common.utils.RegionBounds;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link NoteList}. */
+public class NoteListTest {
+  @Test
+  public void insertsNotesInAnyOrder() throws Exception {
+    NoteList noteList = makeNoteList(960, 0, 1920, 480, 2400);
+
+    assertEquals(List.of(0, 480, 960, 1920, 2400), getPositions(noteList.iterator()));
+    assertEquals(960, noteList.getNote(960).getNote().getLength());
+    assertEquals(960, noteList.getNote(1920).getNote().getDelta());
+    assertThrows(NoteAlreadyExistsException.class, () -> insert(noteList, 1920));
+  }
+
+  @Test
+  public void iteratesOverRegions() throws Exception {
+    NoteList noteList = makeNoteList(0, 480, 960, 1920, 2400);
+
+    NoteIterator iterator = noteList.boundedIterator(new RegionBounds(500, 2000));
+    assertEquals(1, iterator.getCurIndex());
+    assertEquals(List.of(480, 960, 1920), getPositions(iterator));
+    assertEquals(4, iterator.getCurIndex());
+
+    // Region starting after the end of a note, in a gap between notes.
+    assertEquals(
+        List.of(1920), getPositions(noteList.boundedIterator(new RegionBounds(1500, 2000))));
+    assertFalse(noteList.boundedIterator(new RegionBounds(1500, 1800)).hasNext());
+    assertFalse(noteList.boundedIterator(new RegionBounds(5000, 6000)).hasNext());
+  }
+
+  @Test
+  public void cursorExposesNeighbors() throws Exception {
+    NoteList noteList = makeNoteList(0, 480, 1920);
+
+    NoteCursor cursor = noteList.cursor(new RegionBounds(500, 2000));
+    assertTrue(cursor.hasNextNote());
+    assertTrue(cursor.next());
+    assertEquals(480, cursor.getPosition());
+    assertEquals(0, cursor.getPrevPosition());
+    assertEquals(480, cursor.getPrevNote().getDuration());
+    assertEquals(1920, cursor.getNextPosition());
+
+    assertTrue(cursor.next());
+    assertEquals(1920, cursor.getPosition());
+    assertFalse(cursor.hasNextNote());
+    assertNull(cursor.getNextNote());
+    assertFalse(cursor.next());
+  }
+
+  @Test
+  public void copiesRegionWithNeighbors() throws Exception {
+    NoteList noteList = makeNoteList(0, 480, 960, 1920, 2400);
+    Map<Note, Note> originals = new IdentityHashMap<>();
+
+    NoteList copy = noteList.copy(new RegionBounds(500, 1000), originals);
+
+    assertEquals(List.of(0, 480, 960, 1920), getPositions(copy.iterator()));
+    assertEquals(4, originals.size());
+    Note copied = copy.getNote(480).getNote();
+    assertSame(noteList.getNote(480).getNote(), originals.get(copied));
+
+    // Changing a copy leaves the original untouched.
+    copied.setFadeIn(42);
+    assertNotEquals(42, noteList.getNote(480).getNote().getFadeIn());
+  }
+
+  @Test
+  public void removesNotes() throws Exception {
+    NoteList noteList = makeNoteList(0, 480, 960);
+
+    noteList.removeNote(0);
+    noteList.removeNote(960);
+
+    assertEquals(List.of(480), getPositions(noteList.iterator()));
+    assertEquals(1, noteList.getSize());
+    assertEquals(List.of(480), getPositions(noteList.boundedIterator(new RegionBounds(0, 600))));
+  }
+
+  private static NoteList makeNoteList(int... positions) throws Exception {
+    NoteList noteList = new NoteList();
+    for (int position : positions) {
+      insert(noteList, position);
+    }
+    return noteList;
+  }
+
+  private static void insert(NoteList noteList, int position) throws Exception {
+    Note note = new Note();
+    note.setDelta(position);
+    note.safeSetDuration(480);
+    note.safeSetLength(480);
+    noteList.insertNote(note, position);
+  }
+
+  private static List<Integer> getPositions(NoteIterator iterator) {
+    List<Integer> positions = new ArrayList<>();
+    while (iterator.hasNext()) {
+      iterator.next();
+      positions.add(iterator.getCurDelta());
+    }
+    return positions;
+  }
+}
@@ -0,0 +1,78 @@
+package com.utsusynth.utsu.model.song;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+import com.utsusynth.utsu.files.PreferencesManager;
+import com.utsusynth.utsu.model.voicebank.LyricConfig;
+import com.utsusynth.utsu.model.voicebank.LyricConfigMap;
+import com.utsusynth.utsu.model.voicebank.PitchMap;
+import com.utsusynth.utsu.model.voicebank.Voicebank;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link NoteStandardizer}. */
+public class NoteStandardizerTest {
+  @Test
+  public void standardizesChunksLikeOneThread() throws Exception {
+    Voicebank voicebank = makeVoicebank();
+    NoteStandardizer standardizer = new NoteStandardizer();
+    List<NoteNode> expected = makeNodes();
+    List<NoteNode> actual = makeNodes();
+
+    standardizer.standardizeAll(expected, voicebank, 1);
+    standardizer.standardizeAll(actual, voicebank, 7);
+
+    for (int i = 0; i < expected.size(); i++) {
+      Note expectedNote = expected.get(i).getNote();
+      Note actualNote = actual.get(i).getNote();
+      assertEquals(expectedNote.getTrueLyric(), actualNote.getTrueLyric());
+      assertEquals(expectedNote.getRealPreutter(), actualNote.getRealPreutter());
+      assertEquals(expectedNote.getRealDuration(), actualNote.getRealDuration());
+      assertArrayEquals(expectedNote.getRawFullEnvelope(), actualNote.getRawFullEnvelope());
+    }
+  }
+
+  private static List<NoteNode> makeNodes() throws Exception {
+    // Short, touching notes so that fade ins get shrunk across chunk boundaries.
+    Random random = new Random(1234);
+    String[] lyrics = {"a", "ka", "sa", "n"};
+    int[] lengths = {30, 60, 120, 480};
+    NoteList noteList = new NoteList();
+    int position = 0;
+    for (int i = 0; i < 300; i++) {
+      int length = lengths[random.nextInt(lengths.length)];
+      Note note = new Note();
+      note.setLyric(lyrics[random.nextInt(lyrics.length)]);
+      note.setNoteNum(60);
+      note.safeSetDuration(length);
+      note.safeSetLength(length);
+      noteList.insertNote(note, position);
+      position += length;
+    }
+    List<NoteNode> nodes = new ArrayList<>();
+    for (int i = 0, pos = 0; i < noteList.getSize(); i++) {
+      NoteNode node = noteList.getNote(pos);
+      nodes.add(node);
+      pos += node.getNote().getLength();
+    }
+    return nodes;
+  }
+
+  private static Voicebank makeVoicebank() {
+    File path = new File("voicebank");
+    LyricConfigMap configs = new LyricConfigMap();
+    configs.addConfig(new LyricConfig(path, "a", "a.wav", 0, 20, 0, 40, 30));
+    configs.addConfig(new LyricConfig(path, "ka", "ka.wav", 0, 80, 0, 90, 60));
+    configs.addConfig(new LyricConfig(path, "sa", "sa.wav", 0, 100, 0, 150, 100));
+    configs.addConfig(new LyricConfig(path, "n", "n.wav", 0, 40, 0, 20, 10));
+    PreferencesManager preferences =
+        new PreferencesManager(path, null, null, ImmutableMap.of("guessAlias", "DISABLED"));
+    return new Voicebank(configs, new PitchMap(), new HashSet<>(), null, preferences, null);
+  }
+}
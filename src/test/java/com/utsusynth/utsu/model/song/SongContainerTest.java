@@ -0,0 +1,43 @@
+package com.utsusynth.utsu.model.song;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.utsusynth.utsu.common.data.NoteData;
+import com.utsusynth.utsu.common.utils.RegionBounds;
+import com.utsusynth.utsu.model.song.pitch.PitchCurve;
+import com.utsusynth.utsu.model.song.pitch.portamento.PortamentoFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link SongContainer}. */
+public class SongContainerTest {
+  @Test
+  public void keepsListenersWhenSongIsReplaced() {
+    Song oldSong = newSong();
+    SongContainer container = new SongContainer(new SongManager(), oldSong);
+    List<SongChange> changes = new ArrayList<>();
+    container.addListener(changes::add);
+
+    Song loadedSong = newSong();
+    container.loadSong(loadedSong);
+    assertEquals(0, changes.size());
+
+    Song newSong = newSong();
+    container.setSong(newSong);
+    assertEquals(1, changes.size());
+    assertEquals(SongChange.Type.SETTINGS_CHANGED, changes.get(0).getType());
+    assertEquals(RegionBounds.WHOLE_SONG, changes.get(0).getRegion());
+
+    // Only the song in the container is listened to.
+    oldSong.addNotes(List.of(new NoteData(0, 480, "C4", "a")));
+    loadedSong.addNotes(List.of(new NoteData(0, 480, "C4", "a")));
+    newSong.addNotes(List.of(new NoteData(0, 480, "C4", "a")));
+    assertEquals(2, changes.size());
+    assertEquals(SongChange.Type.NOTES_ADDED, changes.get(1).getType());
+  }
+
+  private static Song newSong() {
+    return new Song(null, null, null, new NoteList(), new PitchCurve(new PortamentoFactory()));
+  }
+}
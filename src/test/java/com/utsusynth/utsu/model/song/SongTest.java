@@ -0,0 +1,82 @@
+package com.utsusynth.utsu.model.song;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.utsusynth.utsu.common.data.EnvelopeData;
+import com.utsusynth.utsu.common.data.NoteData;
+import com.utsusynth.utsu.common.data.PitchbendData;
+import com.utsusynth.utsu.common.utils.RegionBounds;
+import com.utsusynth.utsu.model.song.pitch.PitchCurve;
+import com.utsusynth.utsu.model.song.pitch.portamento.PortamentoFactory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link Song}. */
+public class SongTest {
+  @Test
+  public void publishesNoteChanges() {
+    Song song =
+        new Song(null, null, null, new NoteList(), new PitchCurve(new PortamentoFactory()));
+    List<SongChange> changes = new ArrayList<>();
+    song.addListener(changes::add);
+
+    song.addNotes(List.of(new NoteData(0, 480, "C4", "a"), new NoteData(960, 480, "D4", "i")));
+    song.modifyNote(new NoteData(
+        960,
+        480,
+        "D4",
+        "i",
+        new PitchbendData(
+            ImmutableList.of(-40.0),
+            ImmutableList.of(80.0),
+            ImmutableList.of(),
+            ImmutableList.of(""))));
+    song.removeNotes(Set.of(0));
+
+    assertEquals(4, changes.size());
+    assertEquals(SongChange.Type.NOTES_ADDED, changes.get(0).getType());
+    assertEquals(new RegionBounds(0, 1440), changes.get(0).getRegion());
+    assertEquals(SongChange.Type.NOTES_MODIFIED, changes.get(1).getType());
+    assertEquals(new RegionBounds(960, 1440), changes.get(1).getRegion());
+    assertEquals(SongChange.Type.PITCH_CHANGED, changes.get(2).getType());
+    assertEquals(184, changes.get(2).getFirstPitchStep());
+    assertEquals(SongChange.Type.NOTES_REMOVED, changes.get(3).getType());
+    assertEquals(new RegionBounds(0, 960), changes.get(3).getRegion());
+  }
+
+  @Test
+  public void modifyOnlyBatchLeavesOtherNotesAlone() {
+    // No standardizer, so standardizing any note would fail.
+    NoteList noteList = new NoteList();
+    Song song = new Song(null, null, null, noteList, new PitchCurve(new PortamentoFactory()));
+    song.addNotes(List.of(
+        new NoteData(0, 480, "C4", "a"),
+        new NoteData(480, 480, "D4", "i"),
+        new NoteData(960, 480, "E4", "u"),
+        new NoteData(1440, 480, "F4", "e")));
+    Note untouched = noteList.getNote(480).getNote();
+    untouched.setEnvelope(new EnvelopeData(
+        new double[] {10, 20, 30, 40, 50}, new double[] {100, 90, 80, 70, 60}));
+    double[] envelope = untouched.getRawFullEnvelope();
+    Optional<File> cacheFile = Optional.of(new File("cache.wav"));
+    untouched.setCacheFile(cacheFile);
+
+    EnvelopeData newEnvelope =
+        new EnvelopeData(new double[] {5, 5, 5, 5, 5}, new double[] {50, 50, 50, 50, 50});
+    song.batch()
+        .modifyNotes(List.of(
+            new NoteData(0, 480, "C4", "a", newEnvelope),
+            new NoteData(1440, 480, "F4", "e", newEnvelope)))
+        .apply();
+
+    assertArrayEquals(envelope, untouched.getRawFullEnvelope());
+    assertEquals(cacheFile, untouched.getCacheFile());
+    assertEquals(50, noteList.getNote(1440).getNote().getEnvelope().getHeights()[0]);
+  }
+}
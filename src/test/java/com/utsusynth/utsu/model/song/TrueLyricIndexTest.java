@@ -0,0 +1,26 @@
+package com.utsusynth.utsu.model.song;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link TrueLyricIndex}. */
+public class TrueLyricIndexTest {
+  @Test
+  public void tracksLatestLyricOfEachPosition() {
+    TrueLyricIndex index = new TrueLyricIndex();
+    index.put(0, "- ka");
+    index.put(480, "a ka");
+    index.put(960, "a ka");
+    index.put(1440, "");
+
+    assertEquals(Set.of(480, 960), index.getPositions("a ka"));
+
+    index.put(480, "- ka"); // Standardized again with a different alias.
+    index.remove(960);
+    assertEquals(Set.of(0, 480), index.getPositions("- ka"));
+    assertEquals(Set.of(), index.getPositions("a ka"));
+    assertEquals(Set.of(), index.getPositions(""));
+  }
+}
@@ -0,0 +1,113 @@
+package com.utsusynth.utsu.model.song.pitch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import com.utsusynth.utsu.common.data.PitchbendData;
+import com.utsusynth.utsu.common.utils.RegionBounds;
+import com.utsusynth.utsu.model.song.pitch.portamento.PortamentoFactory;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link PitchCurve}. */
+public class PitchCurveTest {
+  private static final PitchbendData FIRST_NOTE = new PitchbendData(
+      ImmutableList.of(-40.0),
+      ImmutableList.of(80.0),
+      ImmutableList.of(),
+      ImmutableList.of(""));
+  private static final PitchbendData SECOND_NOTE = new PitchbendData(
+      ImmutableList.of(-30.0),
+      ImmutableList.of(40.0, 60.0),
+      ImmutableList.of(5.0),
+      ImmutableList.of("s", "r"),
+      new int[] {70, 180, 35, 20, 20, 0, 10, 0, 30, 0});
+  private static final PitchbendData THIRD_NOTE = new PitchbendData(
+      ImmutableList.of(-20.0),
+      ImmutableList.of(50.0),
+      ImmutableList.of(),
+      ImmutableList.of("j"));
+
+  @Test
+  public void rendersPortamentosAndVibrato() {
+    PitchCurve pitchCurve = makePitchCurve();
+
+    assertEquals(
+        "7U#11#7X7Y7b7h7r788X899q+Y++/Z/q/0/6/9AA#81#AAA4BwCoDhEZFRGJHCGkGe",
+        pitchCurve.renderPitchbends(-20, 100, 60));
+    assertEquals(
+        "5w#9#5w6p7h8Z9R+K/C/6AyAUAOALAJAHAFAEADACABAAAA#14#AAABACAFA"
+            + "IAMAQAUAYAbAeAfAgAfAbAXARALAFAA/6/0/v/r/n/l/j/j/j/l/n/r/w/1/7AAAGANATA"
+            + "YAdAhAkAnAnAnAmAjAfAbAVAPAJAC/9/4/0/x/w/w/x/z/2/4/5/2/v/g/O+4+f+B9e84#2#",
+        pitchCurve.renderPitchbends(80, 200, 64));
+    assertEquals(
+        "C/C7C4C3C3C4C6C9C/DAC9C2CnCWB/BmBIAlAA#102#",
+        pitchCurve.renderPitchbends(180, 300, 62));
+  }
+
+  @Test
+  public void rendersAfterRemovingNote() {
+    PitchCurve pitchCurve = makePitchCurve();
+    // Fill any cached values first.
+    pitchCurve.renderPitchbends(-20, 300, 60);
+    pitchCurve.renderPitchbends(80, 200, 64);
+    pitchCurve.removePitchbends(480, 480, SECOND_NOTE);
+
+    assertEquals("AA#107#AA/+/5/v/g/O+4+f+B9e84#2#", pitchCurve.renderPitchbends(80, 200, 64));
+
+    pitchCurve.addPitchbends(480, 480, SECOND_NOTE, 60, 64);
+    assertEquals(
+        makePitchCurve().renderPitchbends(80, 200, 64),
+        pitchCurve.renderPitchbends(80, 200, 64));
+  }
+
+  @Test
+  public void readersReuseRendersOfTheCurve() {
+    PitchCurve pitchCurve = makePitchCurve();
+    PitchCurve.Reader firstReader = pitchCurve.openReader();
+    String pitch = firstReader.renderPitchbends(80, 200, 64);
+    firstReader.close();
+
+    // A later render, by a reader or by the curve itself, reuses the first one.
+    PitchCurve.Reader secondReader = pitchCurve.openReader();
+    assertSame(pitch, secondReader.renderPitchbends(80, 200, 64));
+    assertSame(pitch, pitchCurve.renderPitchbends(80, 200, 64));
+
+    // An open reader keeps seeing the curve as it was before a change.
+    pitchCurve.removePitchbends(480, 480, SECOND_NOTE);
+    assertSame(pitch, secondReader.renderPitchbends(80, 200, 64));
+    assertNotEquals(pitch, pitchCurve.renderPitchbends(80, 200, 64));
+    secondReader.close();
+  }
+
+  @Test
+  public void invalidatesOnceAfterBatch() {
+    PitchCurve pitchCurve = makePitchCurve();
+    String before = pitchCurve.renderPitchbends(80, 200, 64);
+    pitchCurve.takeChangedRegion();
+
+    pitchCurve.startBatch();
+    pitchCurve.removePitchbends(480, 480, SECOND_NOTE);
+    pitchCurve.removePitchbends(960, 480, THIRD_NOTE);
+    // Nothing is invalidated while the batch is open.
+    assertSame(before, pitchCurve.renderPitchbends(80, 200, 64));
+    assertEquals(RegionBounds.INVALID, pitchCurve.takeChangedRegion());
+
+    pitchCurve.finishBatch();
+    // Every step of both notes is invalidated at once when the batch finishes.
+    RegionBounds changed = pitchCurve.takeChangedRegion();
+    assertEquals(450, changed.getMinMs());
+    assertEquals(985, changed.getMaxMs());
+    assertEquals(RegionBounds.INVALID, pitchCurve.takeChangedRegion());
+    assertEquals("AA#120#", pitchCurve.renderPitchbends(80, 200, 64));
+  }
+
+  private static PitchCurve makePitchCurve() {
+    PitchCurve pitchCurve = new PitchCurve(new PortamentoFactory());
+    pitchCurve.addPitchbends(0, 480, FIRST_NOTE, 57, 60);
+    pitchCurve.addPitchbends(480, 480, SECOND_NOTE, 60, 64);
+    pitchCurve.addPitchbends(960, 480, THIRD_NOTE, 64, 62);
+    return pitchCurve;
+  }
+}
@@ -0,0 +1,94 @@
+package com.utsusynth.utsu.model.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link LyricConfigMap}. */
+public class LyricConfigMapTest {
+  @Test
+  public void buildsLazyConfigsWhenUsed() {
+    File path = new File("voicebank");
+    LyricConfigMap configMap = new LyricConfigMap();
+    configMap.addLazyConfig(path, "ka", "C4/ka.wav", new double[] {1, 2, 3, 4, 5}, "oto.ini");
+    configMap.addLazyConfig(path, "a", "C4/a.wav", new double[] {1, 2, 3, 4, 5}, "oto.ini");
+    configMap.addLazyConfig(path, "sa", "sa.wav", new double[] {1, 2, 3, 4, 5}, "oto.ini");
+    assertFalse(configMap.addLazyConfig(
+        path, "sa", "C4/sa.wav", new double[] {0, 0, 0, 0, 0}, "oto.ini"));
+
+    assertEquals(Set.of("C4", LyricConfigMap.MAIN_CATEGORY), configMap.getCategories());
+    assertTrue(configMap.hasLyric("ka"));
+    LyricConfig ka = configMap.getConfig("ka");
+    assertEquals(4, ka.getPreutterance());
+    assertSame(ka, configMap.getConfig("ka"));
+
+    List<String> lyrics = new ArrayList<>();
+    configMap.getConfigs("C4").forEachRemaining(config -> lyrics.add(config.getTrueLyric()));
+    assertEquals(List.of("a", "ka"), lyrics);
+
+    configMap.removeConfig("sa");
+    assertFalse(configMap.hasLyric("sa"));
+    assertNull(configMap.getConfig("sa"));
+    assertFalse(configMap.getConfigs(LyricConfigMap.MAIN_CATEGORY).hasNext());
+  }
+
+  @Test
+  public void buildsEachLazyConfigOnceAcrossThreads() {
+    File path = new File("voicebank");
+    LyricConfigMap configMap = new LyricConfigMap();
+    for (int i = 0; i < 100; i++) {
+      configMap.addLazyConfig(
+          path, "ka" + i, "C4/ka" + i + ".wav", new double[] {1, 2, 3, 4, 5}, "oto.ini");
+    }
+
+    Set<LyricConfig> configs = ConcurrentHashMap.newKeySet();
+    IntStream.range(0, 10000).parallel().forEach(i -> {
+      assertTrue(configMap.hasLyric("ka" + i % 100));
+      configs.add(configMap.getConfig("ka" + i % 100));
+    });
+    assertEquals(100, configs.size());
+  }
+
+  @Test
+  public void replacesOnlyChangedConfigsOfOtoFile() {
+    File path = new File("voicebank");
+    double[] values = {1, 2, 3, 4, 5};
+    LyricConfigMap configMap = new LyricConfigMap();
+    configMap.addLazyConfig(path, "ka", "C4/ka.wav", values, "oto.ini");
+    configMap.addLazyConfig(path, "ta", "C4/ta.wav", values, "oto.ini");
+    configMap.addLazyConfig(path, "a", "a.wav", values, "oto.ini");
+    configMap.addLazyConfig(path, "sa", "C4/sa.wav", values, "C4/oto.ini");
+    configMap.addLazyConfig(path, "ha", "C4/ha.wav", values, "C4/oto.ini");
+    LyricConfig sa = configMap.getConfig("sa");
+
+    // C4/oto.ini now defines ka too, and no longer defines ha.
+    LyricConfigMap source = new LyricConfigMap();
+    source.addLazyConfig(path, "ka", "C4/ka.wav", new double[] {1, 2, 3, 9, 5}, "C4/oto.ini");
+    source.addLazyConfig(path, "sa", "C4/sa.wav", values, "C4/oto.ini");
+    source.addLazyConfig(path, "na", "C4/na.wav", values, "C4/oto.ini");
+
+    assertEquals(Set.of("ka", "ha", "na"), configMap.replaceOtoFile("C4/oto.ini", source));
+    assertEquals(9, configMap.getConfig("ka").getPreutterance());
+    assertSame(sa, configMap.getConfig("sa"));
+    assertFalse(configMap.hasLyric("ha"));
+    assertTrue(configMap.hasLyric("na"));
+    assertTrue(configMap.hasLyric("ta"));
+    assertTrue(configMap.hasLyric("a"));
+
+    // Deleting C4/oto.ini removes only the lyrics last read from it.
+    assertEquals(
+        Set.of("ka", "sa", "na"), configMap.replaceOtoFile("C4/oto.ini", new LyricConfigMap()));
+    assertTrue(configMap.hasLyric("ta"));
+    assertTrue(configMap.hasLyric("a"));
+  }
+}
@@ -0,0 +1,40 @@
+package com.utsusynth.utsu.model.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.utsusynth.utsu.files.PreferencesManager;
+import java.io.File;
+import java.util.HashSet;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link VoicebankManager}. */
+public class VoicebankManagerTest {
+  @Test
+  public void unloadsUnusedVoicebanksOverBudget() throws Exception {
+    PreferencesManager preferences = new PreferencesManager(
+        new File("settings"), null, null, ImmutableMap.of("voicebankMemoryMb", "0"));
+    VoicebankManager manager = new VoicebankManager(preferences);
+    File first = new File("first");
+    File second = new File("second");
+    File third = new File("third");
+
+    manager.setVoicebank(first, makeVoicebank(preferences));
+    manager.openVoicebankForEdit(first);
+    manager.setVoicebank(second, makeVoicebank(preferences));
+    assertTrue(manager.hasVoicebank(first));
+    assertTrue(manager.hasVoicebank(second));
+
+    manager.setVoicebank(third, makeVoicebank(preferences));
+    assertTrue(manager.hasVoicebank(first));
+    assertFalse(manager.hasVoicebank(second));
+    assertTrue(manager.hasVoicebank(third));
+  }
+
+  private static Voicebank makeVoicebank(PreferencesManager preferences) {
+    LyricConfigMap configs = new LyricConfigMap();
+    configs.addConfig(new LyricConfig(new File("bank"), "a", "a.wav", 0, 0, 0, 0, 0));
+    return new Voicebank(configs, new PitchMap(), new HashSet<>(), null, preferences, null);
+  }
+}
@@ -0,0 +1,81 @@
+package com.utsusynth.utsu.model.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.utsusynth.utsu.files.PreferencesManager;
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link Voicebank}. */
+public class VoicebankTest {
+  @Test
+  public void guessesMostDetailedAlias() {
+    Voicebank voicebank = makeVoicebank("a", "a_H", "- a", "- a_H", "a ka", "ka_H");
+
+    assertEquals("- a_H", getTrueLyric(voicebank, "", "a", "C5"));
+    assertEquals("- a", getTrueLyric(voicebank, "", "a", "C4"));
+    assertEquals("a ka", getTrueLyric(voicebank, "a", "ka", "C4"));
+    assertEquals("ka_H", getTrueLyric(voicebank, "", "ka", "C5"));
+    assertFalse(voicebank.getLyricConfig("", "sa", "C4").isPresent());
+  }
+
+  @Test
+  public void guessesConvertedAlias() {
+    Voicebank voicebank = makeVoicebank("ka", "- ka", "- sa");
+
+    assertEquals("- ka", getTrueLyric(voicebank, "", "か", "C4"));
+    assertEquals("ka", getTrueLyric(voicebank, "a", "か", "C4"));
+  }
+
+  @Test
+  public void forgetsGuessesWhenAliasesChange() {
+    Voicebank voicebank = makeVoicebank("ka");
+    assertEquals("ka", getTrueLyric(voicebank, "", "ka", "C4"));
+
+    voicebank.addLyricData(
+        new LyricConfig(new File("voicebank"), "- ka", "ka.wav", 0, 0, 0, 0, 0).getData(false));
+
+    assertEquals("- ka", getTrueLyric(voicebank, "", "ka", "C4"));
+  }
+
+  private static String getTrueLyric(
+      Voicebank voicebank, String prevLyric, String lyric, String pitch) {
+    return voicebank.getLyricConfig(prevLyric, lyric, pitch).get().getTrueLyric();
+  }
+
+  private static Voicebank makeVoicebank(String... aliases) {
+    File path = new File("voicebank");
+    DisjointLyricSet conversions = new DisjointLyricSet();
+    conversions.addGroup(ImmutableSet.of("か", "ka"));
+    conversions.addGroup(ImmutableSet.of("あ", "a"));
+    PresampConfig presampConfig = new PresampConfig(
+        new HashMap<>(),
+        new HashMap<>(),
+        new HashMap<>(),
+        new HashMap<>(),
+        new HashMap<>(),
+        new HashSet<>(),
+        conversions,
+        new HashMap<>(),
+        new HashSet<>(),
+        new HashMap<>(),
+        new HashSet<>(),
+        new HashSet<>());
+    PreferencesManager preferences =
+        new PreferencesManager(path, null, null, ImmutableMap.of("guessAlias", "ENABLED"));
+    Voicebank.Builder builder = new Voicebank(
+        new LyricConfigMap(), new PitchMap(), new HashSet<>(), null, preferences, presampConfig)
+        .toBuilder()
+        .setPathToVoicebank(path);
+    for (String alias : aliases) {
+      builder.addLyric(new LyricConfig(path, alias, alias + ".wav", 0, 0, 0, 0, 0), false);
+    }
+    builder.addPitchSuffix("C5", "_H");
+    return builder.build();
+  }
+}